@@ -49,6 +49,8 @@ public class ControlBansPlugin extends JavaPlugin {
     private MyReportsGuiManager myReportsGuiManager;
     private AppealService appealService;
     private CacheService cacheService;
+    private ActivePunishmentIndex activePunishmentIndex;
+    private BanLookupFilter banLookupFilter;
     private VoidJailService voidJailService;
     private SkinBanService skinBanService;
     private VoiceChatService voiceChatService;
@@ -103,6 +105,10 @@ public class ControlBansPlugin extends JavaPlugin {
                 integrationService.shutdown();
             if (redisManager != null)
                 redisManager.shutdown();
+            if (activePunishmentIndex != null)
+                activePunishmentIndex.shutdown();
+            if (banLookupFilter != null)
+                banLookupFilter.shutdown();
 
             if (storage != null)
                 storage.shutdown();
@@ -132,6 +138,11 @@ public class ControlBansPlugin extends JavaPlugin {
 
         cacheService = new CacheService(configManager);
 
+        activePunishmentIndex = new ActivePunishmentIndex(this, storage);
+        activePunishmentIndex.start();
+        banLookupFilter = new BanLookupFilter(this, storage);
+        banLookupFilter.start();
+
         punishmentService = new PunishmentService(this, storage, cacheService);
         altService = new AltService(this, storage, cacheService);
         appealService = new AppealService(storage, configManager);
@@ -388,6 +399,14 @@ public class ControlBansPlugin extends JavaPlugin {
         return cacheService;
     }
 
+    public ActivePunishmentIndex getActivePunishmentIndex() {
+        return activePunishmentIndex;
+    }
+
+    public BanLookupFilter getBanLookupFilter() {
+        return banLookupFilter;
+    }
+
     public VoidJailService getVoidJailService() {
         return voidJailService;
     }
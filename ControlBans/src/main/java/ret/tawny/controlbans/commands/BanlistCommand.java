@@ -18,6 +18,8 @@ public class BanlistCommand extends CommandBase {
 
     private static final int ENTRIES_PER_PAGE = 10;
 
+    private final PageCursorCache pageCursors = new PageCursorCache();
+
     public BanlistCommand(ControlBansPlugin plugin) {
         super(plugin);
         setCommand("banlist");
@@ -43,43 +45,36 @@ public class BanlistCommand extends CommandBase {
 
         final int finalPage = page;
 
-        punishmentService.getAllPunishments().thenAccept(allPunishments -> {
-            List<Punishment> activeBans = allPunishments.stream()
-                    .filter(p -> p.getType().isBan() && p.isActive() && !p.isExpired())
-                    .sorted((a, b) -> Long.compare(b.getCreatedTime(), a.getCreatedTime()))
-                    .toList();
-
-            int maxPage = Math.max(1, (int) Math.ceil((double) activeBans.size() / ENTRIES_PER_PAGE));
+        punishmentService.countActiveBans().thenCompose(total -> {
+            int maxPage = Math.max(1, (int) Math.ceil((double) total / ENTRIES_PER_PAGE));
             int currentPage = finalPage > maxPage ? maxPage : finalPage;
 
-            int startIndex = (currentPage - 1) * ENTRIES_PER_PAGE;
-            int endIndex = Math.min(startIndex + ENTRIES_PER_PAGE, activeBans.size());
-
-            List<Component> lines = new ArrayList<>();
-            lines.add(locale.getMessage("banlist.header",
-                    Placeholder.unparsed("count", String.valueOf(activeBans.size()))));
-            lines.add(Component.empty());
-
-            if (activeBans.isEmpty()) {
-                lines.add(locale.getMessage("banlist.empty"));
-            } else {
-                for (int i = startIndex; i < endIndex; i++) {
-                    Punishment p = activeBans.get(i);
-                    String reason = p.getReason() != null ? p.getReason() : "Unspecified";
-                    String staff = p.getStaffName() != null ? p.getStaffName() : "Console";
-                    lines.add(locale.getMessage("banlist.entry",
-                            Placeholder.unparsed("player", p.getTargetName() != null ? p.getTargetName() : "Unknown"),
-                            Placeholder.unparsed("reason", reason),
-                            Placeholder.unparsed("staff", staff)));
+            return pageCursors.getPage(sender.getName(), punishmentService::getActiveBans, currentPage, ENTRIES_PER_PAGE).thenAccept(activeBans -> {
+                List<Component> lines = new ArrayList<>();
+                lines.add(locale.getMessage("banlist.header",
+                        Placeholder.unparsed("count", String.valueOf(total))));
+                lines.add(Component.empty());
+
+                if (activeBans.isEmpty()) {
+                    lines.add(locale.getMessage("banlist.empty"));
+                } else {
+                    for (Punishment p : activeBans) {
+                        String reason = p.getReason() != null ? p.getReason() : "Unspecified";
+                        String staff = p.getStaffName() != null ? p.getStaffName() : "Console";
+                        lines.add(locale.getMessage("banlist.entry",
+                                Placeholder.unparsed("player", p.getTargetName() != null ? p.getTargetName() : "Unknown"),
+                                Placeholder.unparsed("reason", reason),
+                                Placeholder.unparsed("staff", staff)));
+                    }
                 }
-            }
 
-            lines.add(Component.empty());
-            lines.add(locale.getMessage("banlist.page-info",
-                    Placeholder.unparsed("page", String.valueOf(currentPage)),
-                    Placeholder.unparsed("maxpage", String.valueOf(maxPage))));
+                lines.add(Component.empty());
+                lines.add(locale.getMessage("banlist.page-info",
+                        Placeholder.unparsed("page", String.valueOf(currentPage)),
+                        Placeholder.unparsed("maxpage", String.valueOf(maxPage))));
 
-            scheduler.runTask(() -> lines.forEach(sender::sendMessage));
+                scheduler.runTask(() -> lines.forEach(sender::sendMessage));
+            });
         });
 
         return true;
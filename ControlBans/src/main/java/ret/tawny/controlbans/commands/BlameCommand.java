@@ -9,11 +9,14 @@ import ret.tawny.controlbans.util.TimeUtil;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 public class BlameCommand extends CommandBase {
 
     private static final int ENTRIES_PER_PAGE = 10;
 
+    private final PageCursorCache pageCursors = new PageCursorCache();
+
     public BlameCommand(ControlBansPlugin plugin) {
         super(plugin);
         setCommand("blame");
@@ -45,46 +48,40 @@ public class BlameCommand extends CommandBase {
 
         final int finalPage = page;
 
-        punishmentService.getAllPunishments().thenAccept(allPunishments -> {
-            List<Punishment> staffPunishments = allPunishments.stream()
-                    .filter(p -> p.getStaffName() != null && p.getStaffName().equalsIgnoreCase(staffName))
-                    .sorted((a, b) -> Long.compare(b.getCreatedTime(), a.getCreatedTime()))
-                    .toList();
-
-            int maxPage = Math.max(1, (int) Math.ceil((double) staffPunishments.size() / ENTRIES_PER_PAGE));
+        punishmentService.countPunishmentsByStaff(staffName).thenCompose(total -> {
+            int maxPage = Math.max(1, (int) Math.ceil((double) total / ENTRIES_PER_PAGE));
             int currentPage = finalPage > maxPage ? maxPage : finalPage;
 
-            int startIndex = (currentPage - 1) * ENTRIES_PER_PAGE;
-            int endIndex = Math.min(startIndex + ENTRIES_PER_PAGE, staffPunishments.size());
-
-            List<Component> lines = new ArrayList<>();
-            lines.add(locale.getMessage("blame.header",
-                    Placeholder.unparsed("staff", staffName),
-                    Placeholder.unparsed("count", String.valueOf(staffPunishments.size()))));
-            lines.add(Component.empty());
-
-            if (staffPunishments.isEmpty()) {
-                lines.add(locale.getMessage("blame.empty",
-                        Placeholder.unparsed("staff", staffName)));
-            } else {
-                for (int i = startIndex; i < endIndex; i++) {
-                    Punishment p = staffPunishments.get(i);
-                    String reason = p.getReason() != null ? p.getReason() : "Unspecified";
-                    String date = TimeUtil.formatDate(p.getCreatedTime());
-                    lines.add(locale.getMessage("blame.entry",
-                            Placeholder.unparsed("type", p.getType().getDisplayName()),
-                            Placeholder.unparsed("player", p.getTargetName() != null ? p.getTargetName() : "Unknown"),
-                            Placeholder.unparsed("reason", reason),
-                            Placeholder.unparsed("date", date)));
+            return pageCursors.getPage(sender.getName() + ":" + staffName.toLowerCase(Locale.ROOT), (cursor, limit) -> punishmentService.getPunishmentsByStaff(staffName, cursor, limit),
+                    currentPage, ENTRIES_PER_PAGE).thenAccept(staffPunishments -> {
+                List<Component> lines = new ArrayList<>();
+                lines.add(locale.getMessage("blame.header",
+                        Placeholder.unparsed("staff", staffName),
+                        Placeholder.unparsed("count", String.valueOf(total))));
+                lines.add(Component.empty());
+
+                if (staffPunishments.isEmpty()) {
+                    lines.add(locale.getMessage("blame.empty",
+                            Placeholder.unparsed("staff", staffName)));
+                } else {
+                    for (Punishment p : staffPunishments) {
+                        String reason = p.getReason() != null ? p.getReason() : "Unspecified";
+                        String date = TimeUtil.formatDate(p.getCreatedTime());
+                        lines.add(locale.getMessage("blame.entry",
+                                Placeholder.unparsed("type", p.getType().getDisplayName()),
+                                Placeholder.unparsed("player", p.getTargetName() != null ? p.getTargetName() : "Unknown"),
+                                Placeholder.unparsed("reason", reason),
+                                Placeholder.unparsed("date", date)));
+                    }
                 }
-            }
 
-            lines.add(Component.empty());
-            lines.add(locale.getMessage("banlist.page-info",
-                    Placeholder.unparsed("page", String.valueOf(currentPage)),
-                    Placeholder.unparsed("maxpage", String.valueOf(maxPage))));
+                lines.add(Component.empty());
+                lines.add(locale.getMessage("banlist.page-info",
+                        Placeholder.unparsed("page", String.valueOf(currentPage)),
+                        Placeholder.unparsed("maxpage", String.valueOf(maxPage))));
 
-            scheduler.runTask(() -> lines.forEach(sender::sendMessage));
+                scheduler.runTask(() -> lines.forEach(sender::sendMessage));
+            });
         });
 
         return true;
@@ -6,6 +6,7 @@ import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
 import org.bukkit.command.CommandSender;
 import ret.tawny.controlbans.ControlBansPlugin;
 import ret.tawny.controlbans.model.Punishment;
+import ret.tawny.controlbans.util.IdUtil;
 import ret.tawny.controlbans.util.TimeUtil;
 import ret.tawny.controlbans.util.UuidUtil;
 
@@ -33,7 +34,7 @@ public class CheckCommand extends CommandBase {
 
         String target = args[0];
 
-        if (target.matches("^[a-zA-Z0-9]{6,8}$")) {
+        if (IdUtil.isPunishmentId(target)) {
             sender.sendMessage(locale.getMessage("actions.checking-id", idPlaceholder(target)));
             punishmentService.getPunishmentById(target).thenAccept(punishmentOpt -> {
                 scheduler.runTask(() -> {
@@ -1,17 +1,26 @@
 package ret.tawny.controlbans.commands;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import net.kyori.adventure.text.minimessage.tag.resolver.Placeholder;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import ret.tawny.controlbans.ControlBansPlugin;
 import ret.tawny.controlbans.model.Punishment;
 import ret.tawny.controlbans.model.PunishmentType;
+import ret.tawny.controlbans.services.ActivePunishmentIndex;
+import ret.tawny.controlbans.services.BanLookupFilter;
+import ret.tawny.controlbans.services.CacheService;
 import ret.tawny.controlbans.services.DataExportService;
+import ret.tawny.controlbans.storage.DatabaseManager;
+import ret.tawny.controlbans.storage.DatabaseScheduler;
 import ret.tawny.controlbans.util.TimeUtil;
 
 import java.io.File;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -26,7 +35,7 @@ public class ControlBansCommand extends CommandBase {
     public boolean execute(CommandSender sender, String[] args) {
         if (args.length == 0) {
             sender.sendMessage(locale.getMessage("errors.invalid-arguments",
-                    usagePlaceholder("/" + label + " <reload|import|export|settings|database|rollback>")));
+                    usagePlaceholder("/" + label + " <reload|import|export|settings|database|cache|rollback>")));
             return true;
         }
         switch (args[0].toLowerCase()) {
@@ -34,6 +43,7 @@ public class ControlBansCommand extends CommandBase {
             case "import" -> handleImport(sender, args);
             case "export" -> handleExport(sender, args);
             case "database" -> handleDatabase(sender, args);
+            case "cache" -> handleCache(sender);
             case "rollback" -> handleRollback(sender, args);
             case "settings" -> {
                 if (sender instanceof Player player) {
@@ -47,7 +57,7 @@ public class ControlBansCommand extends CommandBase {
                 }
             }
             default -> sender.sendMessage(locale.getMessage("errors.invalid-arguments",
-                    usagePlaceholder("/" + label + " <reload|import|export|settings|database|rollback>")));
+                    usagePlaceholder("/" + label + " <reload|import|export|settings|database|cache|rollback>")));
         }
         return true;
     }
@@ -140,20 +150,34 @@ public class ControlBansCommand extends CommandBase {
             return;
         }
 
-        sender.sendMessage(locale.getMessage("admin.export.start"));
+        boolean incremental = args.length >= 2 && args[1].equalsIgnoreCase("incremental");
+        PunishmentType type = null;
+        if (args.length >= 2 && !incremental) {
+            try {
+                type = PunishmentType.valueOf(args[1].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                sender.sendMessage(locale.getMessage("admin.export.invalid-type", Placeholder.unparsed("type", args[1])));
+                return;
+            }
+        }
 
-        exportService.exportAll().whenComplete((file, throwable) -> {
+        sender.sendMessage(locale.getMessage(incremental ? "admin.export.incremental-start" : "admin.export.start"));
+
+        LongConsumer progress = count -> sender.sendMessage(locale.getMessage("admin.export.progress",
+                Placeholder.unparsed("count", String.valueOf(count))));
+        CompletableFuture<DataExportService.ExportResult> export = incremental
+                ? exportService.exportIncremental(progress)
+                : exportService.exportFiltered(type, progress);
+        export.whenComplete((result, throwable) -> {
             if (throwable != null) {
-                sender.sendMessage(locale.getMessage("admin.export.failed", Placeholder.unparsed("error", throwable.getMessage())));
+                Throwable cause = throwable.getCause() != null ? throwable.getCause() : throwable;
+                sender.sendMessage(locale.getMessage("admin.export.failed", Placeholder.unparsed("error", String.valueOf(cause.getMessage()))));
                 return;
             }
-            if (file != null) {
-                sender.sendMessage(locale.getMessage("admin.export.success",
-                        Placeholder.unparsed("file", file.getName()),
-                        Placeholder.unparsed("path", "plugins/ControlBans/exports/")));
-            } else {
-                sender.sendMessage(locale.getMessage("admin.export.failed", Placeholder.unparsed("error", "File could not be created.")));
-            }
+            sender.sendMessage(locale.getMessage("admin.export.success",
+                    Placeholder.unparsed("count", String.valueOf(result.records())),
+                    Placeholder.unparsed("file", result.file().getName()),
+                    Placeholder.unparsed("path", "plugins/ControlBans/exports/")));
         });
     }
 
@@ -162,9 +186,17 @@ public class ControlBansCommand extends CommandBase {
             sender.sendMessage(locale.getMessage("errors.no-permission"));
             return;
         }
+        if (args.length >= 2 && args[1].equalsIgnoreCase("stats")) {
+            handleDatabaseStats(sender);
+            return;
+        }
+        if (args.length >= 2 && args[1].equalsIgnoreCase("convert-uuids")) {
+            handleConvertUuids(sender);
+            return;
+        }
         if (args.length < 2 || !args[1].equalsIgnoreCase("clear")) {
             sender.sendMessage(locale.getMessage("errors.invalid-arguments",
-                    usagePlaceholder("/" + label + " database clear [player]")));
+                    usagePlaceholder("/" + label + " database <clear [player]|stats|convert-uuids>")));
             return;
         }
 
@@ -210,6 +242,87 @@ public class ControlBansCommand extends CommandBase {
         });
     }
 
+    private void handleConvertUuids(CommandSender sender) {
+        if (!(plugin.getStorage() instanceof DatabaseManager databaseManager)) {
+            sender.sendMessage(locale.getMessage("admin.database.uuid-unsupported"));
+            return;
+        }
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage(locale.getMessage("errors.command-from-console-error"));
+            return;
+        }
+
+        player.sendMessage(locale.getMessage("admin.database.uuid-confirm"));
+        player.sendMessage(locale.getMessage("admin.database.instruction"));
+
+        plugin.getChatInputListener().awaitInput(player, input -> {
+            if (!input.equalsIgnoreCase("yes")) {
+                player.sendMessage(locale.getMessage("admin.database.uuid-cancelled"));
+                return;
+            }
+            player.sendMessage(locale.getMessage("admin.database.uuid-converting"));
+            databaseManager.convertUuidStorage().whenComplete((columns, t) -> {
+                if (t != null) {
+                    Throwable cause = t.getCause() != null ? t.getCause() : t;
+                    player.sendMessage(locale.getMessage("admin.database.uuid-failed",
+                            Placeholder.unparsed("error", String.valueOf(cause.getMessage()))));
+                    plugin.getLogger().log(Level.SEVERE, "UUID storage conversion failed", cause);
+                } else if (columns == 0) {
+                    player.sendMessage(locale.getMessage("admin.database.uuid-already-binary"));
+                } else {
+                    player.sendMessage(locale.getMessage("admin.database.uuid-converted",
+                            Placeholder.unparsed("columns", String.valueOf(columns))));
+                }
+            });
+        });
+    }
+
+    private void handleDatabaseStats(CommandSender sender) {
+        sender.sendMessage(locale.getMessage("admin.database.stats-header",
+                Placeholder.unparsed("backend", plugin.getConfigManager().getDatabaseType().toLowerCase())));
+        for (DatabaseScheduler.LaneStats stats : plugin.getStorage().getSchedulerStats()) {
+            sender.sendMessage(locale.getMessage("admin.database.stats-entry",
+                    Placeholder.unparsed("class", stats.priority().getConfigKey()),
+                    Placeholder.unparsed("active", String.valueOf(stats.activeThreads())),
+                    Placeholder.unparsed("threads", String.valueOf(stats.threads())),
+                    Placeholder.unparsed("queued", String.valueOf(stats.queued())),
+                    Placeholder.unparsed("capacity", String.valueOf(stats.queueCapacity())),
+                    Placeholder.unparsed("avg-wait", String.format("%.1f", stats.averageWaitMillis())),
+                    Placeholder.unparsed("max-wait", String.format("%.1f", stats.maxWaitMillis())),
+                    Placeholder.unparsed("completed", String.valueOf(stats.completed())),
+                    Placeholder.unparsed("rejected", String.valueOf(stats.rejected()))));
+        }
+    }
+
+    private void handleCache(CommandSender sender) {
+        if (!sender.hasPermission("controlbans.admin")) {
+            sender.sendMessage(locale.getMessage("errors.no-permission"));
+            return;
+        }
+
+        sender.sendMessage(locale.getMessage("admin.cache.header"));
+        for (CacheService.CacheMetrics metrics : plugin.getCacheService().getMetrics()) {
+            CacheStats stats = metrics.stats();
+            sender.sendMessage(locale.getMessage("admin.cache.entry",
+                    Placeholder.unparsed("name", metrics.name()),
+                    Placeholder.unparsed("hit-rate", String.format("%.1f", stats.hitRate() * 100)),
+                    Placeholder.unparsed("requests", String.valueOf(stats.requestCount())),
+                    Placeholder.unparsed("load-time", String.format("%.2f", stats.averageLoadPenalty() / 1_000_000.0)),
+                    Placeholder.unparsed("evictions", String.valueOf(stats.evictionCount())),
+                    Placeholder.unparsed("size", String.valueOf(metrics.estimatedSize()))));
+        }
+
+        BanLookupFilter filter = plugin.getBanLookupFilter();
+        sender.sendMessage(locale.getMessage("admin.cache.filter",
+                Placeholder.unparsed("keys", String.valueOf(filter.getApproximateKeyCount())),
+                Placeholder.unparsed("memory", String.format("%.1f", filter.getMemoryFootprintBytes() / 1024.0)),
+                Placeholder.unparsed("fpp", String.format("%.4f", filter.getFalsePositiveRate() * 100))));
+        ActivePunishmentIndex index = plugin.getActivePunishmentIndex();
+        sender.sendMessage(locale.getMessage("admin.cache.index",
+                Placeholder.unparsed("entries", String.valueOf(index.size())),
+                Placeholder.unparsed("ready", String.valueOf(index.isReady()))));
+    }
+
     private void handleImport(CommandSender sender, String[] args) {
         if (!sender.hasPermission("controlbans.import")) {
             sender.sendMessage(locale.getMessage("errors.no-permission"));
@@ -257,23 +370,19 @@ public class ControlBansCommand extends CommandBase {
             return;
         }
 
-        String filename = args[2];
-        if (!filename.endsWith(".json")) {
-            filename += ".json";
-        }
-        String sanitizedFilename = filename.replace("/", "").replace("\\", "");
+        String sanitizedFilename = args[2].replace("/", "").replace("\\", "");
         if (sanitizedFilename.contains("..")) {
             sender.sendMessage(locale.getMessage("errors.invalid-arguments", usagePlaceholder("/" + label + " import file <filename>")));
             return;
         }
 
-        File importFile = new File(plugin.getDataFolder(), "exports/" + sanitizedFilename);
+        File importFile = exportService.resolveExportFile(sanitizedFilename);
         if (!importFile.exists()) {
-            sender.sendMessage(locale.getMessage("admin.import.file-not-found", Placeholder.unparsed("file", sanitizedFilename)));
+            sender.sendMessage(locale.getMessage("admin.import.file-not-found", Placeholder.unparsed("file", importFile.getName())));
             return;
         }
 
-        sender.sendMessage(locale.getMessage("admin.import.start", Placeholder.unparsed("file", filename)));
+        sender.sendMessage(locale.getMessage("admin.import.start", Placeholder.unparsed("file", importFile.getName())));
 
         exportService.importFromFile(importFile).whenComplete((result, throwable) -> {
             if (throwable != null) {
@@ -294,7 +403,7 @@ public class ControlBansCommand extends CommandBase {
     @Override
     public List<String> onTab(CommandSender sender, String[] args) {
         if (args.length == 1) {
-            return Stream.of("reload", "import", "export", "settings", "database", "rollback")
+            return Stream.of("reload", "import", "export", "settings", "database", "cache", "rollback")
                     .filter(s -> s.startsWith(args[0].toLowerCase()))
                     .collect(Collectors.toList());
         }
@@ -305,13 +414,19 @@ public class ControlBansCommand extends CommandBase {
                         .collect(Collectors.toList());
             }
             if (args[0].equalsIgnoreCase("database")) {
-                return Stream.of("clear")
+                return Stream.of("clear", "stats", "convert-uuids")
                         .filter(s -> s.startsWith(args[1].toLowerCase()))
                         .collect(Collectors.toList());
             }
             if (args[0].equalsIgnoreCase("rollback")) {
                 return getPlayerSuggestions(args[1]);
             }
+            if (args[0].equalsIgnoreCase("export")) {
+                return Stream.concat(Stream.of("incremental"), Stream.of(PunishmentType.values())
+                        .map(type -> type.name().toLowerCase()))
+                        .filter(s -> s.startsWith(args[1].toLowerCase()))
+                        .collect(Collectors.toList());
+            }
         }
         if (args.length == 3) {
             if (args[0].equalsIgnoreCase("database") && args[1].equalsIgnoreCase("clear")) {
@@ -15,6 +15,8 @@ public class MutelistCommand extends CommandBase {
 
     private static final int ENTRIES_PER_PAGE = 10;
 
+    private final PageCursorCache pageCursors = new PageCursorCache();
+
     public MutelistCommand(ControlBansPlugin plugin) {
         super(plugin);
         setCommand("mutelist");
@@ -40,43 +42,36 @@ public class MutelistCommand extends CommandBase {
 
         final int finalPage = page;
 
-        punishmentService.getAllPunishments().thenAccept(allPunishments -> {
-            List<Punishment> activeMutes = allPunishments.stream()
-                    .filter(p -> p.getType().isMute() && p.isActive() && !p.isExpired())
-                    .sorted((a, b) -> Long.compare(b.getCreatedTime(), a.getCreatedTime()))
-                    .toList();
-
-            int maxPage = Math.max(1, (int) Math.ceil((double) activeMutes.size() / ENTRIES_PER_PAGE));
+        punishmentService.countActiveMutes().thenCompose(total -> {
+            int maxPage = Math.max(1, (int) Math.ceil((double) total / ENTRIES_PER_PAGE));
             int currentPage = finalPage > maxPage ? maxPage : finalPage;
 
-            int startIndex = (currentPage - 1) * ENTRIES_PER_PAGE;
-            int endIndex = Math.min(startIndex + ENTRIES_PER_PAGE, activeMutes.size());
-
-            List<Component> lines = new ArrayList<>();
-            lines.add(locale.getMessage("mutelist.header",
-                    Placeholder.unparsed("count", String.valueOf(activeMutes.size()))));
-            lines.add(Component.empty());
-
-            if (activeMutes.isEmpty()) {
-                lines.add(locale.getMessage("mutelist.empty"));
-            } else {
-                for (int i = startIndex; i < endIndex; i++) {
-                    Punishment p = activeMutes.get(i);
-                    String reason = p.getReason() != null ? p.getReason() : "Unspecified";
-                    String staff = p.getStaffName() != null ? p.getStaffName() : "Console";
-                    lines.add(locale.getMessage("mutelist.entry",
-                            Placeholder.unparsed("player", p.getTargetName() != null ? p.getTargetName() : "Unknown"),
-                            Placeholder.unparsed("reason", reason),
-                            Placeholder.unparsed("staff", staff)));
+            return pageCursors.getPage(sender.getName(), punishmentService::getActiveMutes, currentPage, ENTRIES_PER_PAGE).thenAccept(activeMutes -> {
+                List<Component> lines = new ArrayList<>();
+                lines.add(locale.getMessage("mutelist.header",
+                        Placeholder.unparsed("count", String.valueOf(total))));
+                lines.add(Component.empty());
+
+                if (activeMutes.isEmpty()) {
+                    lines.add(locale.getMessage("mutelist.empty"));
+                } else {
+                    for (Punishment p : activeMutes) {
+                        String reason = p.getReason() != null ? p.getReason() : "Unspecified";
+                        String staff = p.getStaffName() != null ? p.getStaffName() : "Console";
+                        lines.add(locale.getMessage("mutelist.entry",
+                                Placeholder.unparsed("player", p.getTargetName() != null ? p.getTargetName() : "Unknown"),
+                                Placeholder.unparsed("reason", reason),
+                                Placeholder.unparsed("staff", staff)));
+                    }
                 }
-            }
 
-            lines.add(Component.empty());
-            lines.add(locale.getMessage("mutelist.page-info",
-                    Placeholder.unparsed("page", String.valueOf(currentPage)),
-                    Placeholder.unparsed("maxpage", String.valueOf(maxPage))));
+                lines.add(Component.empty());
+                lines.add(locale.getMessage("mutelist.page-info",
+                        Placeholder.unparsed("page", String.valueOf(currentPage)),
+                        Placeholder.unparsed("maxpage", String.valueOf(maxPage))));
 
-            scheduler.runTask(() -> lines.forEach(sender::sendMessage));
+                scheduler.runTask(() -> lines.forEach(sender::sendMessage));
+            });
         });
 
         return true;
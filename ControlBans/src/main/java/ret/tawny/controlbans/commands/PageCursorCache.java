@@ -0,0 +1,45 @@
+package ret.tawny.controlbans.commands;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import ret.tawny.controlbans.model.PageCursor;
+import ret.tawny.controlbans.model.Punishment;
+import ret.tawny.controlbans.services.PunishmentService.PageQuery;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+public final class PageCursorCache {
+
+    private final Cache<String, NavigableMap<Integer, PageCursor>> cursors = Caffeine.newBuilder()
+            .maximumSize(500)
+            .expireAfterAccess(5, TimeUnit.MINUTES)
+            .build();
+
+    public CompletableFuture<List<Punishment>> getPage(String key, PageQuery query, int page, int pageSize) {
+        NavigableMap<Integer, PageCursor> known = cursors.get(key, k -> new ConcurrentSkipListMap<>());
+        Map.Entry<Integer, PageCursor> start = known.floorEntry(page);
+        if (start == null) {
+            return walk(known, query, null, 1, page, pageSize);
+        }
+        return walk(known, query, start.getValue(), start.getKey(), page, pageSize);
+    }
+
+    private CompletableFuture<List<Punishment>> walk(NavigableMap<Integer, PageCursor> known, PageQuery query,
+                                                     PageCursor cursor, int current, int target, int pageSize) {
+        return query.fetch(cursor, pageSize).thenCompose(rows -> {
+            if (rows.size() < pageSize) {
+                known.tailMap(current, false).clear();
+                return CompletableFuture.completedFuture(current >= target ? rows : List.of());
+            }
+            PageCursor next = PageCursor.after(rows.get(rows.size() - 1));
+            known.put(current + 1, next);
+            if (current >= target) return CompletableFuture.completedFuture(rows);
+            return walk(known, query, next, current + 1, target, pageSize);
+        });
+    }
+}
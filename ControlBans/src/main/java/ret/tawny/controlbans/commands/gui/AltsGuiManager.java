@@ -121,7 +121,7 @@ public class AltsGuiManager {
             }
         });
 
-        CompletableFuture<List<Punishment>> historyFuture = punishmentService.getPunishmentHistory(altUuid, 100);
+        CompletableFuture<List<Punishment>> historyFuture = punishmentService.getPunishmentHistory(altUuid, 100, true);
 
         return CompletableFuture.allOf(profileFuture, historyFuture).thenApply(v -> {
             PlayerProfile profile = profileFuture.join();
@@ -47,7 +47,7 @@ public class HistoryGuiManager {
 
     public void openHistoryGui(Player viewer, OfflinePlayer target, int page) {
         int startPage = Math.max(1, page);
-        punishmentService.getPunishmentHistory(target.getUniqueId(), 200).thenAccept(punishments -> {
+        punishmentService.getPunishmentHistory(target.getUniqueId(), 200, true).thenAccept(punishments -> {
             punishments.sort(Comparator.comparingLong(Punishment::getCreatedTime).reversed());
 
             CompletableFuture.supplyAsync(() -> {
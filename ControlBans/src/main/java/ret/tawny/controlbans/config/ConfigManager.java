@@ -4,6 +4,7 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import ret.tawny.controlbans.ControlBansPlugin;
+import ret.tawny.controlbans.storage.QueryPriority;
 
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -70,6 +71,20 @@ public class ConfigManager {
     public String getDatabasePassword() { return getCachedOrLoad("database.password", String.class, "password"); }
     public String getSqliteFile() { return getCachedOrLoad("database.sqlite-file", String.class, "punishments.db"); }
     public String getH2File() { return getCachedOrLoad("database.h2-file", String.class, "punishments"); }
+    public boolean isBinaryUuidStorage() { return "binary".equalsIgnoreCase(getCachedOrLoad("database.uuid-storage", String.class, "text")); }
+    public long getHistoryFlushInterval() { return getCachedOrLoad("database.history-flush-interval", Integer.class, 5); }
+    public int getJanitorChunkSize() { return getCachedOrLoad("database.janitor.chunk-size", Integer.class, 500); }
+    public long getJanitorChunkPause() { return getCachedOrLoad("database.janitor.chunk-pause-ms", Integer.class, 250); }
+    public boolean isJanitorArchiveEnabled() { return getCachedOrLoad("database.janitor.archive", Boolean.class, true); }
+    public boolean isArchiveTierEnabled() { return getCachedOrLoad("database.archive-tier.enabled", Boolean.class, false); }
+    public int getArchiveTierDays() { return getCachedOrLoad("database.archive-tier.inactive-days", Integer.class, 90); }
+    public boolean isChangeFeedEnabled() { return getCachedOrLoad("database.change-feed.enabled", Boolean.class, false); }
+    public long getChangeFeedPollInterval() { return getCachedOrLoad("database.change-feed.poll-interval-ms", Integer.class, 1000); }
+    public int getChangeFeedRetentionMinutes() { return getCachedOrLoad("database.change-feed.retention-minutes", Integer.class, 60); }
+    public boolean isPostgresNotifyEnabled() { return getCachedOrLoad("database.postgres-notify", Boolean.class, false); }
+
+    public boolean isExportCompressed() { return getCachedOrLoad("export.compress", Boolean.class, true); }
+    public long getExportProgressInterval() { return getCachedOrLoad("export.progress-interval", Integer.class, 10000); }
 
     public String getMongoConnectionString() { return getCachedOrLoad("database.mongodb.connection-string", String.class, "mongodb://localhost:27017"); }
     public String getMongoDatabase() { return getCachedOrLoad("database.mongodb.database", String.class, "controlbans"); }
@@ -80,12 +95,15 @@ public class ConfigManager {
     public String getRedisPassword() { return getCachedOrLoad("redis.password", String.class, ""); }
     public boolean isRedisPubSubEnabled() { return getCachedOrLoad("redis.pubsub", Boolean.class, true); }
     public int getRedisCacheTTL() { return getCachedOrLoad("redis.cache-ttl", Integer.class, 300); }
+    public int getRedisNegativeCacheTTL() { return getCachedOrLoad("redis.negative-cache-ttl", Integer.class, 30); }
 
     public int getPoolMaximumSize() { return getCachedOrLoad("database.pool.maximum-pool-size", Integer.class, 10); }
     public int getPoolMinimumIdle() { return getCachedOrLoad("database.pool.minimum-idle", Integer.class, 5); }
     public long getConnectionTimeout() { return getCachedOrLoad("database.pool.connection-timeout", Long.class, 30000L); }
     public long getIdleTimeout() { return getCachedOrLoad("database.pool.idle-timeout", Long.class, 300000L); }
     public long getMaxLifetime() { return getCachedOrLoad("database.pool.max-lifetime", Long.class, 1800000L); }
+    public int getSchedulerThreads(QueryPriority priority) { return getCachedOrLoad("database.scheduler." + priority.getConfigKey() + ".threads", Integer.class, priority.getDefaultThreads()); }
+    public int getSchedulerQueueSize(QueryPriority priority) { return getCachedOrLoad("database.scheduler." + priority.getConfigKey() + ".queue-size", Integer.class, priority.getDefaultQueueSize()); }
 
     public boolean isAltPunishEnabled() { return getCachedOrLoad("alts-punish.enabled", Boolean.class, false); }
     public double getAltMinConfidence() { return getCachedOrLoad("alts-punish.safety.min-confidence", Double.class, 0.8); }
@@ -109,6 +127,13 @@ public class ConfigManager {
     public long getPunishmentCheckTTL() { return getCachedOrLoad("cache.ttl.punishment-check", Long.class, 60L); }
     public long getAltLookupTTL() { return getCachedOrLoad("cache.ttl.alt-lookup", Long.class, 600L); }
     public int getCacheMaxSize() { return getCachedOrLoad("cache.max-size", Integer.class, 10000); }
+    public boolean isRefreshAheadEnabled() { return getCachedOrLoad("cache.refresh-ahead.enabled", Boolean.class, true); }
+    public double getRefreshAheadThreshold() { return Math.min(0.95, Math.max(0.1, getCachedOrLoad("cache.refresh-ahead.threshold", Double.class, 0.75))); }
+    public boolean isActiveIndexEnabled() { return getCachedOrLoad("cache.active-index.enabled", Boolean.class, true); }
+    public long getActiveIndexReloadInterval() { return getCachedOrLoad("cache.active-index.reload-interval", Long.class, 120L); }
+    public boolean isNegativeFilterEnabled() { return getCachedOrLoad("cache.negative-filter.enabled", Boolean.class, true); }
+    public long getNegativeFilterExpectedInsertions() { return getCachedOrLoad("cache.negative-filter.expected-insertions", Long.class, 100000L); }
+    public double getNegativeFilterFalsePositiveRate() { return getCachedOrLoad("cache.negative-filter.false-positive-rate", Double.class, 0.01); }
 
     public String getDefaultBanReason() { return getCachedOrLoad("punishments.default-reasons.ban", String.class, "Unspecified"); }
     public String getDefaultMuteReason() { return getCachedOrLoad("punishments.default-reasons.mute", String.class, "Unspecified"); }
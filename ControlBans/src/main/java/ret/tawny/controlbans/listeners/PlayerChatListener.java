@@ -180,7 +180,9 @@ public class PlayerChatListener implements Listener {
 
     @EventHandler
     public void onJoin(PlayerJoinEvent event) {
-        preloadMuteState(event.getPlayer());
+        if (!muteStates.containsKey(event.getPlayer().getUniqueId())) {
+            preloadMuteState(event.getPlayer());
+        }
     }
 
     @EventHandler
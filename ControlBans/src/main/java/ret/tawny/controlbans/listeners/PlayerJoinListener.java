@@ -10,6 +10,7 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import ret.tawny.controlbans.ControlBansPlugin;
+import ret.tawny.controlbans.model.LoginState;
 import ret.tawny.controlbans.model.Punishment;
 import ret.tawny.controlbans.services.PunishmentService;
 
@@ -35,57 +36,26 @@ public class PlayerJoinListener implements Listener {
         final UUID uuid = event.getUniqueId();
         final String ip = event.getAddress().getHostAddress();
 
-        CompletableFuture<Optional<Punishment>> banFuture = punishmentService.getActiveBan(uuid)
-                .completeOnTimeout(Optional.empty(), LOGIN_CHECK_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                .exceptionally(exception -> {
-                    plugin.getLogger().warning("Failed to check active ban during pre-login for " + uuid + ": " + exception.getMessage());
-                    return Optional.empty();
-                });
-
-        CompletableFuture<Optional<Punishment>> ipBanFuture = punishmentService.getActiveIpBan(ip)
-                .completeOnTimeout(Optional.empty(), LOGIN_CHECK_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                .exceptionally(exception -> {
-                    plugin.getLogger().warning("Failed to check active IP ban during pre-login for " + ip + ": " + exception.getMessage());
-                    return Optional.empty();
-                });
-
-        CompletableFuture<Optional<Punishment>> muteFuture = punishmentService.getActiveMute(uuid)
-                .completeOnTimeout(Optional.empty(), LOGIN_CHECK_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                .exceptionally(exception -> Optional.empty());
-
-        CompletableFuture<Optional<Punishment>> ipMuteFuture = punishmentService.getActiveIpMute(ip)
-                .completeOnTimeout(Optional.empty(), LOGIN_CHECK_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                .exceptionally(exception -> Optional.empty());
-
         CompletableFuture<Boolean> blacklistFuture = checkBlacklist(uuid);
 
-        CompletableFuture.allOf(banFuture, ipBanFuture, blacklistFuture, muteFuture, ipMuteFuture)
-                .completeOnTimeout(null, LOGIN_CHECK_TIMEOUT_MS, TimeUnit.MILLISECONDS)
-                .join();
-
-        if (plugin.getPlayerChatListener() != null) {
-            plugin.getPlayerChatListener().preloadMuteState(uuid, ip);
+        LoginState loginState = punishmentService.getIndexedLoginState(uuid, ip);
+        if (loginState == null) {
+            loginState = lookupLoginState(uuid, ip);
         }
 
-        Optional<Punishment> banOptional = banFuture.getNow(Optional.empty());
-        if (banOptional.isPresent() && !banOptional.get().isExpired()) {
+        Optional<Punishment> banOptional = loginState != null ? loginState.effectiveBan() : Optional.empty();
+        if (banOptional.isPresent()) {
             Punishment ban = banOptional.get();
+            if (!ban.isIpBan() && (ban.getTargetName() == null || ban.getTargetName().equalsIgnoreCase("unknown"))) {
+                ban = ban.toBuilder().targetName(event.getName()).build();
+            }
             Component disconnectComponent = plugin.getNotificationService().formatKickScreen(ban);
             String disconnectMessage = LegacyComponentSerializer.legacySection().serialize(disconnectComponent);
             event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_BANNED, disconnectMessage);
             return;
         }
 
-        Optional<Punishment> ipBanOptional = ipBanFuture.getNow(Optional.empty());
-        if (ipBanOptional.isPresent() && !ipBanOptional.get().isExpired()) {
-            Punishment ipBan = ipBanOptional.get();
-            Component disconnectComponent = plugin.getNotificationService().formatKickScreen(ipBan);
-            String disconnectMessage = LegacyComponentSerializer.legacySection().serialize(disconnectComponent);
-            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_BANNED, disconnectMessage);
-            return;
-        }
-
-        boolean isBlacklisted = blacklistFuture.getNow(false);
+        boolean isBlacklisted = blacklistFuture.join();
         if (isBlacklisted) {
             String reason = plugin.getConfigManager().getMCBlacklistReason();
             Component message = plugin.getLocaleManager().getMessage("errors.blacklisted", Placeholder.unparsed("reason", reason));
@@ -93,6 +63,20 @@ public class PlayerJoinListener implements Listener {
             event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_BANNED, disconnectMessage);
             return;
         }
+
+        if (loginState != null && plugin.getPlayerChatListener() != null) {
+            plugin.getPlayerChatListener().cacheMuteState(uuid, loginState.effectiveMute().orElse(null));
+        }
+    }
+
+    private LoginState lookupLoginState(UUID uuid, String ip) {
+        return punishmentService.getLoginState(uuid, ip)
+                .completeOnTimeout(null, LOGIN_CHECK_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .exceptionally(exception -> {
+                    plugin.getLogger().warning("Failed to check login state during pre-login for " + uuid + ": " + exception.getMessage());
+                    return null;
+                })
+                .join();
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
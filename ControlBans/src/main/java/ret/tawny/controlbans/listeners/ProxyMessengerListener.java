@@ -58,7 +58,7 @@ public class ProxyMessengerListener implements PluginMessageListener {
         }
         try {
             UUID playerUuid = UUID.fromString(json.get("playerUuid").getAsString());
-            plugin.getCacheService().invalidatePlayerPunishments(playerUuid);
+            plugin.getPunishmentService().handleRemoteInvalidation(playerUuid);
             if (plugin.getPlayerChatListener() != null) {
                 plugin.getPlayerChatListener().invalidateMuteCache(playerUuid);
             }
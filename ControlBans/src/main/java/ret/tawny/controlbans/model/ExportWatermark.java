@@ -0,0 +1,26 @@
+package ret.tawny.controlbans.model;
+
+import java.util.concurrent.TimeUnit;
+
+public record ExportWatermark(String lastId, long lastChange) {
+
+    public static final ExportWatermark NONE = new ExportWatermark(null, 0L);
+    public static final int REWIND_IDS = 200;
+    public static final long REWIND_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    public String encode() {
+        return (lastId != null ? lastId : "") + ":" + lastChange;
+    }
+
+    public static ExportWatermark decode(String value) {
+        if (value == null || value.isEmpty()) {
+            return NONE;
+        }
+        int separator = value.lastIndexOf(':');
+        if (separator < 0) {
+            return new ExportWatermark(value, 0L);
+        }
+        String lastId = value.substring(0, separator);
+        return new ExportWatermark(lastId.isEmpty() ? null : lastId, Long.parseLong(value.substring(separator + 1)));
+    }
+}
@@ -0,0 +1,16 @@
+package ret.tawny.controlbans.model;
+
+import java.util.Optional;
+
+public record LoginState(Optional<Punishment> ban, Optional<Punishment> ipBan, Optional<Punishment> mute, Optional<Punishment> ipMute) {
+
+    public static final LoginState EMPTY = new LoginState(Optional.empty(), Optional.empty(), Optional.empty(), Optional.empty());
+
+    public Optional<Punishment> effectiveBan() {
+        return ban.filter(p -> !p.isExpired()).or(() -> ipBan.filter(p -> !p.isExpired()));
+    }
+
+    public Optional<Punishment> effectiveMute() {
+        return mute.filter(p -> !p.isExpired()).or(() -> ipMute.filter(p -> !p.isExpired()));
+    }
+}
@@ -0,0 +1,8 @@
+package ret.tawny.controlbans.model;
+
+public record PageCursor(long time, String punishmentId) {
+
+    public static PageCursor after(Punishment punishment) {
+        return new PageCursor(punishment.getCreatedTime(), punishment.getPunishmentId() != null ? punishment.getPunishmentId() : "");
+    }
+}
@@ -18,6 +18,9 @@ public class Punishment {
     private final boolean silent;
     private final boolean ipBan;
     private final boolean active;
+    private final UUID removedByUuid;
+    private final String removedByName;
+    private final long removedByDate;
 
     private Punishment(Builder builder) {
         this.id = builder.id;
@@ -35,6 +38,9 @@ public class Punishment {
         this.silent = builder.silent;
         this.ipBan = builder.ipBan;
         this.active = builder.active;
+        this.removedByUuid = builder.removedByUuid;
+        this.removedByName = builder.removedByName;
+        this.removedByDate = builder.removedByDate;
     }
 
     public static Builder builder() {
@@ -57,7 +63,10 @@ public class Punishment {
                 .serverOrigin(this.serverOrigin)
                 .silent(this.silent)
                 .ipBan(this.ipBan)
-                .active(this.active);
+                .active(this.active)
+                .removedByUuid(this.removedByUuid)
+                .removedByName(this.removedByName)
+                .removedByDate(this.removedByDate);
     }
 
     public int getId() {
@@ -120,6 +129,18 @@ public class Punishment {
         return active;
     }
 
+    public UUID getRemovedByUuid() {
+        return removedByUuid;
+    }
+
+    public String getRemovedByName() {
+        return removedByName;
+    }
+
+    public long getRemovedByDate() {
+        return removedByDate;
+    }
+
     public boolean isPermanent() {
         return expiryTime == -1 || expiryTime == 0;
     }
@@ -151,6 +172,9 @@ public class Punishment {
         private boolean silent;
         private boolean ipBan;
         private boolean active = true;
+        private UUID removedByUuid;
+        private String removedByName;
+        private long removedByDate;
 
         public Builder id(int id) {
             this.id = id;
@@ -227,6 +251,21 @@ public class Punishment {
             return this;
         }
 
+        public Builder removedByUuid(UUID removedByUuid) {
+            this.removedByUuid = removedByUuid;
+            return this;
+        }
+
+        public Builder removedByName(String removedByName) {
+            this.removedByName = removedByName;
+            return this;
+        }
+
+        public Builder removedByDate(long removedByDate) {
+            this.removedByDate = removedByDate;
+            return this;
+        }
+
         public Punishment build() {
             return new Punishment(this);
         }
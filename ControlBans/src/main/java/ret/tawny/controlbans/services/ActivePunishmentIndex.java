@@ -0,0 +1,235 @@
+package ret.tawny.controlbans.services;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import ret.tawny.controlbans.ControlBansPlugin;
+import ret.tawny.controlbans.model.LoginState;
+import ret.tawny.controlbans.model.Punishment;
+import ret.tawny.controlbans.storage.StorageInterface;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+
+public class ActivePunishmentIndex {
+
+    private final ControlBansPlugin plugin;
+    private final StorageInterface storage;
+
+    private final Map<UUID, Punishment> bans = new ConcurrentHashMap<>();
+    private final Map<String, Punishment> ipBans = new ConcurrentHashMap<>();
+    private final Map<UUID, Punishment> mutes = new ConcurrentHashMap<>();
+    private final Map<String, Punishment> ipMutes = new ConcurrentHashMap<>();
+    private final List<Map<?, Punishment>> allMaps = List.of(bans, ipBans, mutes, ipMutes);
+
+    private final Object lock = new Object();
+    private final Set<String> removedDuringReload = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean reloading = new AtomicBoolean(false);
+
+    private volatile boolean enabled = false;
+    private volatile boolean ready = false;
+    private BukkitTask reloadTask;
+
+    public ActivePunishmentIndex(ControlBansPlugin plugin, StorageInterface storage) {
+        this.plugin = plugin;
+        this.storage = storage;
+    }
+
+    public void start() {
+        if (!plugin.getConfigManager().isActiveIndexEnabled()) {
+            return;
+        }
+        enabled = true;
+        reload();
+        long intervalTicks = Math.max(60L, plugin.getConfigManager().getActiveIndexReloadInterval()) * 20L;
+        reloadTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::reload, intervalTicks, intervalTicks);
+    }
+
+    public void shutdown() {
+        if (reloadTask != null) {
+            reloadTask.cancel();
+            reloadTask = null;
+        }
+        enabled = false;
+        ready = false;
+    }
+
+    public CompletableFuture<Void> reload() {
+        if (!reloading.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        removedDuringReload.clear();
+        long loadStartedAt = System.currentTimeMillis();
+        return storage.getActivePunishments().thenAccept(punishments -> {
+            synchronized (lock) {
+                Map<UUID, Punishment> loadedBans = new HashMap<>();
+                Map<String, Punishment> loadedIpBans = new HashMap<>();
+                Map<UUID, Punishment> loadedMutes = new HashMap<>();
+                Map<String, Punishment> loadedIpMutes = new HashMap<>();
+                for (Punishment punishment : punishments) {
+                    if (removedDuringReload.contains(punishment.getPunishmentId())) continue;
+                    if (punishment.getType().isBan()) {
+                        put(loadedBans, loadedIpBans, punishment);
+                    } else if (punishment.getType().isMute()) {
+                        put(loadedMutes, loadedIpMutes, punishment);
+                    }
+                }
+                replaceContents(bans, loadedBans, loadStartedAt);
+                replaceContents(ipBans, loadedIpBans, loadStartedAt);
+                replaceContents(mutes, loadedMutes, loadStartedAt);
+                replaceContents(ipMutes, loadedIpMutes, loadStartedAt);
+            }
+
+            if (!ready) {
+                plugin.getLogger().info("Active punishment index loaded " + bans.size() + " bans, " + ipBans.size() + " IP bans and "
+                        + (mutes.size() + ipMutes.size()) + " mutes.");
+            }
+            ready = true;
+        }).exceptionally(throwable -> {
+            plugin.getLogger().log(Level.WARNING, "Failed to load the active punishment index. Logins will fall back to database lookups.", throwable);
+            return null;
+        }).whenComplete((ignored, throwable) -> {
+            removedDuringReload.clear();
+            reloading.set(false);
+        });
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public LoginState lookup(UUID uuid, String ip) {
+        return new LoginState(
+                live(bans, uuid),
+                ip != null ? live(ipBans, ip) : Optional.empty(),
+                live(mutes, uuid),
+                ip != null ? live(ipMutes, ip) : Optional.empty()
+        );
+    }
+
+    public void add(Punishment punishment) {
+        if (!enabled) return;
+        synchronized (lock) {
+            if (punishment.getType().isBan()) {
+                put(bans, ipBans, punishment);
+            } else if (punishment.getType().isMute()) {
+                put(mutes, ipMutes, punishment);
+            }
+        }
+    }
+
+    public void removeBan(UUID uuid) {
+        removeWhere(p -> p.getType().isBan() && uuid.equals(p.getTargetUuid()));
+    }
+
+    public void removeMute(UUID uuid) {
+        removeWhere(p -> p.getType().isMute() && uuid.equals(p.getTargetUuid()));
+    }
+
+    public void removeIpBan(String ip) {
+        removeWhere(p -> p.getType().isBan() && p.isIpBan() && ip.equals(p.getTargetIp()));
+    }
+
+    public void removeIpMute(String ip) {
+        removeWhere(p -> p.getType().isMute() && p.isIpBan() && ip.equals(p.getTargetIp()));
+    }
+
+    public CompletableFuture<Void> refresh(UUID uuid) {
+        if (!ready) {
+            return CompletableFuture.completedFuture(null);
+        }
+        Set<String> ips = new HashSet<>();
+        for (Map<?, Punishment> map : List.of(ipBans, ipMutes)) {
+            for (Punishment punishment : map.values()) {
+                String ip = punishment.getTargetIp();
+                if (uuid.equals(punishment.getTargetUuid()) || UUID.nameUUIDFromBytes(ip.getBytes()).equals(uuid)) {
+                    ips.add(ip);
+                }
+            }
+        }
+
+        List<CompletableFuture<Optional<Punishment>>> lookups = new ArrayList<>();
+        lookups.add(storage.getActiveBan(uuid));
+        lookups.add(storage.getActiveMute(uuid));
+        for (String ip : ips) {
+            lookups.add(storage.getActiveIpBan(ip));
+            lookups.add(storage.getActiveIpMute(ip));
+        }
+        return CompletableFuture.allOf(lookups.toArray(CompletableFuture[]::new)).thenRun(() -> {
+            Set<String> stillActive = new HashSet<>();
+            lookups.forEach(lookup -> lookup.join().ifPresent(p -> stillActive.add(p.getPunishmentId())));
+            removeWhere(p -> !stillActive.contains(p.getPunishmentId())
+                    && (uuid.equals(p.getTargetUuid()) || (p.isIpBan() && ips.contains(p.getTargetIp()))));
+            lookups.forEach(lookup -> lookup.join().ifPresent(this::add));
+        }).exceptionally(throwable -> {
+            plugin.getLogger().log(Level.WARNING, "Failed to refresh active punishment index for " + uuid, throwable);
+            return null;
+        });
+    }
+
+    private void removeWhere(Predicate<Punishment> match) {
+        if (!enabled) return;
+        synchronized (lock) {
+            Set<String> removedIds = new HashSet<>();
+            for (Map<?, Punishment> map : allMaps) {
+                for (Punishment punishment : map.values()) {
+                    if (match.test(punishment)) {
+                        removedIds.add(punishment.getPunishmentId());
+                    }
+                }
+            }
+            if (removedIds.isEmpty()) return;
+            for (Map<?, Punishment> map : allMaps) {
+                map.values().removeIf(p -> removedIds.contains(p.getPunishmentId()));
+            }
+            if (reloading.get()) {
+                removedDuringReload.addAll(removedIds);
+            }
+        }
+    }
+
+    public int size() {
+        return bans.size() + ipBans.size() + mutes.size() + ipMutes.size();
+    }
+
+    private void put(Map<UUID, Punishment> byUuid, Map<String, Punishment> byIp, Punishment punishment) {
+        if (!punishment.isActive() || punishment.isExpired()) {
+            return;
+        }
+        byUuid.merge(punishment.getTargetUuid(), punishment, ActivePunishmentIndex::newest);
+        if (punishment.isIpBan() && punishment.getTargetIp() != null) {
+            byIp.merge(punishment.getTargetIp(), punishment, ActivePunishmentIndex::newest);
+        }
+    }
+
+    private static Punishment newest(Punishment existing, Punishment candidate) {
+        return candidate.getCreatedTime() >= existing.getCreatedTime() ? candidate : existing;
+    }
+
+    private static <K> Optional<Punishment> live(Map<K, Punishment> map, K key) {
+        Punishment punishment = map.get(key);
+        if (punishment == null) {
+            return Optional.empty();
+        }
+        if (punishment.isExpired()) {
+            map.remove(key, punishment);
+            return Optional.empty();
+        }
+        return Optional.of(punishment);
+    }
+
+    private static <K> void replaceContents(Map<K, Punishment> target, Map<K, Punishment> loaded, long loadStartedAt) {
+        target.entrySet().removeIf(entry -> !loaded.containsKey(entry.getKey()) && entry.getValue().getCreatedTime() < loadStartedAt);
+        target.putAll(loaded);
+    }
+}
@@ -17,6 +17,9 @@ import java.util.logging.Level;
 
 public class AltService {
 
+    private static final String STAFF_PREFIX = "[ALT] ";
+    private static final int MAX_STAFF_NAME_LENGTH = 16;
+
     private final ControlBansPlugin plugin;
     private final StorageInterface storage;
     private final CacheService cacheService;
@@ -25,6 +28,7 @@ public class AltService {
         this.plugin = plugin;
         this.storage = storage;
         this.cacheService = cacheService;
+        cacheService.register(CacheNamespace.ALTS, plugin.getConfigManager()::getAltLookupTTL, this::loadAltAccounts);
     }
 
     private boolean isInvalidOrLocalIp(String ip) {
@@ -35,7 +39,11 @@ public class AltService {
     }
 
     public CompletableFuture<List<UUID>> findAltAccounts(UUID uuid) {
-        return cacheService.getOrCache("alts_" + uuid, () -> storage.getIpsForUuid(uuid).thenCompose(playerIps -> {
+        return cacheService.get(CacheNamespace.ALTS, uuid);
+    }
+
+    private CompletableFuture<List<UUID>> loadAltAccounts(UUID uuid) {
+        return storage.getIpsForUuid(uuid).thenCompose(playerIps -> {
             if (playerIps == null || playerIps.isEmpty()) {
                 return CompletableFuture.completedFuture(new ArrayList<>());
             }
@@ -64,7 +72,7 @@ public class AltService {
                         alts.remove(uuid);
                         return new ArrayList<>(alts);
                     });
-        }), 600L);
+        });
     }
 
     public CompletableFuture<Set<String>> findSharedIps(UUID uuid) {
@@ -77,14 +85,14 @@ public class AltService {
         });
     }
 
-    public CompletableFuture<Void> punishAlts(Punishment originalPunishment) {
-        if (!plugin.getConfigManager().isAltPunishEnabled()) {
-            return CompletableFuture.completedFuture(null);
+    public CompletableFuture<List<Punishment>> buildAltPunishments(Punishment originalPunishment) {
+        if (!plugin.getConfigManager().isAltPunishEnabled() || !originalPunishment.getType().isBan()) {
+            return CompletableFuture.completedFuture(List.of());
         }
 
         return findAltAccounts(originalPunishment.getTargetUuid())
                 .thenCompose(alts -> {
-                    List<CompletableFuture<Void>> punishmentFutures = new ArrayList<>();
+                    List<CompletableFuture<Punishment>> punishmentFutures = new ArrayList<>();
                     int maxPunishments = plugin.getConfigManager().getAltMaxPunishments();
 
                     int count = 0;
@@ -93,42 +101,52 @@ public class AltService {
                         punishmentFutures.add(createAltPunishment(altUuid, originalPunishment));
                         count++;
                     }
-                    return CompletableFuture.allOf(punishmentFutures.toArray(new CompletableFuture[0]));
+                    return CompletableFuture.allOf(punishmentFutures.toArray(new CompletableFuture[0]))
+                            .thenApply(v -> punishmentFutures.stream().map(CompletableFuture::join).toList());
+                })
+                .exceptionally(throwable -> {
+                    plugin.getLogger().log(Level.WARNING, "Failed to resolve alt accounts for " + originalPunishment.getTargetUuid(), throwable);
+                    return List.of();
                 });
     }
 
-    private CompletableFuture<Void> createAltPunishment(UUID altUuid, Punishment originalPunishment) {
+    private CompletableFuture<Punishment> createAltPunishment(UUID altUuid, Punishment originalPunishment) {
         String altReason = "Alt account of " + originalPunishment.getTargetName();
 
-        return storage.getLastKnownName(altUuid).thenCompose(altName -> {
-            Punishment altPunishment = Punishment.builder()
-                    .punishmentId(IdUtil.generatePunishmentId())
-                    .type(PunishmentType.BAN)
-                    .targetUuid(altUuid)
-                    .targetName(altName)
-                    .reason(altReason)
-                    .staffUuid(originalPunishment.getStaffUuid())
-                    .staffName("[ALT] " + originalPunishment.getStaffName())
-                    .createdTime(System.currentTimeMillis())
-                    .expiryTime(originalPunishment.getExpiryTime())
-                    .serverOrigin(originalPunishment.getServerOrigin())
-                    .silent(true)
-                    .ipBan(false)
-                    .active(true)
-                    .build();
-
-            return storage.insertBan(altPunishment).thenRun(() -> {
-                cacheService.invalidatePlayerPunishments(altUuid);
-
-                plugin.getSchedulerAdapter().runTask(() -> {
-                    org.bukkit.entity.Player altPlayer = org.bukkit.Bukkit.getPlayer(altUuid);
-                    if (altPlayer != null && altPlayer.isOnline()) {
-                        net.kyori.adventure.text.Component kickMessage = plugin.getNotificationService()
-                                .formatKickScreen(altPunishment);
-                        altPlayer.kick(kickMessage);
-                    }
-                });
-            });
+        return storage.getLastKnownName(altUuid).thenApply(altName -> Punishment.builder()
+                .punishmentId(IdUtil.generatePunishmentId(PunishmentType.BAN))
+                .type(PunishmentType.BAN)
+                .targetUuid(altUuid)
+                .targetName(altName)
+                .reason(altReason)
+                .staffUuid(originalPunishment.getStaffUuid())
+                .staffName(altStaffName(originalPunishment.getStaffName()))
+                .createdTime(System.currentTimeMillis())
+                .expiryTime(originalPunishment.getExpiryTime())
+                .serverOrigin(originalPunishment.getServerOrigin())
+                .silent(true)
+                .ipBan(false)
+                .active(true)
+                .build());
+    }
+
+    private static String altStaffName(String staffName) {
+        String name = STAFF_PREFIX + staffName;
+        return name.length() > MAX_STAFF_NAME_LENGTH ? name.substring(0, MAX_STAFF_NAME_LENGTH) : name;
+    }
+
+    public void onAltPunished(Punishment altPunishment) {
+        plugin.getActivePunishmentIndex().add(altPunishment);
+        plugin.getBanLookupFilter().add(altPunishment);
+        plugin.getPunishmentService().writeThrough(altPunishment);
+
+        plugin.getSchedulerAdapter().runTask(() -> {
+            org.bukkit.entity.Player altPlayer = org.bukkit.Bukkit.getPlayer(altPunishment.getTargetUuid());
+            if (altPlayer != null && altPlayer.isOnline()) {
+                net.kyori.adventure.text.Component kickMessage = plugin.getNotificationService()
+                        .formatKickScreen(altPunishment);
+                altPlayer.kick(kickMessage);
+            }
         });
     }
-}
\ No newline at end of file
+}
@@ -43,12 +43,19 @@ public class AutoModService {
 
         this.messageTimestamps = Caffeine.newBuilder()
                 .expireAfterWrite(1, TimeUnit.MINUTES)
+                .recordStats()
                 .build();
 
         this.lastMessages = Caffeine.newBuilder()
                 .expireAfterWrite(1, TimeUnit.MINUTES)
+                .recordStats()
                 .build();
 
+        if (plugin.getCacheService() != null) {
+            plugin.getCacheService().registerExternalCache("automod-timestamps", messageTimestamps);
+            plugin.getCacheService().registerExternalCache("automod-last-message", lastMessages);
+        }
+
         loadRules();
     }
 
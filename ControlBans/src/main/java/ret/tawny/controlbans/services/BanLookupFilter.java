@@ -0,0 +1,183 @@
+package ret.tawny.controlbans.services;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import ret.tawny.controlbans.ControlBansPlugin;
+import ret.tawny.controlbans.model.Punishment;
+import ret.tawny.controlbans.storage.StorageInterface;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+public class BanLookupFilter {
+
+    private static final String UUID_PREFIX = "u:";
+    private static final String IP_PREFIX = "i:";
+
+    private final ControlBansPlugin plugin;
+    private final StorageInterface storage;
+
+    private final Object lock = new Object();
+    private final Set<String> addedDuringRebuild = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    private final AtomicInteger staleRemovals = new AtomicInteger();
+
+    private volatile BloomFilter<String> filter;
+    private volatile int indexedKeys;
+    private volatile boolean enabled = false;
+    private BukkitTask rebuildTask;
+
+    public BanLookupFilter(ControlBansPlugin plugin, StorageInterface storage) {
+        this.plugin = plugin;
+        this.storage = storage;
+    }
+
+    public void start() {
+        if (!plugin.getConfigManager().isNegativeFilterEnabled()) {
+            return;
+        }
+        enabled = true;
+        rebuild();
+        long intervalTicks = Math.max(60L, plugin.getConfigManager().getActiveIndexReloadInterval()) * 20L;
+        rebuildTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::rebuild, intervalTicks, intervalTicks);
+    }
+
+    public void shutdown() {
+        if (rebuildTask != null) {
+            rebuildTask.cancel();
+            rebuildTask = null;
+        }
+        enabled = false;
+        filter = null;
+    }
+
+    public CompletableFuture<Void> rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        addedDuringRebuild.clear();
+        return storage.getActivePunishments().thenAccept(punishments -> {
+            Set<String> keys = new HashSet<>();
+            for (Punishment punishment : punishments) {
+                if (punishment.getType().isBan()) {
+                    keys.addAll(keysFor(punishment));
+                }
+            }
+
+            long expected = Math.max(plugin.getConfigManager().getNegativeFilterExpectedInsertions(), keys.size() * 2L);
+            BloomFilter<String> rebuilt = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expected,
+                    plugin.getConfigManager().getNegativeFilterFalsePositiveRate());
+            keys.forEach(rebuilt::put);
+
+            synchronized (lock) {
+                addedDuringRebuild.forEach(rebuilt::put);
+                addedDuringRebuild.clear();
+                filter = rebuilt;
+                indexedKeys = keys.size();
+                staleRemovals.set(0);
+            }
+            plugin.getLogger().info(String.format("Ban lookup filter built with %d keys (%.1f KB, expected false-positive rate %.4f%%).",
+                    keys.size(), getMemoryFootprintBytes() / 1024.0, getFalsePositiveRate() * 100));
+        }).whenComplete((ignored, throwable) -> {
+            rebuilding.set(false);
+            if (throwable != null) {
+                plugin.getLogger().log(Level.WARNING, "Failed to build ban lookup filter. Ban lookups will skip it until the next rebuild.", throwable);
+            }
+        });
+    }
+
+    public boolean mightBeBanned(UUID uuid) {
+        BloomFilter<String> current = filter;
+        return current == null || current.mightContain(UUID_PREFIX + uuid);
+    }
+
+    public boolean mightBeIpBanned(String ip) {
+        BloomFilter<String> current = filter;
+        return current == null || ip == null || current.mightContain(IP_PREFIX + ip);
+    }
+
+    public void add(Punishment punishment) {
+        if (!enabled || !punishment.getType().isBan()) {
+            return;
+        }
+        synchronized (lock) {
+            BloomFilter<String> current = filter;
+            for (String key : keysFor(punishment)) {
+                if (current != null) {
+                    current.put(key);
+                }
+                if (rebuilding.get()) {
+                    addedDuringRebuild.add(key);
+                }
+            }
+        }
+    }
+
+    public void recordStaleRemoval() {
+        if (!enabled) {
+            return;
+        }
+        int stale = staleRemovals.incrementAndGet();
+        if (stale > Math.max(100, indexedKeys / 10)) {
+            rebuild();
+        }
+    }
+
+    public CompletableFuture<Void> refresh(UUID uuid) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return storage.getActiveBan(uuid).thenAccept(ban -> ban.ifPresent(this::add)).exceptionally(throwable -> {
+            plugin.getLogger().log(Level.WARNING, "Failed to refresh ban lookup filter for " + uuid, throwable);
+            return null;
+        });
+    }
+
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    public double getFalsePositiveRate() {
+        BloomFilter<String> current = filter;
+        return current != null ? current.expectedFpp() : 0.0;
+    }
+
+    public long getMemoryFootprintBytes() {
+        BloomFilter<String> current = filter;
+        if (current == null) {
+            return 0L;
+        }
+        CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream());
+        try {
+            current.writeTo(out);
+        } catch (IOException ignored) {
+        }
+        return out.getCount();
+    }
+
+    public long getApproximateKeyCount() {
+        BloomFilter<String> current = filter;
+        return current != null ? current.approximateElementCount() : 0L;
+    }
+
+    private static Set<String> keysFor(Punishment punishment) {
+        Set<String> keys = new HashSet<>();
+        keys.add(UUID_PREFIX + punishment.getTargetUuid());
+        if (punishment.isIpBan() && punishment.getTargetIp() != null) {
+            keys.add(IP_PREFIX + punishment.getTargetIp());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,18 @@
+package ret.tawny.controlbans.services;
+
+public enum CacheNamespace {
+    BAN(true),
+    MUTE(true),
+    VOICEMUTE(true),
+    ALTS(false);
+
+    private final boolean punishmentState;
+
+    CacheNamespace(boolean punishmentState) {
+        this.punishmentState = punishmentState;
+    }
+
+    public boolean isPunishmentState() {
+        return punishmentState;
+    }
+}
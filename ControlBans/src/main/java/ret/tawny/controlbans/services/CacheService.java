@@ -1,57 +1,100 @@
 package ret.tawny.controlbans.services;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.bukkit.Bukkit;
 import ret.tawny.controlbans.config.ConfigManager;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 
 public class CacheService {
 
     private final ConfigManager config;
 
-    private final Cache<String, Object> generalCache;
-    private final Cache<UUID, Boolean> activePunishmentCache;
+    private final Map<CacheNamespace, NamespaceLoader> loaders = new ConcurrentHashMap<>();
+    private final Map<CacheNamespace, AsyncLoadingCache<UUID, Entry>> playerCaches = new EnumMap<>(CacheNamespace.class);
+    private final AsyncCache<String, UUID> nameCache;
     private final Cache<String, List<String>> offlineSuggestions;
+    private final Map<String, Cache<?, ?>> externalCaches = new ConcurrentHashMap<>();
 
     public CacheService(ConfigManager config) {
         this.config = config;
 
-        this.generalCache = Caffeine.newBuilder()
-                .maximumSize(config.getCacheMaxSize())
-                .expireAfterWrite(config.getPlayerLookupTTL(), TimeUnit.SECONDS)
-                .build();
+        for (CacheNamespace namespace : CacheNamespace.values()) {
+            Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                    .maximumSize(config.getCacheMaxSize())
+                    .recordStats();
+            if (config.isRefreshAheadEnabled()) {
+                long refreshSeconds = Math.max(1L, (long) (config.getPunishmentCheckTTL() * config.getRefreshAheadThreshold()));
+                builder.refreshAfterWrite(refreshSeconds, TimeUnit.SECONDS);
+            }
+            playerCaches.put(namespace, builder
+                    .expireAfter(new EntryExpiry())
+                    .buildAsync(new PlayerCacheLoader(namespace)));
+        }
 
-        this.activePunishmentCache = Caffeine.newBuilder()
+        this.nameCache = Caffeine.newBuilder()
                 .maximumSize(config.getCacheMaxSize())
-                .expireAfterWrite(config.getPunishmentCheckTTL(), TimeUnit.SECONDS)
-                .build();
+                .expireAfterWrite(config.getPlayerLookupTTL(), TimeUnit.SECONDS)
+                .recordStats()
+                .buildAsync();
 
         this.offlineSuggestions = Caffeine.newBuilder()
                 .maximumSize(500)
                 .expireAfterWrite(30, TimeUnit.SECONDS)
+                .recordStats()
                 .build();
     }
 
+    public <T> void register(CacheNamespace namespace, LongSupplier ttlSeconds, Function<UUID, CompletableFuture<T>> loader) {
+        loaders.put(namespace, new NamespaceLoader(ttlSeconds, loader::apply));
+    }
+
     @SuppressWarnings("unchecked")
-    public <T> CompletableFuture<T> getOrCache(String key, CacheLoader<T> loader, long ttlSeconds) {
+    public <T> CompletableFuture<T> get(CacheNamespace namespace, UUID uuid) {
+        NamespaceLoader loader = loaders.get(namespace);
+        if (loader == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No cache loader registered for " + namespace));
+        }
         if (!config.isCacheEnabled()) {
-            return loader.load();
+            return (CompletableFuture<T>) loader.loader().apply(uuid);
         }
 
-        T cached = (T) generalCache.getIfPresent(key);
-        if (cached != null) {
-            return CompletableFuture.completedFuture(cached);
+        return playerCaches.get(namespace).get(uuid)
+                .thenApply(entry -> entry != null ? (T) entry.value() : null);
+    }
+
+    public void put(CacheNamespace namespace, UUID uuid, Object value) {
+        NamespaceLoader loader = loaders.get(namespace);
+        if (!config.isCacheEnabled() || loader == null || value == null) {
+            return;
         }
+        long ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1L, loader.ttlSeconds().getAsLong()));
+        playerCaches.get(namespace).put(uuid, CompletableFuture.completedFuture(new Entry(value, ttlNanos, System.nanoTime())));
+    }
 
-        return loader.load().whenComplete((result, throwable) -> {
-            if (throwable == null && result != null) {
-                generalCache.put(key, result);
-            }
-        });
+    public CompletableFuture<UUID> getOrCacheUuid(String playerName, CacheLoader<UUID> loader) {
+        if (!config.isCacheEnabled()) {
+            return loader.load();
+        }
+
+        return nameCache.get(playerName.toLowerCase(), (key, executor) -> loader.load());
     }
 
     public void cacheOfflineSuggestions(String query, List<String> names) {
@@ -62,24 +105,37 @@ public class CacheService {
         return offlineSuggestions.getIfPresent(query.toLowerCase());
     }
 
-    public void invalidate(String key) {
-        generalCache.invalidate(key);
+    public void invalidate(CacheNamespace namespace, UUID uuid) {
+        playerCaches.get(namespace).synchronous().invalidate(uuid);
     }
 
     public void invalidatePlayerPunishments(UUID uuid) {
-        String uuidStr = uuid.toString();
-        generalCache.asMap().keySet().removeIf(key ->
-                key.startsWith("ban_" + uuidStr) ||
-                        key.startsWith("mute_" + uuidStr) ||
-                        key.startsWith("voicemute_" + uuidStr) ||
-                        key.startsWith("history_" + uuidStr)
-        );
-        activePunishmentCache.invalidate(uuid);
+        playerCaches.forEach((namespace, cache) -> {
+            if (namespace.isPunishmentState()) {
+                cache.synchronous().invalidate(uuid);
+            }
+        });
+    }
+
+    public void registerExternalCache(String name, Cache<?, ?> cache) {
+        externalCaches.put(name, cache);
+    }
+
+    public List<CacheMetrics> getMetrics() {
+        Map<String, Cache<?, ?>> caches = new LinkedHashMap<>();
+        playerCaches.forEach((namespace, cache) -> caches.put(namespace.name().toLowerCase(), cache.synchronous()));
+        caches.put("names", nameCache.synchronous());
+        caches.put("suggestions", offlineSuggestions);
+        caches.putAll(externalCaches);
+
+        List<CacheMetrics> metrics = new ArrayList<>();
+        caches.forEach((name, cache) -> metrics.add(new CacheMetrics(name, cache.stats(), cache.estimatedSize())));
+        return metrics;
     }
 
     public void clear() {
-        generalCache.invalidateAll();
-        activePunishmentCache.invalidateAll();
+        playerCaches.values().forEach(cache -> cache.synchronous().invalidateAll());
+        nameCache.synchronous().invalidateAll();
         offlineSuggestions.invalidateAll();
     }
 
@@ -87,6 +143,70 @@ public class CacheService {
         clear();
     }
 
+    private CompletableFuture<Entry> load(CacheNamespace namespace, UUID uuid) {
+        NamespaceLoader loader = loaders.get(namespace);
+        if (loader == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1L, loader.ttlSeconds().getAsLong()));
+        return loader.loader().apply(uuid)
+                .thenApply(value -> value != null ? new Entry(value, ttlNanos, System.nanoTime()) : null);
+    }
+
+    public record CacheMetrics(String name, CacheStats stats, long estimatedSize) {
+    }
+
+    private record Entry(Object value, long ttlNanos, long loadedAt) {
+        private long remaining(long now) {
+            return Math.max(0L, ttlNanos - (now - loadedAt));
+        }
+    }
+
+    private record NamespaceLoader(LongSupplier ttlSeconds, Function<UUID, CompletableFuture<?>> loader) {
+    }
+
+    private final class PlayerCacheLoader implements AsyncCacheLoader<UUID, Entry> {
+        private final CacheNamespace namespace;
+
+        private PlayerCacheLoader(CacheNamespace namespace) {
+            this.namespace = namespace;
+        }
+
+        @Override
+        public CompletableFuture<Entry> asyncLoad(UUID uuid, Executor executor) {
+            return load(namespace, uuid);
+        }
+
+        @Override
+        public CompletableFuture<Entry> asyncReload(UUID uuid, Entry oldValue, Executor executor) {
+            if (Bukkit.getPlayer(uuid) == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            long age = System.nanoTime() - oldValue.loadedAt();
+            if (age < oldValue.ttlNanos() * config.getRefreshAheadThreshold()) {
+                return CompletableFuture.completedFuture(oldValue);
+            }
+            return load(namespace, uuid);
+        }
+    }
+
+    private static final class EntryExpiry implements Expiry<UUID, Entry> {
+        @Override
+        public long expireAfterCreate(UUID key, Entry entry, long currentTime) {
+            return entry.remaining(currentTime);
+        }
+
+        @Override
+        public long expireAfterUpdate(UUID key, Entry entry, long currentTime, long currentDuration) {
+            return entry.remaining(currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(UUID key, Entry entry, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
     @FunctionalInterface
     public interface CacheLoader<T> {
         CompletableFuture<T> load();
@@ -3,8 +3,8 @@ package ret.tawny.controlbans.services;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.stream.JsonReader;
-import com.google.gson.stream.JsonWriter;
 import ret.tawny.controlbans.ControlBansPlugin;
+import ret.tawny.controlbans.model.ExportWatermark;
 import ret.tawny.controlbans.model.Punishment;
 import ret.tawny.controlbans.model.PunishmentType;
 
@@ -14,11 +14,19 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class DataExportService {
 
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final List<String> EXPORT_EXTENSIONS = List.of(".ndjson.gz", ".ndjson", ".json");
+
     private final ControlBansPlugin plugin;
     private final PunishmentService punishmentService;
     private final Gson gson;
@@ -27,68 +35,36 @@ public class DataExportService {
         this.plugin = plugin;
         this.punishmentService = punishmentService;
         this.gson = new GsonBuilder()
-                .setPrettyPrinting()
                 .disableHtmlEscaping()
                 .create();
     }
 
-    public CompletableFuture<File> exportAll() {
-        return exportFiltered(null);
+    public CompletableFuture<ExportResult> exportAll(LongConsumer progress) {
+        return exportFiltered(null, progress);
     }
 
-    public CompletableFuture<File> exportFiltered(PunishmentType type) {
-        return punishmentService.getAllPunishments().thenApply(punishments -> {
-            try {
-                File exportDir = new File(plugin.getDataFolder(), "exports");
-                if (!exportDir.exists()) {
-                    exportDir.mkdirs();
-                }
-
-                String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
-                String typeStr = type != null ? "-" + type.name().toLowerCase() : "";
-                File exportFile = new File(exportDir, "controlbans-export" + typeStr + "-" + timestamp + ".json");
-
-                List<Punishment> filteredList;
-                if (type != null) {
-                    filteredList = punishments.stream()
-                            .filter(p -> p.getType() == type)
-                            .toList();
-                } else {
-                    filteredList = punishments;
-                }
-
-                try (FileOutputStream fos = new FileOutputStream(exportFile);
-                     OutputStreamWriter osw = new OutputStreamWriter(fos, StandardCharsets.UTF_8);
-                     JsonWriter writer = new JsonWriter(osw)) {
-
-                    writer.setIndent("  ");
-                    writer.beginObject();
-
-                    writer.name("plugin").value("ControlBans");
-                    writer.name("version").value("4.5");
-                    writer.name("exportedAt").value(System.currentTimeMillis());
-                    writer.name("totalRecords").value(filteredList.size());
-
-                    writer.name("records");
-                    writer.beginArray();
-
-                    for (Punishment p : filteredList) {
-                        ExportRecord record = toExportRecord(p);
-                        gson.toJson(record, ExportRecord.class, writer);
-                    }
-
-                    writer.endArray();
-                    writer.endObject();
-                }
+    public CompletableFuture<ExportResult> exportFiltered(PunishmentType type, LongConsumer progress) {
+        String typeStr = type != null ? "-" + type.name().toLowerCase() : "";
+        ExportWriter out;
+        try {
+            out = new ExportWriter("controlbans-export" + typeStr, progress);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return punishmentService.streamPunishments(type, out::write).handle((count, throwable) -> out.finish(throwable));
+    }
 
-                plugin.getLogger()
-                        .info("Exported " + filteredList.size() + " punishment records to " + exportFile.getName());
-                return exportFile;
-            } catch (Exception e) {
-                plugin.getLogger().severe("Failed to export punishment data: " + e.getMessage());
-                e.printStackTrace();
-                return null;
+    public CompletableFuture<ExportResult> exportIncremental(LongConsumer progress) {
+        return punishmentService.getExportWatermarks().thenCompose(since -> {
+            ExportWriter out;
+            try {
+                out = new ExportWriter("controlbans-delta", progress);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
             }
+            CompletableFuture<Map<String, ExportWatermark>> streamed = punishmentService.streamChangedPunishments(since, out::write);
+            return streamed.handle((marks, throwable) -> out.finish(throwable))
+                    .thenCompose(result -> punishmentService.saveExportWatermarks(streamed.join()).thenApply(v -> result));
         });
     }
 
@@ -99,48 +75,37 @@ public class DataExportService {
                     return new ImportResult(false, 0, 0, "File not found: " + file.getName());
                 }
 
-                int imported = 0;
-                int failed = 0;
-                List<String> errors = new ArrayList<>();
-
-                try (FileInputStream fis = new FileInputStream(file);
-                     InputStreamReader isr = new InputStreamReader(fis, StandardCharsets.UTF_8);
-                     JsonReader reader = new JsonReader(isr)) {
-
-                    reader.beginObject();
-
-                    while (reader.hasNext()) {
-                        String name = reader.nextName();
-                        if (name.equals("records")) {
-                            reader.beginArray();
-                            while (reader.hasNext()) {
-                                try {
-                                    ExportRecord record = gson.fromJson(reader, ExportRecord.class);
-                                    Punishment punishment = fromExportRecord(record);
-                                    punishmentService.importPunishment(punishment).join();
-                                    imported++;
-                                } catch (Exception e) {
-                                    failed++;
-                                    if (errors.size() < 10) {
-                                        errors.add("Failed to import record: " + e.getMessage());
-                                    }
-                                }
+                ImportTally tally = new ImportTally();
+                List<Punishment> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+                String fileName = file.getName();
+
+                try (BufferedReader reader = openReader(file)) {
+                    if (fileName.endsWith(".ndjson") || fileName.endsWith(".ndjson.gz")) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            if (line.isBlank()) continue;
+                            try {
+                                batch.add(fromExportRecord(gson.fromJson(line, ExportRecord.class)));
+                            } catch (Exception e) {
+                                tally.fail(e);
+                            }
+                            if (batch.size() >= IMPORT_BATCH_SIZE) {
+                                importBatch(batch, tally);
                             }
-                            reader.endArray();
-                        } else {
-                            reader.skipValue();
                         }
+                        importBatch(batch, tally);
+                    } else {
+                        importLegacyJson(new JsonReader(reader), batch, tally);
                     }
-                    reader.endObject();
                 }
 
-                String message = "Imported " + imported + " records" + (failed > 0 ? ", " + failed + " failed" : "");
-                if (!errors.isEmpty()) {
-                    message += "\nFirst " + errors.size() + " errors:\n" + String.join("\n", errors);
+                String message = "Imported " + tally.imported + " records" + (tally.failed > 0 ? ", " + tally.failed + " failed" : "");
+                if (!tally.errors.isEmpty()) {
+                    message += "\nFirst " + tally.errors.size() + " errors:\n" + String.join("\n", tally.errors);
                 }
 
-                plugin.getLogger().info("Import complete: " + imported + " success, " + failed + " failed");
-                return new ImportResult(true, imported, failed, message);
+                plugin.getLogger().info("Import complete: " + tally.imported + " success, " + tally.failed + " failed");
+                return new ImportResult(true, tally.imported, tally.failed, message);
             } catch (Exception e) {
                 plugin.getLogger().severe("Failed to import punishment data: " + e.getMessage());
                 e.printStackTrace();
@@ -149,16 +114,134 @@ public class DataExportService {
         });
     }
 
+    private BufferedReader openReader(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 64 * 1024);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    private void importLegacyJson(JsonReader reader, List<Punishment> batch, ImportTally tally) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (name.equals("records")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    try {
+                        ExportRecord record = gson.fromJson(reader, ExportRecord.class);
+                        batch.add(fromExportRecord(record));
+                    } catch (Exception e) {
+                        tally.fail(e);
+                    }
+                    if (batch.size() >= IMPORT_BATCH_SIZE) {
+                        importBatch(batch, tally);
+                    }
+                }
+                importBatch(batch, tally);
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void importBatch(List<Punishment> batch, ImportTally tally) {
+        if (batch.isEmpty()) return;
+        try {
+            tally.imported += punishmentService.importPunishments(List.copyOf(batch)).join();
+        } catch (Exception batchError) {
+            for (Punishment punishment : batch) {
+                try {
+                    if (punishmentService.importPunishment(punishment).join()) {
+                        tally.imported++;
+                    }
+                } catch (Exception e) {
+                    tally.fail(e);
+                }
+            }
+        }
+        batch.clear();
+    }
+
     public List<File> listExportFiles() {
         File exportDir = new File(plugin.getDataFolder(), "exports");
         if (!exportDir.exists()) {
             return List.of();
         }
 
-        File[] files = exportDir.listFiles((dir, name) -> name.endsWith(".json"));
+        File[] files = exportDir.listFiles((dir, name) -> EXPORT_EXTENSIONS.stream().anyMatch(name::endsWith));
         return files != null ? List.of(files) : List.of();
     }
 
+    public File resolveExportFile(String name) {
+        File exportDir = new File(plugin.getDataFolder(), "exports");
+        if (EXPORT_EXTENSIONS.stream().anyMatch(name::endsWith)) {
+            return new File(exportDir, name);
+        }
+        for (String extension : EXPORT_EXTENSIONS) {
+            File candidate = new File(exportDir, name + extension);
+            if (candidate.exists()) {
+                return candidate;
+            }
+        }
+        return new File(exportDir, name + ".json");
+    }
+
+    private final class ExportWriter {
+        private final File file;
+        private final Writer writer;
+        private final LongConsumer progress;
+        private final long progressInterval;
+        private long written;
+
+        private ExportWriter(String baseName, LongConsumer progress) throws IOException {
+            File exportDir = new File(plugin.getDataFolder(), "exports");
+            if (!exportDir.exists()) {
+                exportDir.mkdirs();
+            }
+
+            boolean compress = plugin.getConfigManager().isExportCompressed();
+            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss"));
+            this.file = new File(exportDir, baseName + "-" + timestamp + (compress ? ".ndjson.gz" : ".ndjson"));
+            this.progress = progress;
+            this.progressInterval = plugin.getConfigManager().getExportProgressInterval();
+
+            OutputStream out = new FileOutputStream(file);
+            this.writer = new BufferedWriter(new OutputStreamWriter(compress ? new GZIPOutputStream(out, 64 * 1024) : out, StandardCharsets.UTF_8));
+        }
+
+        private void write(Punishment punishment) {
+            try {
+                gson.toJson(toExportRecord(punishment), ExportRecord.class, writer);
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            written++;
+            if (progressInterval > 0 && written % progressInterval == 0) {
+                progress.accept(written);
+            }
+        }
+
+        private ExportResult finish(Throwable throwable) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (throwable == null) throwable = e;
+            }
+            if (throwable != null) {
+                file.delete();
+                plugin.getLogger().severe("Failed to export punishment data: " + throwable.getMessage());
+                throw new CompletionException(throwable);
+            }
+            plugin.getLogger().info("Exported " + written + " punishment records to " + file.getName());
+            return new ExportResult(file, written);
+        }
+    }
+
     private ExportRecord toExportRecord(Punishment p) {
         return new ExportRecord(
                 p.getPunishmentId(),
@@ -174,7 +257,10 @@ public class DataExportService {
                 p.getServerOrigin(),
                 p.isSilent(),
                 p.isIpBan(),
-                p.isActive());
+                p.isActive(),
+                p.getRemovedByUuid() != null ? p.getRemovedByUuid().toString() : null,
+                p.getRemovedByName(),
+                p.getRemovedByDate());
     }
 
     private Punishment fromExportRecord(ExportRecord r) {
@@ -201,17 +287,12 @@ public class DataExportService {
                 .silent(r.silent)
                 .ipBan(r.ipBan)
                 .active(r.active)
+                .removedByUuid(r.removedByUuid != null ? UUID.fromString(r.removedByUuid) : null)
+                .removedByName(r.removedByName)
+                .removedByDate(r.removedByDate)
                 .build();
     }
 
-    public record ExportData(
-            String plugin,
-            String version,
-            long exportedAt,
-            int totalRecords,
-            List<ExportRecord> records) {
-    }
-
     public record ExportRecord(
             String punishmentId,
             String type,
@@ -226,7 +307,15 @@ public class DataExportService {
             String serverOrigin,
             boolean silent,
             boolean ipBan,
-            boolean active) {
+            boolean active,
+            String removedByUuid,
+            String removedByName,
+            long removedByDate) {
+    }
+
+    public record ExportResult(
+            File file,
+            long records) {
     }
 
     public record ImportResult(
@@ -235,4 +324,17 @@ public class DataExportService {
             int failed,
             String message) {
     }
-}
\ No newline at end of file
+
+    private static final class ImportTally {
+        private final List<String> errors = new ArrayList<>();
+        private int imported;
+        private int failed;
+
+        private void fail(Exception e) {
+            failed++;
+            if (errors.size() < 10) {
+                errors.add("Failed to import record: " + e.getMessage());
+            }
+        }
+    }
+}
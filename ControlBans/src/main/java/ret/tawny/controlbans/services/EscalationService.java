@@ -28,7 +28,9 @@ public class EscalationService {
         long cutoff = windowDays > 0 ? System.currentTimeMillis() - (windowDays * 24L * 60L * 60L * 1000L) : Long.MIN_VALUE;
         String currentTrack = plugin.getConfigManager().resolveEscalationTrack(reason);
 
-        return punishmentService.getPunishmentHistory(targetUuid, historyLimit).thenApply(history -> {
+        boolean includeArchive = windowDays <= 0 || windowDays >= plugin.getConfigManager().getArchiveTierDays();
+
+        return punishmentService.getPunishmentHistory(targetUuid, historyLimit, includeArchive).thenApply(history -> {
             long priorCount = history.stream()
                     .filter(this::countsTowardEscalation)
                     .filter(punishment -> punishment.getCreatedTime() >= cutoff)
@@ -22,10 +22,9 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.stream.Stream;
 
@@ -35,7 +34,7 @@ public class ImportService {
     private final StorageInterface storage;
     private final LocaleManager locale;
 
-    private static final int MAX_CONCURRENT_IMPORTS = 50;
+    private static final int IMPORT_BATCH_SIZE = 1000;
 
     public ImportService(ControlBansPlugin plugin, StorageInterface storage, LocaleManager locale) {
         this.plugin = plugin;
@@ -59,31 +58,19 @@ public class ImportService {
 
             sender.sendMessage(locale.getMessage("import.essentials-starting"));
 
-            AtomicInteger count = new AtomicInteger(0);
-            Semaphore semaphore = new Semaphore(MAX_CONCURRENT_IMPORTS);
-            List<CompletableFuture<Boolean>> importTasks = new ArrayList<>();
-
             try (Stream<Path> paths = Files.walk(userdataFolder.toPath())) {
-                paths.filter(Files::isRegularFile)
+                List<Punishment> mutes = paths.filter(Files::isRegularFile)
                         .filter(p -> p.toString().endsWith(".yml"))
-                        .forEach(path -> {
-                            try {
-                                semaphore.acquire();
-                                CompletableFuture<Boolean> task = processEssentialsFile(path.toFile()).whenComplete((v, t) -> {
-                                    semaphore.release();
-                                    if (t == null && v != null && v) {
-                                        count.incrementAndGet();
-                                    }
-                                });
-                                importTasks.add(task);
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                            }
-                        });
-
-                CompletableFuture.allOf(importTasks.toArray(new CompletableFuture[0])).join();
-
-                sender.sendMessage(locale.getMessage("import.essentials-success", Placeholder.unparsed("count", String.valueOf(count.get()))));
+                        .parallel()
+                        .map(path -> parseEssentialsFile(path.toFile()))
+                        .flatMap(Optional::stream)
+                        .toList();
+
+                ImportBatcher batcher = new ImportBatcher();
+                mutes.forEach(batcher::add);
+                int count = batcher.finish();
+
+                sender.sendMessage(locale.getMessage("import.essentials-success", Placeholder.unparsed("count", String.valueOf(count))));
 
             } catch (Exception e) {
                 sender.sendMessage(locale.getMessage("import.import-failed", Placeholder.unparsed("error", e.getMessage())));
@@ -92,44 +79,39 @@ public class ImportService {
         });
     }
 
-    private CompletableFuture<Boolean> processEssentialsFile(File userFile) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                YamlConfiguration userData = YamlConfiguration.loadConfiguration(userFile);
-                if (userData.getBoolean("muted", false)) {
-                    long timeout = userData.getLong("mute-timeout", 0);
-                    long created = userData.getLong("timestamps.mute", System.currentTimeMillis());
-                    String reason = userData.getString("mute-reason", "Imported from Essentials");
-                    String filename = userFile.getName().replace(".yml", "");
-
-                    UUID uuid;
-                    try {
-                        uuid = UUID.fromString(filename);
-                    } catch (IllegalArgumentException e) {
-                        return false;
-                    }
-
-                    Punishment.Builder builder = Punishment.builder()
-                            .punishmentId(IdUtil.generatePunishmentId())
-                            .targetUuid(uuid)
-                            .reason(reason)
-                            .staffName("Imported")
-                            .createdTime(created)
-                            .active(true);
-
-                    if (timeout > 0 && timeout > System.currentTimeMillis()) {
-                        builder.type(PunishmentType.TEMPMUTE).expiryTime(timeout);
-                    } else {
-                        builder.type(PunishmentType.MUTE).expiryTime(-1);
-                    }
+    private Optional<Punishment> parseEssentialsFile(File userFile) {
+        try {
+            YamlConfiguration userData = YamlConfiguration.loadConfiguration(userFile);
+            if (userData.getBoolean("muted", false)) {
+                long timeout = userData.getLong("mute-timeout", 0);
+                long created = userData.getLong("timestamps.mute", System.currentTimeMillis());
+                String reason = userData.getString("mute-reason", "Imported from Essentials");
+                String filename = userFile.getName().replace(".yml", "");
 
-                    storage.importPunishment(builder.build()).join();
-                    return true;
+                UUID uuid;
+                try {
+                    uuid = UUID.fromString(filename);
+                } catch (IllegalArgumentException e) {
+                    return Optional.empty();
                 }
-            } catch (Exception e) {
+
+                boolean temporary = timeout > 0 && timeout > System.currentTimeMillis();
+                PunishmentType type = temporary ? PunishmentType.TEMPMUTE : PunishmentType.MUTE;
+
+                return Optional.of(Punishment.builder()
+                        .punishmentId(IdUtil.generatePunishmentId(type))
+                        .type(type)
+                        .targetUuid(uuid)
+                        .reason(reason)
+                        .staffName("Imported")
+                        .createdTime(created)
+                        .expiryTime(temporary ? timeout : -1)
+                        .active(true)
+                        .build());
             }
-            return false;
-        });
+        } catch (Exception e) {
+        }
+        return Optional.empty();
     }
 
     public void importFromLiteBans(CommandSender sender) {
@@ -197,65 +179,55 @@ public class ImportService {
     }
 
     private int importAdvancedBanTable(Connection sourceConn, CommandSender sender) {
-        int count = 0;
-        Semaphore semaphore = new Semaphore(MAX_CONCURRENT_IMPORTS);
-        List<CompletableFuture<Void>> importTasks = new ArrayList<>();
+        ImportBatcher batcher = new ImportBatcher();
 
         try (Statement stmt = sourceConn.createStatement();
              ResultSet rs = stmt.executeQuery("SELECT * FROM Punishments")) {
 
             while (rs.next()) {
-                try {
-                    String uuidStr = rs.getString("uuid");
-                    String name = rs.getString("name");
-                    String reason = rs.getString("reason");
-                    String operator = rs.getString("operator");
-                    String typeStr = rs.getString("punishmentType");
-                    long start = rs.getLong("start");
-                    long end = rs.getLong("end");
-
-                    if (uuidStr == null) continue;
-
-                    PunishmentType type = switch (typeStr.toUpperCase()) {
-                        case "BAN" -> PunishmentType.BAN;
-                        case "TEMP_BAN" -> PunishmentType.TEMPBAN;
-                        case "IP_BAN" -> PunishmentType.IPBAN;
-                        case "MUTE" -> PunishmentType.MUTE;
-                        case "TEMP_MUTE" -> PunishmentType.TEMPMUTE;
-                        case "WARNING" -> PunishmentType.WARN;
-                        case "KICK" -> PunishmentType.KICK;
-                        default -> null;
-                    };
-
-                    if (type == null) continue;
-
-                    Punishment punishment = Punishment.builder()
-                            .punishmentId(IdUtil.generatePunishmentId())
-                            .targetUuid(UUID.fromString(uuidStr))
-                            .targetName(name)
-                            .reason(reason)
-                            .staffName(operator)
-                            .createdTime(start)
-                            .expiryTime(end == -1 ? -1 : end)
-                            .type(type)
-                            .active(true)
-                            .build();
-
-                    semaphore.acquire();
-                    CompletableFuture<Void> task = storage.importPunishment(punishment).whenComplete((v, t) -> semaphore.release());
-                    importTasks.add(task);
-                    count++;
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
+                String uuidStr = rs.getString("uuid");
+                String name = rs.getString("name");
+                String reason = rs.getString("reason");
+                String operator = rs.getString("operator");
+                String typeStr = rs.getString("punishmentType");
+                long start = rs.getLong("start");
+                long end = rs.getLong("end");
+
+                if (uuidStr == null) continue;
+
+                PunishmentType type = switch (typeStr.toUpperCase()) {
+                    case "BAN" -> PunishmentType.BAN;
+                    case "TEMP_BAN" -> PunishmentType.TEMPBAN;
+                    case "IP_BAN" -> PunishmentType.IPBAN;
+                    case "MUTE" -> PunishmentType.MUTE;
+                    case "TEMP_MUTE" -> PunishmentType.TEMPMUTE;
+                    case "WARNING" -> PunishmentType.WARN;
+                    case "KICK" -> PunishmentType.KICK;
+                    default -> null;
+                };
+
+                if (type == null) continue;
+
+                Punishment punishment = Punishment.builder()
+                        .punishmentId(IdUtil.generatePunishmentId(type))
+                        .targetUuid(UUID.fromString(uuidStr))
+                        .targetName(name)
+                        .reason(reason)
+                        .staffName(operator)
+                        .createdTime(start)
+                        .expiryTime(end == -1 ? -1 : end)
+                        .type(type)
+                        .active(true)
+                        .build();
+
+                batcher.add(punishment);
             }
-            CompletableFuture.allOf(importTasks.toArray(new CompletableFuture[0])).join();
+            batcher.finish();
         } catch (Exception e) {
             sender.sendMessage(locale.getMessage("import.import-table-failed", Placeholder.unparsed("table", "Punishments")));
             plugin.getLogger().log(Level.SEVERE, "Failed to import from AdvancedBan", e);
         }
-        return count;
+        return batcher.getCount();
     }
 
     private void configureDataSource(HikariConfig config, String dbType, String configPath) {
@@ -278,52 +250,100 @@ public class ImportService {
 
     private int importTable(Connection sourceConn, String type, CommandSender sender) {
         String tableName = "litebans_" + type;
-        int count = 0;
-        Semaphore semaphore = new Semaphore(MAX_CONCURRENT_IMPORTS);
-        List<CompletableFuture<Void>> importTasks = new ArrayList<>();
+        ImportBatcher batcher = new ImportBatcher();
 
         try (Statement stmt = sourceConn.createStatement();
              ResultSet rs = stmt.executeQuery("SELECT * FROM " + tableName)) {
 
             while (rs.next()) {
-                try {
-                    String uuid = rs.getString("uuid");
-                    if (uuid == null) continue;
-
-                    Punishment.Builder builder = Punishment.builder()
-                            .punishmentId(IdUtil.generatePunishmentId())
-                            .targetUuid(UUID.fromString(uuid))
-                            .targetIp(rs.getString("ip"))
-                            .reason(rs.getString("reason"))
-                            .staffName(rs.getString("banned_by_name"))
-                            .createdTime(rs.getLong("time"))
-                            .expiryTime(rs.getLong("until"))
-                            .active(rs.getBoolean("active"));
-
-                    Punishment p = switch (type) {
-                        case "bans" -> builder.type(rs.getLong("until") == -1 ? PunishmentType.BAN : PunishmentType.TEMPBAN).build();
-                        case "mutes" -> builder.type(rs.getLong("until") == -1 ? PunishmentType.MUTE : PunishmentType.TEMPMUTE).build();
-                        case "warnings" -> builder.type(PunishmentType.WARN).build();
-                        case "kicks" -> builder.type(PunishmentType.KICK).build();
-                        default -> null;
-                    };
-
-                    if (p != null) {
-                        semaphore.acquire();
-                        CompletableFuture<Void> task = storage.importPunishment(p).whenComplete((v, t) -> semaphore.release());
-                        importTasks.add(task);
-                        count++;
-                    }
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    break;
-                }
+                String uuid = rs.getString("uuid");
+                if (uuid == null) continue;
+
+                PunishmentType punishmentType = switch (type) {
+                    case "bans" -> rs.getLong("until") == -1 ? PunishmentType.BAN : PunishmentType.TEMPBAN;
+                    case "mutes" -> rs.getLong("until") == -1 ? PunishmentType.MUTE : PunishmentType.TEMPMUTE;
+                    case "warnings" -> PunishmentType.WARN;
+                    case "kicks" -> PunishmentType.KICK;
+                    default -> null;
+                };
+                if (punishmentType == null) continue;
+
+                Punishment p = Punishment.builder()
+                        .punishmentId(IdUtil.generatePunishmentId(punishmentType))
+                        .type(punishmentType)
+                        .targetUuid(UUID.fromString(uuid))
+                        .targetIp(rs.getString("ip"))
+                        .reason(rs.getString("reason"))
+                        .staffName(rs.getString("banned_by_name"))
+                        .createdTime(rs.getLong("time"))
+                        .expiryTime(rs.getLong("until"))
+                        .active(rs.getBoolean("active"))
+                        .build();
+
+                batcher.add(p);
             }
-            CompletableFuture.allOf(importTasks.toArray(new CompletableFuture[0])).join();
+            batcher.finish();
         } catch (Exception e) {
             sender.sendMessage(locale.getMessage("import.import-table-failed", Placeholder.unparsed("table", tableName)));
             plugin.getLogger().log(Level.SEVERE, "Failed to import from table: " + tableName, e);
         }
-        return count;
+        return batcher.getCount();
+    }
+
+    private final class ImportBatcher {
+        private List<Punishment> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        private List<Punishment> inFlightBatch = List.of();
+        private CompletableFuture<Integer> inFlight = CompletableFuture.completedFuture(0);
+        private int count;
+        private int failed;
+
+        private void add(Punishment punishment) {
+            batch.add(punishment);
+            if (batch.size() >= IMPORT_BATCH_SIZE) {
+                submit();
+            }
+        }
+
+        private int finish() {
+            submit();
+            collect();
+            if (failed > 0) {
+                plugin.getLogger().warning("Import finished with " + failed + " records that could not be written.");
+            }
+            return count;
+        }
+
+        private int getCount() {
+            collect();
+            return count;
+        }
+
+        private void submit() {
+            if (batch.isEmpty()) return;
+            List<Punishment> ready = batch;
+            batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+            collect();
+            inFlightBatch = ready;
+            inFlight = storage.importPunishments(ready);
+        }
+
+        private void collect() {
+            try {
+                count += inFlight.join();
+            } catch (Exception batchError) {
+                for (Punishment punishment : inFlightBatch) {
+                    try {
+                        if (storage.importPunishment(punishment).join()) {
+                            count++;
+                        }
+                    } catch (Exception e) {
+                        failed++;
+                        plugin.getLogger().log(Level.FINE, "Failed to import punishment " + punishment.getPunishmentId(), e);
+                    }
+                }
+            }
+            inFlightBatch = List.of();
+            inFlight = CompletableFuture.completedFuture(0);
+        }
     }
-}
\ No newline at end of file
+}
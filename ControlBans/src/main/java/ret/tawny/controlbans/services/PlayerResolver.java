@@ -27,7 +27,7 @@ public class PlayerResolver {
     }
 
     public CompletableFuture<UUID> getPlayerUuid(String playerName) {
-        return cacheService.getOrCache("uuid_" + playerName.toLowerCase(), () -> {
+        return cacheService.getOrCacheUuid(playerName, () -> {
             String bedrockPrefix = plugin.getConfigManager().getBedrockPrefix();
             if (plugin.getConfigManager().isGeyserEnabled() && playerName.startsWith(bedrockPrefix)) {
                 try {
@@ -46,7 +46,7 @@ public class PlayerResolver {
                 if (uuid != null) return CompletableFuture.completedFuture(uuid);
                 return CompletableFuture.supplyAsync(() -> UuidUtil.lookupUuid(playerName));
             });
-        }, plugin.getConfigManager().getPlayerLookupTTL());
+        });
     }
 
     public String getPlayerIp(UUID uuid) {
@@ -4,17 +4,29 @@ import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import ret.tawny.controlbans.ControlBansPlugin;
+import ret.tawny.controlbans.model.ExportWatermark;
+import ret.tawny.controlbans.model.LoginState;
+import ret.tawny.controlbans.model.PageCursor;
 import ret.tawny.controlbans.model.Punishment;
 import ret.tawny.controlbans.model.PunishmentType;
+import ret.tawny.controlbans.storage.DuplicatePunishmentIdException;
+import ret.tawny.controlbans.storage.PunishmentCodec;
+import ret.tawny.controlbans.storage.RedisManager;
 import ret.tawny.controlbans.storage.StorageInterface;
+import ret.tawny.controlbans.storage.StorageTransaction;
 import ret.tawny.controlbans.util.IdUtil;
 import ret.tawny.controlbans.util.IpUtil;
 import ret.tawny.controlbans.util.SchedulerAdapter;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
 import java.util.regex.Pattern;
 
 public class PunishmentService {
@@ -29,6 +41,7 @@ public class PunishmentService {
     private final EscalationService escalationService;
     private final NotificationService notificationService;
 
+    private static final int ID_ATTEMPTS = 3;
     private static final Pattern IP_PATTERN = Pattern.compile("^([0-9]{1,3}\\.){3}[0-9]{1,3}$");
     private static final Pattern UNSAFE_IP_PATTERN = Pattern
             .compile("^(127\\.|0\\.|10\\.|192\\.168\\.|172\\.(1[6-9]|2[0-9]|3[0-1])\\.)");
@@ -55,6 +68,13 @@ public class PunishmentService {
         this.playerResolver = new PlayerResolver(plugin, storage, cacheService);
         this.escalationService = new EscalationService(plugin, this);
         this.notificationService = new NotificationService(plugin);
+
+        cacheService.register(CacheNamespace.BAN, plugin.getConfigManager()::getPunishmentCheckTTL,
+                uuid -> loadTiered(CacheNamespace.BAN, uuid, storage::getActiveBan));
+        cacheService.register(CacheNamespace.MUTE, plugin.getConfigManager()::getPunishmentCheckTTL,
+                uuid -> loadTiered(CacheNamespace.MUTE, uuid, storage::getActiveMute));
+        cacheService.register(CacheNamespace.VOICEMUTE, plugin.getConfigManager()::getPunishmentCheckTTL,
+                uuid -> loadTiered(CacheNamespace.VOICEMUTE, uuid, storage::getActiveVoiceMute));
     }
 
     public PlayerResolver getPlayerResolver() { return playerResolver; }
@@ -106,14 +126,13 @@ public class PunishmentService {
                         expiry = System.currentTimeMillis() + (durationSeconds * 1000);
                     }
 
-                    Punishment p = Punishment.builder()
-                            .punishmentId(IdUtil.generatePunishmentId()).type(actualType)
-                            .targetUuid(targetUuid).targetName(targetName)
+                    long finalExpiry = expiry;
+                    return resolveTargetIp(targetUuid, ipBan).thenCompose(targetIp -> issueBan(Punishment.builder()
+                            .punishmentId(IdUtil.generatePunishmentId(actualType)).type(actualType)
+                            .targetUuid(targetUuid).targetName(targetName).targetIp(targetIp)
                             .reason(finalReason).staffUuid(staffUuid).staffName(staffName)
-                            .createdTime(System.currentTimeMillis()).expiryTime(expiry)
-                            .serverOrigin("global").silent(resolveSilent(silent, checkResult.forceSilent())).ipBan(ipBan).build();
-
-                    return storage.insertBan(p).thenRun(() -> onPunishmentSuccess(p));
+                            .createdTime(System.currentTimeMillis()).expiryTime(finalExpiry)
+                            .serverOrigin("global").silent(resolveSilent(silent, checkResult.forceSilent())).ipBan(ipBan).build()));
                 });
             });
         });
@@ -127,15 +146,15 @@ public class PunishmentService {
 
                 return escalationService.calculateEscalation(targetUuid, reason, duration).thenCompose(finalDuration -> {
                     long expiry = (finalDuration == -1) ? -1 : System.currentTimeMillis() + (finalDuration * 1000);
-                    Punishment p = Punishment.builder()
-                            .punishmentId(IdUtil.generatePunishmentId())
-                            .type(ipBan ? PunishmentType.IPBAN : (finalDuration == -1 ? PunishmentType.BAN : PunishmentType.TEMPBAN))
-                            .targetUuid(targetUuid).targetName(targetName)
+                    PunishmentType type = ipBan ? PunishmentType.IPBAN : (finalDuration == -1 ? PunishmentType.BAN : PunishmentType.TEMPBAN);
+                    return resolveTargetIp(targetUuid, ipBan).thenCompose(targetIp -> issueBan(Punishment.builder()
+                            .punishmentId(IdUtil.generatePunishmentId(type))
+                            .type(type)
+                            .targetUuid(targetUuid).targetName(targetName).targetIp(targetIp)
                             .reason(reason != null ? reason : plugin.getConfigManager().getDefaultBanReason())
                             .staffUuid(staffUuid).staffName(staffName)
                             .createdTime(System.currentTimeMillis()).expiryTime(expiry)
-                            .serverOrigin("global").silent(resolveSilent(silent, checkResult.forceSilent())).ipBan(ipBan).build();
-                    return storage.insertBan(p).thenRun(() -> onPunishmentSuccess(p));
+                            .serverOrigin("global").silent(resolveSilent(silent, checkResult.forceSilent())).ipBan(ipBan).build()));
                 });
             });
         });
@@ -149,16 +168,13 @@ public class PunishmentService {
                 return scheduler.callSync(() -> {
                     String targetIp = playerResolver.getPlayerIp(targetUuid);
                     return Punishment.builder()
-                            .punishmentId(IdUtil.generatePunishmentId()).type(PunishmentType.MUTE)
+                            .punishmentId(IdUtil.generatePunishmentId(PunishmentType.MUTE)).type(PunishmentType.MUTE)
                             .targetUuid(targetUuid).targetName(targetName).targetIp(targetIp)
                             .reason(reason != null ? reason : plugin.getConfigManager().getDefaultMuteReason())
                             .staffUuid(staffUuid).staffName(staffName)
                             .createdTime(System.currentTimeMillis()).expiryTime(-1)
                             .serverOrigin("global").silent(resolveSilent(silent, checkResult.forceSilent())).build();
-                }).thenCompose(p -> storage.insertMute(p).thenRun(() -> {
-                    if (plugin.getPlayerChatListener() != null) plugin.getPlayerChatListener().cacheMuteState(targetUuid, p);
-                    onPunishmentSuccess(p);
-                }));
+                }).thenCompose(p -> insertWithUniqueId(p, storage::insertMute)).thenAccept(this::onPunishmentSuccess);
             });
         });
     }
@@ -171,16 +187,13 @@ public class PunishmentService {
                 return scheduler.callSync(() -> {
                     String targetIp = playerResolver.getPlayerIp(targetUuid);
                     return Punishment.builder()
-                            .punishmentId(IdUtil.generatePunishmentId()).type(PunishmentType.TEMPMUTE)
+                            .punishmentId(IdUtil.generatePunishmentId(PunishmentType.TEMPMUTE)).type(PunishmentType.TEMPMUTE)
                             .targetUuid(targetUuid).targetName(targetName).targetIp(targetIp)
                             .reason(reason != null ? reason : plugin.getConfigManager().getDefaultMuteReason())
                             .staffUuid(staffUuid).staffName(staffName)
                             .createdTime(System.currentTimeMillis()).expiryTime(System.currentTimeMillis() + (duration * 1000))
                             .serverOrigin("global").silent(resolveSilent(silent, checkResult.forceSilent())).build();
-                }).thenCompose(p -> storage.insertMute(p).thenRun(() -> {
-                    if (plugin.getPlayerChatListener() != null) plugin.getPlayerChatListener().cacheMuteState(targetUuid, p);
-                    onPunishmentSuccess(p);
-                }));
+                }).thenCompose(p -> insertWithUniqueId(p, storage::insertMute)).thenAccept(this::onPunishmentSuccess);
             });
         });
     }
@@ -193,13 +206,13 @@ public class PunishmentService {
                 return scheduler.callSync(() -> {
                     String targetIp = playerResolver.getPlayerIp(targetUuid);
                     return Punishment.builder()
-                            .punishmentId(IdUtil.generatePunishmentId()).type(PunishmentType.KICK)
+                            .punishmentId(IdUtil.generatePunishmentId(PunishmentType.KICK)).type(PunishmentType.KICK)
                             .targetUuid(targetUuid).targetName(targetName).targetIp(targetIp)
                             .reason(reason != null ? reason : plugin.getConfigManager().getDefaultKickReason())
                             .staffUuid(staffUuid).staffName(staffName)
                             .createdTime(System.currentTimeMillis()).expiryTime(System.currentTimeMillis())
                             .serverOrigin("global").silent(resolveSilent(silent, checkResult.forceSilent())).build();
-                }).thenCompose(p -> storage.insertKick(p).thenRun(() -> onPunishmentSuccess(p)));
+                }).thenCompose(p -> insertWithUniqueId(p, storage::insertKick)).thenAccept(this::onPunishmentSuccess);
             });
         });
     }
@@ -212,13 +225,13 @@ public class PunishmentService {
                 return scheduler.callSync(() -> {
                     String targetIp = playerResolver.getPlayerIp(targetUuid);
                     return Punishment.builder()
-                            .punishmentId(IdUtil.generatePunishmentId()).type(PunishmentType.WARN)
+                            .punishmentId(IdUtil.generatePunishmentId(PunishmentType.WARN)).type(PunishmentType.WARN)
                             .targetUuid(targetUuid).targetName(targetName).targetIp(targetIp)
                             .reason(reason != null ? reason : plugin.getConfigManager().getDefaultWarnReason())
                             .staffUuid(staffUuid).staffName(staffName)
                             .createdTime(System.currentTimeMillis()).expiryTime(-1)
                             .serverOrigin("global").silent(resolveSilent(silent, checkResult.forceSilent())).build();
-                }).thenCompose(p -> storage.insertWarning(p).thenRun(() -> {
+                }).thenCompose(p -> insertWithUniqueId(p, storage::insertWarning)).thenAccept(p -> {
                     scheduler.runTask(() -> {
                         Player player = Bukkit.getPlayer(targetUuid);
                         if (player != null && player.isOnline()) {
@@ -226,7 +239,7 @@ public class PunishmentService {
                         }
                     });
                     onPunishmentSuccess(p);
-                }));
+                });
             });
         });
     }
@@ -237,15 +250,13 @@ public class PunishmentService {
             return prePunishmentCheck(staffUuid, targetUuid).thenCompose(checkResult -> {
                 if (!checkResult.canPunish()) return CompletableFuture.failedFuture(new IllegalStateException(checkResult.failureMessage()));
                 Punishment p = Punishment.builder()
-                        .punishmentId(IdUtil.generatePunishmentId()).type(PunishmentType.VOICEMUTE)
+                        .punishmentId(IdUtil.generatePunishmentId(PunishmentType.VOICEMUTE)).type(PunishmentType.VOICEMUTE)
                         .targetUuid(targetUuid).targetName(targetName)
                         .reason(reason != null ? reason : plugin.getConfigManager().getDefaultMuteReason())
                         .staffUuid(staffUuid).staffName(staffName)
                         .createdTime(System.currentTimeMillis()).expiryTime(-1)
                         .serverOrigin("global").silent(resolveSilent(silent, checkResult.forceSilent())).build();
-                return storage.insertVoiceMute(p).thenRun(() -> {
-                    postVoiceMuteActions(targetUuid, p);
-                });
+                return insertWithUniqueId(p, storage::insertVoiceMute).thenAccept(stored -> postVoiceMuteActions(targetUuid, stored));
             });
         });
     }
@@ -257,21 +268,19 @@ public class PunishmentService {
                 if (!checkResult.canPunish()) return CompletableFuture.failedFuture(new IllegalStateException(checkResult.failureMessage()));
                 long expiry = System.currentTimeMillis() + (duration * 1000);
                 Punishment p = Punishment.builder()
-                        .punishmentId(IdUtil.generatePunishmentId()).type(PunishmentType.TEMPVOICEMUTE)
+                        .punishmentId(IdUtil.generatePunishmentId(PunishmentType.TEMPVOICEMUTE)).type(PunishmentType.TEMPVOICEMUTE)
                         .targetUuid(targetUuid).targetName(targetName)
                         .reason(reason != null ? reason : plugin.getConfigManager().getDefaultMuteReason())
                         .staffUuid(staffUuid).staffName(staffName)
                         .createdTime(System.currentTimeMillis()).expiryTime(expiry)
                         .serverOrigin("global").silent(resolveSilent(silent, checkResult.forceSilent())).build();
-                return storage.insertVoiceMute(p).thenRun(() -> {
-                    postVoiceMuteActions(targetUuid, p);
-                });
+                return insertWithUniqueId(p, storage::insertVoiceMute).thenAccept(stored -> postVoiceMuteActions(targetUuid, stored));
             });
         });
     }
 
     private void postVoiceMuteActions(UUID targetUuid, Punishment p) {
-        cacheService.invalidatePlayerPunishments(targetUuid);
+        writeThrough(p);
         proxyService.sendInvalidateCacheMessage(targetUuid);
         scheduler.runTask(() -> {
             Player player = Bukkit.getPlayer(targetUuid);
@@ -293,7 +302,9 @@ public class PunishmentService {
                 return CompletableFuture.completedFuture(false);
             }).thenApply(success -> {
                 if (success) {
-                    invalidatePlayer(targetUuid);
+                    plugin.getActivePunishmentIndex().removeBan(targetUuid);
+                    plugin.getBanLookupFilter().recordStaleRemoval();
+                    writeThroughRemoval(CacheNamespace.BAN, targetUuid);
                     scheduler.runTask(() -> notificationService.broadcastUnban(targetName, staffName));
                     IntegrationService integrationService = plugin.getIntegrationService();
                     if (integrationService != null) integrationService.onUnban(targetName, staffName);
@@ -316,7 +327,8 @@ public class PunishmentService {
                 return CompletableFuture.completedFuture(false);
             }).thenApply(success -> {
                 if (success) {
-                    invalidatePlayer(targetUuid);
+                    plugin.getActivePunishmentIndex().removeMute(targetUuid);
+                    writeThroughRemoval(CacheNamespace.MUTE, targetUuid);
                     scheduler.runTask(() -> notificationService.broadcastUnmute(targetName, staffName));
                 }
                 return success;
@@ -332,7 +344,7 @@ public class PunishmentService {
                 return CompletableFuture.completedFuture(false);
             }).thenApply(success -> {
                 if (success) {
-                    invalidatePlayer(targetUuid);
+                    writeThroughRemoval(CacheNamespace.VOICEMUTE, targetUuid);
                     if (plugin.getConfigManager().isVoiceChatIntegrationEnabled() && plugin.getVoiceChatService() != null) {
                         plugin.getVoiceChatService().updateStatus(targetUuid);
                     }
@@ -348,6 +360,9 @@ public class PunishmentService {
             return CompletableFuture.completedFuture(false);
         }).thenApply(success -> {
             if (success) {
+                plugin.getActivePunishmentIndex().removeIpBan(ip);
+                plugin.getBanLookupFilter().recordStaleRemoval();
+                writeThroughRemoval(CacheNamespace.BAN, UUID.nameUUIDFromBytes(ip.getBytes()));
                 String maskedIp = IpUtil.maskIp(ip);
                 scheduler.runTask(() -> notificationService.sendStaffAlertForAction("unban", maskedIp, staffName));
                 IntegrationService integrationService = plugin.getIntegrationService();
@@ -376,6 +391,8 @@ public class PunishmentService {
             return CompletableFuture.completedFuture(false);
         }).thenApply(success -> {
             if (success) {
+                plugin.getActivePunishmentIndex().removeIpMute(ip);
+                writeThroughRemoval(CacheNamespace.MUTE, UUID.nameUUIDFromBytes(ip.getBytes()));
                 String maskedIp = IpUtil.maskIp(ip);
                 scheduler.runTask(() -> notificationService.sendStaffAlertForAction("unmute", maskedIp, staffName));
             }
@@ -404,13 +421,13 @@ public class PunishmentService {
                 return CompletableFuture.completedFuture(false);
             }
             long expiry = duration == -1 ? -1 : System.currentTimeMillis() + (duration * 1000);
-            Punishment p = Punishment.builder().punishmentId(IdUtil.generatePunishmentId())
+            Punishment p = Punishment.builder().punishmentId(IdUtil.generatePunishmentId(PunishmentType.IPBAN))
                     .type(PunishmentType.IPBAN)
                     .targetUuid(UUID.nameUUIDFromBytes(ip.getBytes())).targetName(ip).targetIp(ip).reason(reason)
                     .staffUuid(staffUuid).staffName(staffName)
                     .createdTime(System.currentTimeMillis()).expiryTime(expiry)
                     .serverOrigin("global").silent(resolveSilent(silent)).ipBan(true).build();
-            return storage.insertBan(p).thenRun(() -> onPunishmentSuccess(p)).thenApply(v -> true);
+            return issueBan(p).thenApply(v -> true);
         });
     }
 
@@ -422,52 +439,193 @@ public class PunishmentService {
                 return CompletableFuture.completedFuture(false);
             }
             long expiry = duration == -1 ? -1 : System.currentTimeMillis() + (duration * 1000);
-            Punishment p = Punishment.builder().punishmentId(IdUtil.generatePunishmentId())
-                    .type(duration == -1 ? PunishmentType.IPMUTE : PunishmentType.TEMPIPMUTE)
+            PunishmentType type = duration == -1 ? PunishmentType.IPMUTE : PunishmentType.TEMPIPMUTE;
+            Punishment p = Punishment.builder().punishmentId(IdUtil.generatePunishmentId(type))
+                    .type(type)
                     .targetUuid(UUID.nameUUIDFromBytes(ip.getBytes())).targetName(ip).targetIp(ip).reason(reason)
                     .staffUuid(staffUuid).staffName(staffName)
                     .createdTime(System.currentTimeMillis()).expiryTime(expiry)
                     .serverOrigin("global").silent(resolveSilent(silent)).ipBan(true).build();
-            return storage.insertMute(p).thenRun(() -> onPunishmentSuccess(p)).thenApply(v -> true);
+            return insertWithUniqueId(p, storage::insertMute).thenAccept(this::onPunishmentSuccess).thenApply(v -> true);
+        });
+    }
+
+    private CompletableFuture<String> resolveTargetIp(UUID targetUuid, boolean ipBan) {
+        return scheduler.callSync(() -> playerResolver.getPlayerIp(targetUuid)).thenCompose(ip -> {
+            if (ip != null || !ipBan) return CompletableFuture.completedFuture(ip);
+            return storage.getLastIpForUuid(targetUuid);
         });
     }
 
     private void onPunishmentSuccess(Punishment punishment) {
-        cacheService.invalidatePlayerPunishments(punishment.getTargetUuid());
+        plugin.getActivePunishmentIndex().add(punishment);
+        plugin.getBanLookupFilter().add(punishment);
+        writeThrough(punishment);
         proxyService.sendInvalidateCacheMessage(punishment.getTargetUuid());
         notificationService.onPunishmentSuccess(punishment);
-        if (plugin.getConfigManager().isAltPunishEnabled() && punishment.getType().isBan()) {
-            plugin.getAltService().punishAlts(punishment);
+    }
+
+    private CompletableFuture<Void> issueBan(Punishment punishment) {
+        return insertWithUniqueId(punishment, storage::insertBan).thenCompose(stored -> {
+            onPunishmentSuccess(stored);
+            return punishAlts(stored);
+        });
+    }
+
+    private CompletableFuture<Void> punishAlts(Punishment punishment) {
+        AltService altService = plugin.getAltService();
+        return altService.buildAltPunishments(punishment)
+                .thenCompose(alts -> alts.isEmpty() ? CompletableFuture.completedFuture(List.<Punishment>of()) : commitAlts(alts, ID_ATTEMPTS))
+                .thenAccept(alts -> alts.forEach(altService::onAltPunished))
+                .exceptionally(throwable -> {
+                    plugin.getLogger().log(Level.WARNING, "Failed to punish alt accounts of " + punishment.getTargetName() + "; the primary ban still stands.", throwable);
+                    return null;
+                });
+    }
+
+    private CompletableFuture<List<Punishment>> commitAlts(List<Punishment> alts, int attempts) {
+        StorageTransaction transaction = storage.beginTransaction();
+        alts.forEach(transaction::insert);
+        return transaction.commit().thenApply(v -> alts).exceptionallyCompose(throwable -> {
+            if (attempts <= 1 || !isDuplicateId(throwable)) return CompletableFuture.failedFuture(throwable);
+            return commitAlts(alts.stream().map(this::withNewId).toList(), attempts - 1);
+        });
+    }
+
+    private CompletableFuture<Punishment> insertWithUniqueId(Punishment punishment, Function<Punishment, CompletableFuture<Void>> insert) {
+        return insertWithUniqueId(punishment, insert, ID_ATTEMPTS);
+    }
+
+    private CompletableFuture<Punishment> insertWithUniqueId(Punishment punishment, Function<Punishment, CompletableFuture<Void>> insert, int attempts) {
+        return insert.apply(punishment).thenApply(v -> punishment).exceptionallyCompose(throwable -> {
+            if (attempts <= 1 || !isDuplicateId(throwable)) return CompletableFuture.failedFuture(throwable);
+            return insertWithUniqueId(withNewId(punishment), insert, attempts - 1);
+        });
+    }
+
+    private Punishment withNewId(Punishment punishment) {
+        return punishment.toBuilder().punishmentId(IdUtil.generatePunishmentId(punishment.getType())).build();
+    }
+
+    private boolean isDuplicateId(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        return cause instanceof DuplicatePunishmentIdException;
+    }
+
+    public void writeThrough(Punishment punishment) {
+        UUID uuid = punishment.getTargetUuid();
+        PunishmentType type = punishment.getType();
+        CacheNamespace namespace;
+        if (type.isBan()) {
+            namespace = CacheNamespace.BAN;
+        } else if (type.isMute()) {
+            namespace = CacheNamespace.MUTE;
+            if (!punishment.isIpBan() && plugin.getPlayerChatListener() != null) {
+                plugin.getPlayerChatListener().cacheMuteState(uuid, punishment);
+            }
+        } else if (type == PunishmentType.VOICEMUTE || type == PunishmentType.TEMPVOICEMUTE) {
+            namespace = CacheNamespace.VOICEMUTE;
+        } else {
+            return;
         }
+        cacheService.put(namespace, uuid, Optional.of(punishment));
+        storeRemoteState(namespace, uuid, Optional.of(punishment), namespace.name(), type.name());
+    }
+
+    private void writeThroughRemoval(CacheNamespace namespace, UUID uuid) {
+        cacheService.put(namespace, uuid, Optional.empty());
+        storeRemoteState(namespace, uuid, Optional.empty(), "UN" + namespace.name(), namespace.name());
+        proxyService.sendInvalidateCacheMessage(uuid);
     }
 
     private void invalidatePlayer(UUID uuid) {
         cacheService.invalidatePlayerPunishments(uuid);
+        RedisManager redis = plugin.getRedisManager();
+        if (redis != null) redis.invalidatePlayer(uuid, "INVALIDATE");
         proxyService.sendInvalidateCacheMessage(uuid);
     }
 
-    public CompletableFuture<Optional<Punishment>> getActiveBan(UUID uuid) { return cacheService.getOrCache("ban_" + uuid, () -> storage.getActiveBan(uuid).thenCompose(this::enrichPunishmentWithName), plugin.getConfigManager().getPunishmentCheckTTL()); }
-    public CompletableFuture<Optional<Punishment>> getActiveMute(UUID uuid) { return cacheService.getOrCache("mute_" + uuid, () -> storage.getActiveMute(uuid).thenCompose(this::enrichPunishmentWithName), plugin.getConfigManager().getPunishmentCheckTTL()); }
-    public CompletableFuture<Optional<Punishment>> getActiveVoiceMute(UUID uuid) { return cacheService.getOrCache("voicemute_" + uuid, () -> storage.getActiveVoiceMute(uuid).thenCompose(this::enrichPunishmentWithName), plugin.getConfigManager().getPunishmentCheckTTL()); }
-    public CompletableFuture<List<Punishment>> getPunishmentHistory(UUID uuid, int limit) { return storage.getPunishmentHistory(uuid, limit); }
-    public CompletableFuture<List<Punishment>> getRecentPunishments(int limit) { return storage.getRecentPunishments(limit); }
-    public CompletableFuture<Optional<Punishment>> getPunishmentById(String id) { return storage.getPunishmentById(id.toUpperCase()); }
-    public CompletableFuture<List<Punishment>> getAllPunishments() { return storage.getAllPunishments(); }
-    public CompletableFuture<Void> importPunishment(Punishment punishment) { return storage.importPunishment(punishment); }
-
-    private CompletableFuture<Optional<Punishment>> enrichPunishmentWithName(Optional<Punishment> punishment) {
-        if (punishment.isPresent()) {
-            Punishment p = punishment.get();
-            if (p.getTargetName() == null || p.getTargetName().equalsIgnoreCase("unknown")) {
-                return storage.getLastKnownName(p.getTargetUuid()).thenApply(name -> {
-                    if (name != null) return Optional.of(p.toBuilder().targetName(name).build());
-                    return punishment;
-                });
+    private CompletableFuture<Optional<Punishment>> loadTiered(CacheNamespace namespace, UUID uuid,
+                                                               Function<UUID, CompletableFuture<Optional<Punishment>>> source) {
+        RedisManager redis = plugin.getRedisManager();
+        if (redis == null || !redis.isRunning()) {
+            return source.apply(uuid);
+        }
+        String kind = namespace.name().toLowerCase();
+        return redis.getPlayerState(kind, uuid).thenCompose(cached -> {
+            if (cached.value() != null) {
+                try {
+                    return CompletableFuture.completedFuture(PunishmentCodec.decode(cached.value()).filter(p -> !p.isExpired()));
+                } catch (RuntimeException e) {
+                    plugin.getLogger().fine("Discarding unreadable Redis cache entry for " + uuid + ": " + e.getMessage());
+                }
             }
+            return source.apply(uuid).thenApply(result -> {
+                redis.cachePlayerState(kind, uuid, PunishmentCodec.encode(result), remoteTtl(result), cached.version());
+                return result;
+            });
+        });
+    }
+
+    private void storeRemoteState(CacheNamespace namespace, UUID uuid, Optional<Punishment> state, String action, String type) {
+        RedisManager redis = plugin.getRedisManager();
+        if (redis == null || !redis.isRunning()) return;
+        redis.updatePlayerState(namespace.name().toLowerCase(), uuid, PunishmentCodec.encode(state), remoteTtl(state), action, type);
+    }
+
+    private int remoteTtl(Optional<Punishment> state) {
+        if (state.isEmpty()) {
+            return plugin.getConfigManager().getRedisNegativeCacheTTL();
+        }
+        int ttl = plugin.getConfigManager().getRedisCacheTTL();
+        Punishment punishment = state.get();
+        if (!punishment.isPermanent()) {
+            long remainingSeconds = Math.max(1L, punishment.getRemainingTime() / 1000L);
+            ttl = ttl > 0 ? (int) Math.min(ttl, remainingSeconds) : (int) Math.min(Integer.MAX_VALUE, remainingSeconds);
+        }
+        return ttl;
+    }
+
+    public void handleRemoteInvalidation(UUID uuid) {
+        cacheService.invalidatePlayerPunishments(uuid);
+        plugin.getActivePunishmentIndex().refresh(uuid);
+        plugin.getBanLookupFilter().refresh(uuid);
+    }
+
+    public void handleRemoteChange(UUID uuid) {
+        if (uuid == null) {
+            cacheService.invalidateAll();
+            plugin.getActivePunishmentIndex().reload();
+            plugin.getBanLookupFilter().rebuild();
+            return;
         }
-        return CompletableFuture.completedFuture(punishment);
+        handleRemoteInvalidation(uuid);
+        if (plugin.getPlayerChatListener() != null) plugin.getPlayerChatListener().invalidateMuteCache(uuid);
     }
 
+    public CompletableFuture<Optional<Punishment>> getActiveBan(UUID uuid) {
+        if (!plugin.getBanLookupFilter().mightBeBanned(uuid)) return CompletableFuture.completedFuture(Optional.empty());
+        return cacheService.get(CacheNamespace.BAN, uuid);
+    }
+    public CompletableFuture<Optional<Punishment>> getActiveMute(UUID uuid) { return cacheService.get(CacheNamespace.MUTE, uuid); }
+    public CompletableFuture<Optional<Punishment>> getActiveVoiceMute(UUID uuid) { return cacheService.get(CacheNamespace.VOICEMUTE, uuid); }
+    public CompletableFuture<List<Punishment>> getPunishmentHistory(UUID uuid, int limit, boolean includeArchive) { return storage.getPunishmentHistory(uuid, limit, includeArchive); }
+    public CompletableFuture<List<Punishment>> getRecentPunishments(int limit) { return storage.getRecentPunishments(limit); }
+    public CompletableFuture<Optional<Punishment>> getPunishmentById(String id) { return storage.getPunishmentById(id.toUpperCase(), true); }
+    public CompletableFuture<List<Punishment>> getAllPunishments() { return storage.getAllPunishments(); }
+    public CompletableFuture<Long> streamPunishments(PunishmentType type, Consumer<Punishment> consumer) { return storage.streamPunishments(type, consumer); }
+    public CompletableFuture<Map<String, ExportWatermark>> streamChangedPunishments(Map<String, ExportWatermark> since, Consumer<Punishment> consumer) { return storage.streamChangedPunishments(since, consumer); }
+    public CompletableFuture<Map<String, ExportWatermark>> getExportWatermarks() { return storage.getExportWatermarks(); }
+    public CompletableFuture<Void> saveExportWatermarks(Map<String, ExportWatermark> watermarks) { return storage.saveExportWatermarks(watermarks); }
+    public CompletableFuture<List<Punishment>> getActiveBans(PageCursor cursor, int limit) { return storage.getActiveBans(cursor, limit); }
+    public CompletableFuture<List<Punishment>> getActiveMutes(PageCursor cursor, int limit) { return storage.getActiveMutes(cursor, limit); }
+    public CompletableFuture<List<Punishment>> getPunishmentsByStaff(String staffName, PageCursor cursor, int limit) { return storage.getPunishmentsByStaff(staffName, cursor, limit); }
+    public CompletableFuture<Integer> countActiveBans() { return storage.countActiveBans(); }
+    public CompletableFuture<Integer> countActiveMutes() { return storage.countActiveMutes(); }
+    public CompletableFuture<Integer> countPunishmentsByStaff(String staffName) { return storage.countPunishmentsByStaff(staffName); }
+    public CompletableFuture<Boolean> importPunishment(Punishment punishment) { return storage.importPunishment(punishment); }
+    public CompletableFuture<Integer> importPunishments(List<Punishment> punishments) { return storage.importPunishments(punishments); }
+
     private boolean isSafeIp(String ip) {
         return !UNSAFE_IP_PATTERN.matcher(ip).find();
     }
@@ -486,13 +644,43 @@ public class PunishmentService {
         });
     }
 
-    public CompletableFuture<Void> clearAllData() { return storage.clearAllData().thenRun(cacheService::invalidateAll); }
+    public CompletableFuture<Void> clearAllData() {
+        return storage.clearAllData().thenRun(() -> {
+            cacheService.invalidateAll();
+            RedisManager redis = plugin.getRedisManager();
+            if (redis != null) redis.invalidateAll();
+            plugin.getActivePunishmentIndex().reload();
+            plugin.getBanLookupFilter().rebuild();
+        });
+    }
     public CompletableFuture<Boolean> clearPlayerData(String targetName) {
         return playerResolver.getPlayerUuid(targetName).thenCompose(uuid -> {
             if (uuid == null) return CompletableFuture.completedFuture(false);
-            return storage.clearPlayerData(uuid).thenRun(() -> invalidatePlayer(uuid)).thenApply(v -> true);
+            return storage.clearPlayerData(uuid).thenRun(() -> {
+                plugin.getActivePunishmentIndex().removeBan(uuid);
+                plugin.getActivePunishmentIndex().removeMute(uuid);
+                invalidatePlayer(uuid);
+            }).thenApply(v -> true);
         });
     }
-    public CompletableFuture<Optional<Punishment>> getActiveIpBan(String ip) { return storage.getActiveIpBan(ip); }
+    public CompletableFuture<Optional<Punishment>> getActiveIpBan(String ip) {
+        if (!plugin.getBanLookupFilter().mightBeIpBanned(ip)) return CompletableFuture.completedFuture(Optional.empty());
+        return storage.getActiveIpBan(ip);
+    }
     public CompletableFuture<Optional<Punishment>> getActiveIpMute(String ip) { return storage.getActiveIpMute(ip); }
+
+    public CompletableFuture<LoginState> getLoginState(UUID uuid, String ip) {
+        return storage.getLoginState(uuid, ip);
+    }
+
+    public LoginState getIndexedLoginState(UUID uuid, String ip) {
+        ActivePunishmentIndex index = plugin.getActivePunishmentIndex();
+        if (index == null || !index.isReady()) return null;
+        return index.lookup(uuid, ip);
+    }
+
+    @FunctionalInterface
+    public interface PageQuery {
+        CompletableFuture<List<Punishment>> fetch(PageCursor cursor, int limit);
+    }
 }
@@ -75,8 +75,10 @@ public class PunishmentTemplateService {
 
         TemplateResult template = templateOpt.get();
 
-        return plugin.getStorage().getPunishmentHistory(targetUuid, 100).thenApply(history -> {
-            long windowDays = template.levels.getLong("window-days", 30L);
+        long windowDays = template.levels.getLong("window-days", 30L);
+        boolean includeArchive = windowDays <= 0 || windowDays >= plugin.getConfigManager().getArchiveTierDays();
+
+        return plugin.getStorage().getPunishmentHistory(targetUuid, 100, includeArchive).thenApply(history -> {
             long windowMs = windowDays * 86_400_000L;
             long cutoff = System.currentTimeMillis() - windowMs;
 
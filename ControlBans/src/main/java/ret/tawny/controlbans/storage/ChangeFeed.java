@@ -0,0 +1,107 @@
+package ret.tawny.controlbans.storage;
+
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class ChangeFeed {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int REWIND_IDS = 200;
+    private static final long TRIM_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final String origin;
+    private final Logger logger;
+    private final long pollIntervalMillis;
+    private final long retentionMillis;
+    private final Source source;
+    private final Consumer<UUID> listener;
+    private final ScheduledExecutorService executor;
+    private final NavigableSet<Long> applied = new TreeSet<>();
+    private long cursor = -1;
+    private long lastTrim;
+    private boolean failing;
+
+    public ChangeFeed(String name, String origin, long pollIntervalMillis, long retentionMillis, Logger logger, Source source, Consumer<UUID> listener) {
+        this.origin = origin;
+        this.logger = logger;
+        this.pollIntervalMillis = Math.max(100L, pollIntervalMillis);
+        this.retentionMillis = Math.max(TimeUnit.MINUTES.toMillis(1), retentionMillis);
+        this.source = source;
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::poll, 0L, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll() {
+        try {
+            if (cursor < 0) {
+                cursor = source.latestId();
+                return;
+            }
+
+            List<Change> changes;
+            do {
+                changes = source.since(Math.max(0L, cursor - REWIND_IDS), BATCH_SIZE);
+                for (Change change : changes) {
+                    if (!applied.add(change.id())) continue;
+                    cursor = Math.max(cursor, change.id());
+                    if (!origin.equals(change.origin())) {
+                        listener.accept(change.uuid());
+                    }
+                }
+                applied.headSet(cursor - REWIND_IDS).clear();
+            } while (changes.size() == BATCH_SIZE);
+
+            long now = System.currentTimeMillis();
+            if (now - lastTrim >= TRIM_INTERVAL_MILLIS) {
+                lastTrim = now;
+                source.trim(now - retentionMillis);
+            }
+
+            if (failing) {
+                failing = false;
+                logger.info("[Change Feed] Polling recovered at change " + cursor + ".");
+            }
+        } catch (Exception e) {
+            if (!failing) {
+                failing = true;
+                logger.log(Level.WARNING, "[Change Feed] Poll failed, retrying every " + pollIntervalMillis + "ms", e);
+            }
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public record Change(long id, UUID uuid, String origin) {
+    }
+
+    public interface Source {
+        long latestId() throws Exception;
+
+        List<Change> since(long afterId, int limit) throws Exception;
+
+        void trim(long olderThan) throws Exception;
+    }
+}
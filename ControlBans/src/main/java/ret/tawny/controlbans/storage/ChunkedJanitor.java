@@ -0,0 +1,145 @@
+package ret.tawny.controlbans.storage;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+public class ChunkedJanitor {
+
+    private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+    private static final int PROGRESS_EVERY_CHUNKS = 10;
+
+    private final String logPrefix;
+    private final String verb;
+    private final Logger logger;
+    private final File archiveDir;
+    private final CursorStore cursors;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopped;
+
+    public ChunkedJanitor(String logPrefix, String verb, Logger logger, File archiveDir, CursorStore cursors) {
+        this.logPrefix = logPrefix;
+        this.verb = verb;
+        this.logger = logger;
+        this.archiveDir = archiveDir;
+        this.cursors = cursors;
+    }
+
+    public void run(List<Target> targets, int chunkSize, long pauseMillis, boolean archive) {
+        if (!running.compareAndSet(false, true)) return;
+        try {
+            for (Target target : targets) {
+                if (stopped) return;
+                purge(target, Math.max(1, chunkSize), Math.max(0L, pauseMillis), archive);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, logPrefix + " Run failed, it will resume from the last completed chunk", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void purge(Target target, int chunkSize, long pauseMillis, boolean archive) throws Exception {
+        String cursor = cursors.load(target.name());
+        if (cursor != null) {
+            logger.info(logPrefix + " Resuming " + target.name() + " after key " + cursor);
+        }
+
+        long purged = 0;
+        int chunks = 0;
+        while (!stopped) {
+            Chunk chunk = target.fetch(cursor, chunkSize);
+            if (chunk.keys().isEmpty()) break;
+
+            if (archive) {
+                appendArchive(target.name(), chunk.lines());
+            }
+            purged += target.delete(chunk.keys());
+            cursor = chunk.lastKey();
+            cursors.save(target.name(), cursor);
+
+            if (++chunks % PROGRESS_EVERY_CHUNKS == 0) {
+                logger.info(logPrefix + " " + target.name() + ": " + verb.toLowerCase() + " " + purged + " rows so far");
+            }
+            if (chunk.keys().size() < chunkSize) break;
+            if (pauseMillis > 0) {
+                Thread.sleep(pauseMillis);
+            }
+        }
+
+        if (stopped) {
+            logger.info(logPrefix + " Paused " + target.name() + " after " + purged + " rows; it will resume on the next run.");
+            return;
+        }
+        cursors.save(target.name(), null);
+        if (purged > 0) {
+            logger.info(logPrefix + " " + verb + " " + purged + " rows from " + target.name() + (archive ? " (archived)." : "."));
+        }
+    }
+
+    private void appendArchive(String name, List<String> lines) throws IOException {
+        if (!archiveDir.exists()) {
+            archiveDir.mkdirs();
+        }
+        File file = new File(archiveDir, name + "-" + YearMonth.now() + ".ndjson.gz");
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(file, true), 64 * 1024), StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    public static Chunk rowChunk(List<Map<String, Object>> rows, String keyColumn) {
+        List<String> lines = new ArrayList<>(rows.size());
+        List<Object> keys = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            lines.add(GSON.toJson(row));
+            keys.add(row.get(keyColumn));
+        }
+        return new Chunk(lines, keys, keys.isEmpty() ? null : String.valueOf(keys.get(keys.size() - 1)));
+    }
+
+    public record Chunk(List<String> lines, List<Object> keys, String lastKey) {
+    }
+
+    public interface Target {
+        String name();
+
+        Chunk fetch(String afterKey, int limit) throws Exception;
+
+        long delete(List<Object> keys) throws Exception;
+    }
+
+    public interface CursorStore {
+        String load(String name) throws Exception;
+
+        void save(String name, String cursor) throws Exception;
+    }
+}
@@ -4,57 +4,72 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import ret.tawny.controlbans.ControlBansPlugin;
 import ret.tawny.controlbans.config.ConfigManager;
+import ret.tawny.controlbans.model.ExportWatermark;
+import ret.tawny.controlbans.model.LoginState;
+import ret.tawny.controlbans.model.PageCursor;
 import ret.tawny.controlbans.model.Punishment;
+import ret.tawny.controlbans.model.PunishmentType;
 import ret.tawny.controlbans.storage.dao.PunishmentDao;
 
 import java.io.File;
 import java.sql.Connection;
+import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 public class DatabaseManager implements StorageInterface {
 
+    private static final long UUID_STORAGE_POLL_SECONDS = 30L;
+
     private final ControlBansPlugin plugin;
     private final ConfigManager config;
     private HikariDataSource dataSource;
-    private ExecutorService asyncExecutor;
+    private final DatabaseScheduler scheduler;
     private final PunishmentDao punishmentDao;
-    private static final AtomicInteger EXECUTOR_THREAD_ID = new AtomicInteger();
+    private final HistoryWriteBuffer historyBuffer;
+    private final ChunkedJanitor janitor;
+    private final ChunkedJanitor archiveMover;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicBoolean convertingUuids = new AtomicBoolean(false);
+    private volatile String maintenanceReason;
+    private ChangeFeed changeFeed;
+    private PostgresNotifyListener notifyListener;
 
     public DatabaseManager(ControlBansPlugin plugin, ConfigManager config) {
         this.plugin = plugin;
         this.config = config;
-        this.punishmentDao = new PunishmentDao();
-        initializeExecutor();
-    }
+        this.punishmentDao = new PunishmentDao(config.getDatabaseType().toLowerCase());
+        this.scheduler = new DatabaseScheduler("ControlBans-DB", config);
+        this.historyBuffer = new HistoryWriteBuffer("ControlBans-History", config.getHistoryFlushInterval(), plugin.getLogger(),
+                records -> executeAsync(conn -> punishmentDao.upsertHistory(conn, records)).join());
+        File archiveDir = new File(plugin.getDataFolder(), "archive");
+        this.janitor = new ChunkedJanitor("[Database Janitor]", "Purged", plugin.getLogger(), archiveDir, cursorStore(""));
+        this.archiveMover = new ChunkedJanitor("[Archive Mover]", "Moved", plugin.getLogger(), archiveDir, cursorStore("archive-move."));
+    }
+
+    private ChunkedJanitor.CursorStore cursorStore(String prefix) {
+        return new ChunkedJanitor.CursorStore() {
+            @Override
+            public String load(String table) {
+                return executeQueryAsync(QueryPriority.HOUSEKEEPING, conn -> punishmentDao.getJanitorCursor(conn, prefix + table)).join();
+            }
 
-    private void initializeExecutor() {
-        ThreadFactory threadFactory = runnable -> {
-            Thread thread = new Thread(runnable, "ControlBans-DB-" + EXECUTOR_THREAD_ID.incrementAndGet());
-            thread.setDaemon(true);
-            return thread;
-        };
-        this.asyncExecutor = new java.util.concurrent.ThreadPoolExecutor(
-            2,
-            8,
-            60L, TimeUnit.SECONDS,
-            new java.util.concurrent.LinkedBlockingQueue<>(500),
-            threadFactory,
-            (runnable, executor) -> {
-                plugin.getLogger().log(Level.WARNING, "Database task queue full (500 tasks). Task discarded to prevent main-thread freeze. Consider increasing pool size or optimizing queries.");
+            @Override
+            public void save(String table, String cursor) {
+                executeAsync(QueryPriority.HOUSEKEEPING, conn -> punishmentDao.saveJanitorCursor(conn, prefix + table, cursor)).join();
             }
-        );
+        };
     }
 
     @Override
@@ -62,7 +77,13 @@ public class DatabaseManager implements StorageInterface {
         try {
             setupDataSource();
             createTables();
+            historyBuffer.start();
             startJanitor();
+            startArchiveMover();
+            configureChangeSignals();
+            startChangeFeed();
+            startNotifyListener();
+            startUuidStorageWatch();
             plugin.getLogger().info("SQL Database initialized successfully");
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to initialize database", e);
@@ -82,25 +103,168 @@ public class DatabaseManager implements StorageInterface {
             long warningRetention = System.currentTimeMillis() - (warnDays * 24L * 60 * 60 * 1000);
             long reportRetention = System.currentTimeMillis() - (reportDays * 24L * 60 * 60 * 1000);
 
-            try (Connection conn = getConnection(); Statement stmt = conn.createStatement()) {
-                int deletedBans = 0;
-                for (String table : new String[]{"controlbans_bans", "controlbans_mutes", "controlbans_voicemutes"}) {
-                    deletedBans += stmt.executeUpdate("DELETE FROM " + table + " WHERE until > 0 AND until < " + banRetention);
-                }
-                if (deletedBans > 0) plugin.getLogger().info("[Database Janitor] Purged " + deletedBans + " ancient temporary punishments.");
+            Map<String, String> predicates = new LinkedHashMap<>();
+            for (String table : new String[]{"controlbans_bans", "controlbans_mutes", "controlbans_voicemutes"}) {
+                predicates.put(table, "until > 0 AND until < " + banRetention);
+            }
+            predicates.put("controlbans_kicks", "time < " + kickRetention);
+            predicates.put("controlbans_warnings", "(until > 0 AND until < " + warningRetention + ") OR (active = FALSE AND time < " + warningRetention + ")");
 
-                int deletedKicks = stmt.executeUpdate("DELETE FROM controlbans_kicks WHERE time < " + kickRetention);
-                if (deletedKicks > 0) plugin.getLogger().info("[Database Janitor] Purged " + deletedKicks + " old kicks.");
+            List<ChunkedJanitor.Target> targets = new ArrayList<>();
+            predicates.forEach((table, predicate) -> targets.add(new JanitorTarget(table, predicate, true)));
+            predicates.forEach((table, predicate) -> targets.add(new JanitorTarget(table + "_archive", predicate, true)));
+            targets.add(new JanitorTarget("controlbans_reports", "(status = 'RESOLVED' OR status = 'DISMISSED') AND time < " + reportRetention, false));
 
-                int deletedWarnings = stmt.executeUpdate("DELETE FROM controlbans_warnings WHERE (until > 0 AND until < " + warningRetention + ") OR (active = FALSE AND time < " + warningRetention + ")");
-                if (deletedWarnings > 0) plugin.getLogger().info("[Database Janitor] Purged " + deletedWarnings + " old warnings.");
+            janitor.run(targets, config.getJanitorChunkSize(), config.getJanitorChunkPause(), config.isJanitorArchiveEnabled());
+        }, 20L * 60 * 5, 20L * 60 * 60 * 24);
+    }
 
-                int deletedReports = stmt.executeUpdate("DELETE FROM controlbans_reports WHERE (status = 'RESOLVED' OR status = 'DISMISSED') AND time < " + reportRetention);
-                if (deletedReports > 0) plugin.getLogger().info("[Database Janitor] Purged " + deletedReports + " old resolved/dismissed reports.");
-            } catch (SQLException e) {
-                plugin.getLogger().warning("[Database Janitor] Cleanup failed: " + e.getMessage());
+    private void startArchiveMover() {
+        if (!config.isArchiveTierEnabled()) return;
+        plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            long now = System.currentTimeMillis();
+            long cutoff = now - (config.getArchiveTierDays() * 24L * 60 * 60 * 1000);
+            String inactive = "time < " + cutoff + " AND (active = FALSE OR (until > 0 AND until < " + now + "))";
+
+            List<ChunkedJanitor.Target> targets = new ArrayList<>();
+            for (String table : new String[]{"controlbans_bans", "controlbans_mutes", "controlbans_warnings", "controlbans_voicemutes"}) {
+                targets.add(new ArchiveMoveTarget(table, inactive));
             }
-        }, 20L * 60 * 5, 20L * 60 * 60 * 24);
+            targets.add(new ArchiveMoveTarget("controlbans_kicks", "time < " + cutoff));
+
+            archiveMover.run(targets, config.getJanitorChunkSize(), config.getJanitorChunkPause(), false);
+        }, 20L * 60 * 10, 20L * 60 * 60 * 6);
+    }
+
+    private void configureChangeSignals() {
+        boolean notify = config.isPostgresNotifyEnabled();
+        if (notify && !"postgresql".equals(getDatabaseType())) {
+            plugin.getLogger().warning("postgres-notify is enabled but the database type is " + getDatabaseType() + "; ignoring it.");
+            notify = false;
+        }
+        punishmentDao.setChangeSignals(instanceId, config.isChangeFeedEnabled(), notify);
+    }
+
+    private void startChangeFeed() {
+        if (!config.isChangeFeedEnabled()) return;
+        changeFeed = new ChangeFeed("ControlBans-ChangeFeed", instanceId, config.getChangeFeedPollInterval(),
+                config.getChangeFeedRetentionMinutes() * 60_000L, plugin.getLogger(), new ChangeFeed.Source() {
+            @Override
+            public long latestId() {
+                return executeQueryAsync(punishmentDao::getLatestChangeId).join();
+            }
+
+            @Override
+            public List<ChangeFeed.Change> since(long afterId, int limit) {
+                return executeQueryAsync(conn -> punishmentDao.getChangesSince(conn, afterId, limit)).join();
+            }
+
+            @Override
+            public void trim(long olderThan) {
+                executeAsync(QueryPriority.HOUSEKEEPING, conn -> punishmentDao.trimChanges(conn, olderThan)).join();
+            }
+        }, this::applyRemoteChange);
+        changeFeed.start();
+    }
+
+    private void startNotifyListener() {
+        if (!config.isPostgresNotifyEnabled() || !"postgresql".equals(getDatabaseType())) return;
+        notifyListener = new PostgresNotifyListener("ControlBans-PgNotify", instanceId, plugin.getLogger(),
+                () -> DriverManager.getConnection(postgresUrl(), config.getDatabaseUsername(), config.getDatabasePassword()),
+                this::applyRemoteChange);
+        notifyListener.start();
+    }
+
+    private void startUuidStorageWatch() {
+        plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::checkUuidStorage,
+                20L * UUID_STORAGE_POLL_SECONDS, 20L * UUID_STORAGE_POLL_SECONDS);
+    }
+
+    private void checkUuidStorage() {
+        if (convertingUuids.get()) return;
+        String stored;
+        try (Connection connection = getConnection()) {
+            stored = new SchemaMigrator(connection, getDatabaseType(), false).readUuidStorageSetting();
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to check the UUID storage mode", e);
+            return;
+        }
+        String local = getUuidStorageMode();
+        if (stored == null || stored.equals(local)) {
+            if (maintenanceReason != null) {
+                maintenanceReason = null;
+                plugin.getLogger().info("UUID storage mode matches the database again; database access resumed.");
+            }
+            return;
+        }
+        String reason = SchemaMigrator.UUID_STORAGE_CONVERTING.equals(stored)
+                ? "A UUID storage conversion is in progress or incomplete. Run /controlbans database convert-uuids to resume it, then restart the other servers."
+                : "The database stores UUIDs as " + stored + " but this server uses " + local + ". Restart this server.";
+        if (!reason.equals(maintenanceReason)) {
+            plugin.getLogger().severe(reason + " Database access is disabled until then.");
+        }
+        maintenanceReason = reason;
+    }
+
+    private void applyRemoteChange(UUID uuid) {
+        if (plugin.getPunishmentService() != null) plugin.getPunishmentService().handleRemoteChange(uuid);
+    }
+
+    private final class ArchiveMoveTarget implements ChunkedJanitor.Target {
+        private final String table;
+        private final String predicate;
+
+        private ArchiveMoveTarget(String table, String predicate) {
+            this.table = table;
+            this.predicate = predicate;
+        }
+
+        @Override
+        public String name() {
+            return table;
+        }
+
+        @Override
+        public ChunkedJanitor.Chunk fetch(String afterKey, int limit) {
+            Long key = afterKey != null ? Long.parseLong(afterKey) : null;
+            List<Object> keys = executeQueryAsync(QueryPriority.HOUSEKEEPING, conn -> punishmentDao.getArchivableKeys(conn, table, predicate, key, limit)).join();
+            return new ChunkedJanitor.Chunk(List.of(), keys, keys.isEmpty() ? null : String.valueOf(keys.get(keys.size() - 1)));
+        }
+
+        @Override
+        public long delete(List<Object> keys) {
+            return executeQueryAsync(QueryPriority.HOUSEKEEPING, conn -> punishmentDao.moveToArchive(conn, table, predicate, keys)).join();
+        }
+    }
+
+    private final class JanitorTarget implements ChunkedJanitor.Target {
+        private final String table;
+        private final String predicate;
+        private final boolean numericKey;
+
+        private JanitorTarget(String table, String predicate, boolean numericKey) {
+            this.table = table;
+            this.predicate = predicate;
+            this.numericKey = numericKey;
+        }
+
+        @Override
+        public String name() {
+            return table;
+        }
+
+        @Override
+        public ChunkedJanitor.Chunk fetch(String afterKey, int limit) {
+            Object key = afterKey == null ? null : numericKey ? Long.parseLong(afterKey) : afterKey;
+            List<Map<String, Object>> rows = executeQueryAsync(QueryPriority.HOUSEKEEPING,
+                    conn -> punishmentDao.getJanitorChunk(conn, table, predicate, key, limit)).join();
+            return ChunkedJanitor.rowChunk(rows, "id");
+        }
+
+        @Override
+        public long delete(List<Object> keys) {
+            return executeQueryAsync(QueryPriority.HOUSEKEEPING, conn -> punishmentDao.deleteJanitorChunk(conn, table, predicate, keys)).join();
+        }
     }
 
     private void setupDataSource() {
@@ -148,14 +312,19 @@ public class DatabaseManager implements StorageInterface {
         hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
         hikariConfig.addDataSourceProperty("prepStmtCacheSize", "250");
         hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        hikariConfig.addDataSourceProperty("rewriteBatchedStatements", "true");
     }
 
     private void setupPostgreSQLDataSource(HikariConfig hikariConfig) {
         hikariConfig.setDriverClassName("org.postgresql.Driver");
-        hikariConfig.setJdbcUrl(String.format("jdbc:postgresql://%s:%d/%s",
-                config.getDatabaseHost(), config.getDatabasePort(), config.getDatabaseName()));
+        hikariConfig.setJdbcUrl(postgresUrl());
         hikariConfig.setUsername(config.getDatabaseUsername());
         hikariConfig.setPassword(config.getDatabasePassword());
+        hikariConfig.addDataSourceProperty("reWriteBatchedInserts", "true");
+    }
+
+    private String postgresUrl() {
+        return String.format("jdbc:postgresql://%s:%d/%s", config.getDatabaseHost(), config.getDatabasePort(), config.getDatabaseName());
     }
 
     private void setupSQLiteDataSource(HikariConfig hikariConfig) {
@@ -188,11 +357,63 @@ public class DatabaseManager implements StorageInterface {
 
     private void createTables() {
         try (Connection connection = getConnection()) {
-            SchemaMigrator migrator = new SchemaMigrator(connection, getDatabaseType());
-            migrator.createLiteBansCompatibleSchema();
+            SchemaMigrator migrator = new SchemaMigrator(connection, getDatabaseType(), config.isBinaryUuidStorage());
+            migrator.migrate();
+            punishmentDao.setUuidCodec(migrator.getUuidCodec());
+            if (config.isBinaryUuidStorage() && !migrator.getUuidCodec().isBinary()) {
+                plugin.getLogger().warning("uuid-storage is set to binary but this database still stores UUIDs as text. Run /controlbans database convert-uuids to convert it.");
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Failed to create database tables", e);
         }
+        checkUuidStorage();
+    }
+
+    public CompletableFuture<Integer> convertUuidStorage() {
+        if (!convertingUuids.compareAndSet(false, true)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A UUID storage conversion is already running."));
+        }
+        maintenanceReason = "UUID storage conversion in progress.";
+        return scheduler.supply(QueryPriority.BULK, () -> {
+            try {
+                if (!scheduler.awaitIdle(1, 30, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Timed out waiting for pending database work to finish.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for pending database work", e);
+            }
+            try (Connection connection = getConnection()) {
+                SchemaMigrator migrator = new SchemaMigrator(connection, getDatabaseType(), true);
+                if (!migrator.beginUuidConversion()) {
+                    return 0;
+                }
+                awaitOtherServersFenced();
+                int converted = migrator.convertUuidsToBinary();
+                punishmentDao.setUuidCodec(migrator.getUuidCodec());
+                return converted;
+            } catch (SQLException e) {
+                throw new RuntimeException("Database operation failed", e);
+            }
+        }).whenComplete((converted, throwable) -> {
+            convertingUuids.set(false);
+            checkUuidStorage();
+        });
+    }
+
+    private void awaitOtherServersFenced() {
+        long waitSeconds = UUID_STORAGE_POLL_SECONDS * 2L;
+        plugin.getLogger().info("Marked UUID storage as converting; waiting " + waitSeconds + "s for other servers to pause database access.");
+        try {
+            TimeUnit.SECONDS.sleep(waitSeconds);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for other servers to pause database access", e);
+        }
+    }
+
+    public String getUuidStorageMode() {
+        return punishmentDao.getUuidCodec().getModeName();
     }
 
     public Connection getConnection() throws SQLException {
@@ -201,62 +422,80 @@ public class DatabaseManager implements StorageInterface {
 
     @Override
     public CompletableFuture<Void> insertBan(Punishment punishment) {
-        return executeAsync(conn -> punishmentDao.insertBan(conn, punishment));
+        historyBuffer.record(punishment.getTargetUuid(), punishment.getTargetName(), punishment.getTargetIp());
+        return executeAsync(conn -> punishmentDao.insert(conn, punishment));
     }
 
     @Override
     public CompletableFuture<Void> insertMute(Punishment punishment) {
-        return executeAsync(conn -> punishmentDao.insertMute(conn, punishment));
+        historyBuffer.record(punishment.getTargetUuid(), punishment.getTargetName(), punishment.getTargetIp());
+        return executeAsync(conn -> punishmentDao.insert(conn, punishment));
     }
 
     @Override
     public CompletableFuture<Void> insertWarning(Punishment punishment) {
-        return executeAsync(conn -> punishmentDao.insertWarning(conn, punishment));
+        historyBuffer.record(punishment.getTargetUuid(), punishment.getTargetName(), punishment.getTargetIp());
+        return executeAsync(conn -> punishmentDao.insert(conn, punishment));
     }
 
     @Override
     public CompletableFuture<Void> insertKick(Punishment punishment) {
-        return executeAsync(conn -> punishmentDao.insertKick(conn, punishment));
+        historyBuffer.record(punishment.getTargetUuid(), punishment.getTargetName(), punishment.getTargetIp());
+        return executeAsync(conn -> punishmentDao.insert(conn, punishment));
     }
 
     @Override
     public CompletableFuture<Void> insertVoiceMute(Punishment punishment) {
-        return executeAsync(conn -> punishmentDao.insertVoiceMute(conn, punishment));
+        historyBuffer.record(punishment.getTargetUuid(), punishment.getTargetName(), null);
+        return executeAsync(conn -> punishmentDao.insert(conn, punishment));
+    }
+
+    @Override
+    public StorageTransaction beginTransaction() {
+        return new StorageTransaction(punishments -> {
+            punishments.forEach(this::recordTargetHistory);
+            return executeAsync(conn -> punishmentDao.insertBatch(conn, punishments));
+        });
     }
 
     @Override
     public CompletableFuture<Optional<Punishment>> getActiveBan(UUID uuid) {
-        return executeQueryAsync(conn -> punishmentDao.getActiveBan(conn, uuid));
+        return executeQueryAsync(QueryPriority.LOGIN, conn -> punishmentDao.getActiveBan(conn, uuid));
     }
 
     @Override
     public CompletableFuture<Optional<Punishment>> getActiveMute(UUID uuid) {
-        return executeQueryAsync(conn -> punishmentDao.getActiveMute(conn, uuid));
+        return executeQueryAsync(QueryPriority.LOGIN, conn -> punishmentDao.getActiveMute(conn, uuid));
     }
 
     @Override
     public CompletableFuture<Optional<Punishment>> getActiveVoiceMute(UUID uuid) {
-        return executeQueryAsync(conn -> punishmentDao.getActiveVoiceMute(conn, uuid));
+        return executeQueryAsync(QueryPriority.LOGIN, conn -> punishmentDao.getActiveVoiceMute(conn, uuid));
     }
 
     @Override
     public CompletableFuture<Optional<Punishment>> getActiveIpBan(String ip) {
-        return executeQueryAsync(conn -> punishmentDao.getActiveIpBan(conn, ip));
+        return executeQueryAsync(QueryPriority.LOGIN, conn -> punishmentDao.getActiveIpBan(conn, ip));
     }
 
     @Override
     public CompletableFuture<Optional<Punishment>> getActiveIpMute(String ip) {
-        return executeQueryAsync(conn -> punishmentDao.getActiveIpMute(conn, ip));
+        return executeQueryAsync(QueryPriority.LOGIN, conn -> punishmentDao.getActiveIpMute(conn, ip));
     }
 
     @Override
-    public CompletableFuture<Optional<Punishment>> getPunishmentById(String id) {
-        return executeQueryAsync(conn -> punishmentDao.getPunishmentById(conn, id));
+    public CompletableFuture<LoginState> getLoginState(UUID uuid, String ip) {
+        return executeQueryAsync(QueryPriority.LOGIN, conn -> punishmentDao.getLoginState(conn, uuid, ip));
     }
 
     @Override
-    public CompletableFuture<List<Punishment>> getPunishmentHistory(UUID uuid, int limit) {
-        return executeQueryAsync(conn -> punishmentDao.getPunishmentHistory(conn, uuid, limit));
+    public CompletableFuture<Optional<Punishment>> getPunishmentById(String id, boolean includeArchive) {
+        return executeQueryAsync(conn -> punishmentDao.getPunishmentById(conn, id, includeArchive));
+    }
+
+    @Override
+    public CompletableFuture<List<Punishment>> getPunishmentHistory(UUID uuid, int limit, boolean includeArchive) {
+        return executeQueryAsync(conn -> punishmentDao.getPunishmentHistory(conn, uuid, limit, includeArchive));
     }
 
     @Override
@@ -266,7 +505,62 @@ public class DatabaseManager implements StorageInterface {
 
     @Override
     public CompletableFuture<List<Punishment>> getAllPunishments() {
-        return executeQueryAsync(punishmentDao::getAllPunishments);
+        return executeQueryAsync(QueryPriority.BULK, punishmentDao::getAllPunishments);
+    }
+
+    @Override
+    public CompletableFuture<Long> streamPunishments(PunishmentType type, Consumer<Punishment> consumer) {
+        return executeQueryAsync(QueryPriority.BULK, conn -> punishmentDao.streamPunishments(conn, type, consumer));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, ExportWatermark>> streamChangedPunishments(Map<String, ExportWatermark> since, Consumer<Punishment> consumer) {
+        return executeQueryAsync(QueryPriority.BULK, conn -> punishmentDao.streamChangedPunishments(conn, since, consumer));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, ExportWatermark>> getExportWatermarks() {
+        return executeQueryAsync(QueryPriority.BULK, punishmentDao::getExportWatermarks);
+    }
+
+    @Override
+    public CompletableFuture<Void> saveExportWatermarks(Map<String, ExportWatermark> watermarks) {
+        return executeAsync(conn -> punishmentDao.saveExportWatermarks(conn, watermarks));
+    }
+
+    @Override
+    public CompletableFuture<List<Punishment>> getActivePunishments() {
+        return executeQueryAsync(QueryPriority.HOUSEKEEPING, punishmentDao::getActivePunishments);
+    }
+
+    @Override
+    public CompletableFuture<List<Punishment>> getActiveBans(PageCursor cursor, int limit) {
+        return executeQueryAsync(conn -> punishmentDao.getActiveBans(conn, cursor, limit));
+    }
+
+    @Override
+    public CompletableFuture<List<Punishment>> getActiveMutes(PageCursor cursor, int limit) {
+        return executeQueryAsync(conn -> punishmentDao.getActiveMutes(conn, cursor, limit));
+    }
+
+    @Override
+    public CompletableFuture<List<Punishment>> getPunishmentsByStaff(String staffName, PageCursor cursor, int limit) {
+        return executeQueryAsync(conn -> punishmentDao.getPunishmentsByStaff(conn, staffName, cursor, limit));
+    }
+
+    @Override
+    public CompletableFuture<Integer> countActiveBans() {
+        return executeQueryAsync(punishmentDao::countActiveBans);
+    }
+
+    @Override
+    public CompletableFuture<Integer> countActiveMutes() {
+        return executeQueryAsync(punishmentDao::countActiveMutes);
+    }
+
+    @Override
+    public CompletableFuture<Integer> countPunishmentsByStaff(String staffName) {
+        return executeQueryAsync(conn -> punishmentDao.countPunishmentsByStaff(conn, staffName));
     }
 
     @Override
@@ -296,17 +590,20 @@ public class DatabaseManager implements StorageInterface {
 
     @Override
     public CompletableFuture<Void> recordHistory(UUID uuid, String name, String ip) {
-        return executeAsync(conn -> punishmentDao.recordHistory(conn, uuid, name, ip));
+        historyBuffer.record(uuid, name, ip);
+        return CompletableFuture.completedFuture(null);
     }
 
     @Override
     public CompletableFuture<Void> clearAllData() {
-        return executeAsync(punishmentDao::clearAllData);
+        historyBuffer.clear();
+        return executeAsync(QueryPriority.BULK, punishmentDao::clearAllData);
     }
 
     @Override
     public CompletableFuture<Void> clearPlayerData(UUID uuid) {
-        return executeAsync(conn -> punishmentDao.clearPlayerData(conn, uuid));
+        historyBuffer.discard(uuid);
+        return executeAsync(QueryPriority.BULK, conn -> punishmentDao.clearPlayerData(conn, uuid));
     }
 
     @Override
@@ -360,16 +657,22 @@ public class DatabaseManager implements StorageInterface {
     }
 
     @Override
-    public CompletableFuture<Void> importPunishment(Punishment punishment) {
-        return executeAsync(conn -> {
-            switch (punishment.getType()) {
-                case BAN, TEMPBAN, IPBAN -> punishmentDao.insertBan(conn, punishment);
-                case MUTE, TEMPMUTE -> punishmentDao.insertMute(conn, punishment);
-                case KICK -> punishmentDao.insertKick(conn, punishment);
-                case WARN -> punishmentDao.insertWarning(conn, punishment);
-                case VOICEMUTE, TEMPVOICEMUTE -> punishmentDao.insertVoiceMute(conn, punishment);
-            }
-        });
+    public CompletableFuture<Boolean> importPunishment(Punishment punishment) {
+        return importPunishments(List.of(punishment)).thenApply(written -> written > 0);
+    }
+
+    @Override
+    public CompletableFuture<Integer> importPunishments(List<Punishment> punishments) {
+        if (punishments.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        punishments.forEach(this::recordTargetHistory);
+        return executeQueryAsync(QueryPriority.BULK, conn -> punishmentDao.insertMissing(conn, punishments));
+    }
+
+    private void recordTargetHistory(Punishment punishment) {
+        boolean voiceMute = punishment.getType() == PunishmentType.VOICEMUTE || punishment.getType() == PunishmentType.TEMPVOICEMUTE;
+        historyBuffer.record(punishment.getTargetUuid(), punishment.getTargetName(), voiceMute ? null : punishment.getTargetIp());
     }
 
     @Override
@@ -389,7 +692,7 @@ public class DatabaseManager implements StorageInterface {
 
     @Override
     public CompletableFuture<Boolean> updateReportStatus(String id, String status) {
-        return executeQueryAsync(conn -> punishmentDao.updateReportStatus(conn, id, status));
+        return executeQueryAsync(QueryPriority.WRITE, conn -> punishmentDao.updateReportStatus(conn, id, status));
     }
 
     @Override
@@ -399,7 +702,7 @@ public class DatabaseManager implements StorageInterface {
 
     @Override
     public CompletableFuture<Boolean> removeNote(UUID targetUuid, int index) {
-        return executeQueryAsync(conn -> punishmentDao.removeNote(conn, targetUuid, index));
+        return executeQueryAsync(QueryPriority.WRITE, conn -> punishmentDao.removeNote(conn, targetUuid, index));
     }
 
     @Override
@@ -408,23 +711,44 @@ public class DatabaseManager implements StorageInterface {
     }
 
     public CompletableFuture<Void> executeAsync(DatabaseOperation operation) {
-        return CompletableFuture.runAsync(() -> {
+        return executeAsync(QueryPriority.WRITE, operation);
+    }
+
+    public CompletableFuture<Void> executeAsync(QueryPriority priority, DatabaseOperation operation) {
+        String maintenance = maintenanceReason;
+        if (maintenance != null) {
+            return CompletableFuture.failedFuture(new DatabaseUnavailableException(maintenance));
+        }
+        return scheduler.run(priority, () -> {
             try (Connection connection = getConnection()) {
                 operation.execute(connection);
             } catch (SQLException e) {
                 throw new RuntimeException("Database operation failed", e);
             }
-        }, asyncExecutor);
+        });
     }
 
     public <T> CompletableFuture<T> executeQueryAsync(DatabaseQuery<T> query) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executeQueryAsync(QueryPriority.INTERACTIVE, query);
+    }
+
+    public <T> CompletableFuture<T> executeQueryAsync(QueryPriority priority, DatabaseQuery<T> query) {
+        String maintenance = maintenanceReason;
+        if (maintenance != null) {
+            return CompletableFuture.failedFuture(new DatabaseUnavailableException(maintenance));
+        }
+        return scheduler.supply(priority, () -> {
             try (Connection connection = getConnection()) {
                 return query.execute(connection);
             } catch (SQLException e) {
                 throw new RuntimeException("Database query failed", e);
             }
-        }, asyncExecutor);
+        });
+    }
+
+    @Override
+    public List<DatabaseScheduler.LaneStats> getSchedulerStats() {
+        return scheduler.getStats();
     }
 
     public String getDatabaseType() {
@@ -433,20 +757,23 @@ public class DatabaseManager implements StorageInterface {
 
     @Override
     public void shutdown() {
+        janitor.stop();
+        archiveMover.stop();
+        if (changeFeed != null) {
+            changeFeed.shutdown();
+        }
+        if (notifyListener != null) {
+            notifyListener.shutdown();
+        }
+        historyBuffer.shutdown();
+
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             plugin.getLogger().info("Database connection pool shut down");
         }
 
-        if (asyncExecutor != null) {
-            asyncExecutor.shutdownNow();
-            try {
-                if (!asyncExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                    plugin.getLogger().warning("Async database executor did not shut down cleanly.");
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+        if (!scheduler.shutdown(5, TimeUnit.SECONDS)) {
+            plugin.getLogger().warning("Async database executor did not shut down cleanly.");
         }
     }
 
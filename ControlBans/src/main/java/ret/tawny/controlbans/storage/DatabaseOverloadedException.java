@@ -0,0 +1,15 @@
+package ret.tawny.controlbans.storage;
+
+public class DatabaseOverloadedException extends RuntimeException {
+
+    private final QueryPriority priority;
+
+    public DatabaseOverloadedException(QueryPriority priority, int queueCapacity) {
+        super("Database " + priority.getConfigKey() + " queue is full (" + queueCapacity + " tasks), request rejected");
+        this.priority = priority;
+    }
+
+    public QueryPriority getPriority() {
+        return priority;
+    }
+}
@@ -0,0 +1,152 @@
+package ret.tawny.controlbans.storage;
+
+import ret.tawny.controlbans.config.ConfigManager;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+public class DatabaseScheduler {
+
+    private final Map<QueryPriority, Lane> lanes = new EnumMap<>(QueryPriority.class);
+
+    public DatabaseScheduler(String threadPrefix, ConfigManager config) {
+        for (QueryPriority priority : QueryPriority.values()) {
+            lanes.put(priority, new Lane(threadPrefix, priority,
+                    Math.max(1, config.getSchedulerThreads(priority)),
+                    Math.max(1, config.getSchedulerQueueSize(priority))));
+        }
+    }
+
+    public <T> CompletableFuture<T> supply(QueryPriority priority, Supplier<T> supplier) {
+        Lane lane = lanes.get(priority);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long enqueuedAt = System.nanoTime();
+        try {
+            lane.executor.execute(new Task(future, () -> {
+                lane.recordWait(System.nanoTime() - enqueuedAt);
+                try {
+                    future.complete(supplier.get());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            lane.rejected.increment();
+            future.completeExceptionally(lane.executor.isShutdown()
+                    ? new IllegalStateException("Database scheduler is shut down", e)
+                    : new DatabaseOverloadedException(priority, lane.queueCapacity));
+        }
+        return future;
+    }
+
+    public CompletableFuture<Void> run(QueryPriority priority, Runnable runnable) {
+        return supply(priority, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    public List<LaneStats> getStats() {
+        List<LaneStats> stats = new ArrayList<>();
+        lanes.forEach((priority, lane) -> stats.add(lane.snapshot()));
+        return stats;
+    }
+
+    public boolean awaitIdle(int ownTasks, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            int busy = 0;
+            for (Lane lane : lanes.values()) {
+                busy += lane.executor.getActiveCount() + lane.executor.getQueue().size();
+            }
+            if (busy <= ownTasks) return true;
+            if (System.nanoTime() >= deadline) return false;
+            Thread.sleep(50L);
+        }
+    }
+
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        for (Lane lane : lanes.values()) {
+            for (Runnable pending : lane.executor.shutdownNow()) {
+                if (pending instanceof Task task) {
+                    task.future.completeExceptionally(new IllegalStateException("Database scheduler is shut down"));
+                }
+            }
+        }
+        boolean terminated = true;
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            for (Lane lane : lanes.values()) {
+                terminated &= lane.executor.awaitTermination(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return terminated;
+    }
+
+    public record LaneStats(QueryPriority priority, int threads, int activeThreads, int queued, int queueCapacity,
+                            long completed, long rejected, double averageWaitMillis, double maxWaitMillis) {
+    }
+
+    private record Task(CompletableFuture<?> future, Runnable body) implements Runnable {
+        @Override
+        public void run() {
+            body.run();
+        }
+    }
+
+    private static final class Lane {
+        private final QueryPriority priority;
+        private final ThreadPoolExecutor executor;
+        private final int queueCapacity;
+        private final LongAdder waitNanos = new LongAdder();
+        private final LongAdder started = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0L);
+
+        private Lane(String threadPrefix, QueryPriority priority, int threads, int queueCapacity) {
+            this.priority = priority;
+            this.queueCapacity = queueCapacity;
+            AtomicInteger threadId = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, threadPrefix + "-" + priority.getConfigKey() + "-" + threadId.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy()
+            );
+            this.executor.allowCoreThreadTimeOut(true);
+        }
+
+        private void recordWait(long nanos) {
+            waitNanos.add(nanos);
+            started.increment();
+            maxWaitNanos.accumulate(nanos);
+        }
+
+        private LaneStats snapshot() {
+            long count = started.sum();
+            double averageWait = count == 0 ? 0.0 : waitNanos.sum() / (double) count / 1_000_000.0;
+            return new LaneStats(priority, executor.getMaximumPoolSize(), executor.getActiveCount(), executor.getQueue().size(),
+                    queueCapacity, executor.getCompletedTaskCount(), rejected.sum(), averageWait, maxWaitNanos.get() / 1_000_000.0);
+        }
+    }
+}
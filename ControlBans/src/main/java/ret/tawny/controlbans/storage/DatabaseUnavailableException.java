@@ -0,0 +1,8 @@
+package ret.tawny.controlbans.storage;
+
+public class DatabaseUnavailableException extends IllegalStateException {
+
+    public DatabaseUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package ret.tawny.controlbans.storage;
+
+public class DuplicatePunishmentIdException extends RuntimeException {
+
+    public DuplicatePunishmentIdException() {
+        super("Punishment ID is already in use");
+    }
+
+    public DuplicatePunishmentIdException(Throwable cause) {
+        super("Punishment ID is already in use", cause);
+    }
+}
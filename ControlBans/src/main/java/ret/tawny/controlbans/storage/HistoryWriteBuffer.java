@@ -0,0 +1,173 @@
+package ret.tawny.controlbans.storage;
+
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class HistoryWriteBuffer {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final Map<Key, HistoryRecord> pending = new ConcurrentHashMap<>();
+    private final Map<Key, Integer> failures = new ConcurrentHashMap<>();
+    private final Object flushLock = new Object();
+    private final Logger logger;
+    private final long flushIntervalSeconds;
+    private final Flusher flusher;
+    private final ScheduledExecutorService executor;
+
+    public HistoryWriteBuffer(String name, long flushIntervalSeconds, Logger logger, Flusher flusher) {
+        this.logger = logger;
+        this.flushIntervalSeconds = Math.max(1L, flushIntervalSeconds);
+        this.flusher = flusher;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public void record(UUID uuid, String name, String ip) {
+        if (uuid == null || name == null || name.equalsIgnoreCase("unknown")) return;
+        HistoryRecord record = new HistoryRecord(uuid, name, ip, System.currentTimeMillis());
+        pending.merge(new Key(uuid, ip), record, (current, next) -> next.seenAt() >= current.seenAt() ? next : current);
+    }
+
+    public void discard(UUID uuid) {
+        pending.keySet().removeIf(key -> key.uuid().equals(uuid));
+        failures.keySet().removeIf(key -> key.uuid().equals(uuid));
+    }
+
+    public void clear() {
+        pending.clear();
+        failures.clear();
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    public void flush() {
+        synchronized (flushLock) {
+            if (pending.isEmpty()) return;
+
+            List<HistoryRecord> batch = new ArrayList<>(pending.size());
+            for (Map.Entry<Key, HistoryRecord> entry : pending.entrySet()) {
+                if (pending.remove(entry.getKey(), entry.getValue())) {
+                    batch.add(entry.getValue());
+                }
+            }
+            if (batch.isEmpty()) return;
+            batch.sort(Comparator.comparingLong(HistoryRecord::seenAt));
+
+            Exception failure = write(batch);
+            if (failure == null) return;
+            if (isTransient(failure)) {
+                batch.forEach(this::requeue);
+                logger.log(Level.WARNING, "Failed to flush " + batch.size() + " history records, retrying on the next flush.", failure);
+                return;
+            }
+            isolate(batch, failure);
+        }
+    }
+
+    private void isolate(List<HistoryRecord> batch, Exception failure) {
+        if (batch.size() == 1) {
+            recordFailure(batch.get(0), failure);
+            return;
+        }
+        int middle = batch.size() / 2;
+        for (List<HistoryRecord> half : List.of(batch.subList(0, middle), batch.subList(middle, batch.size()))) {
+            Exception halfFailure = write(half);
+            if (halfFailure == null) continue;
+            if (isTransient(halfFailure)) {
+                half.forEach(this::requeue);
+            } else {
+                isolate(half, halfFailure);
+            }
+        }
+    }
+
+    private Exception write(List<HistoryRecord> batch) {
+        try {
+            flusher.flush(batch);
+        } catch (Exception e) {
+            return e;
+        }
+        for (HistoryRecord record : batch) {
+            failures.remove(new Key(record.uuid(), record.ip()));
+        }
+        return null;
+    }
+
+    private void recordFailure(HistoryRecord record, Exception failure) {
+        Key key = new Key(record.uuid(), record.ip());
+        int attempts = failures.merge(key, 1, Integer::sum);
+        if (attempts < MAX_ATTEMPTS) {
+            requeue(record);
+            return;
+        }
+        failures.remove(key);
+        logger.log(Level.WARNING, "Dropping history record for " + record.name() + " (" + record.uuid() + ", " + record.ip()
+                + ") after " + attempts + " failed flushes.", failure);
+    }
+
+    private void requeue(HistoryRecord record) {
+        pending.putIfAbsent(new Key(record.uuid(), record.ip()), record);
+    }
+
+    private static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException
+                    || cause instanceof SQLNonTransientConnectionException || cause instanceof DatabaseOverloadedException
+                    || cause instanceof DatabaseUnavailableException || cause instanceof MongoSocketException
+                    || cause instanceof MongoTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!pending.isEmpty()) {
+            logger.warning("Dropping " + pending.size() + " history records that could not be flushed before shutdown.");
+            clear();
+        }
+    }
+
+    public record HistoryRecord(UUID uuid, String name, String ip, long seenAt) {
+    }
+
+    private record Key(UUID uuid, String ip) {
+    }
+
+    @FunctionalInterface
+    public interface Flusher {
+        void flush(List<HistoryRecord> records) throws Exception;
+    }
+}
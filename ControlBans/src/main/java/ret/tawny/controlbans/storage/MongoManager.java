@@ -1,32 +1,54 @@
 package ret.tawny.controlbans.storage;
 
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Collation;
+import com.mongodb.client.model.CollationStrength;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Field;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.MergeOptions;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.event.ClusterClosedEvent;
 import com.mongodb.event.ClusterDescriptionChangedEvent;
 import com.mongodb.event.ClusterListener;
 import com.mongodb.event.ClusterOpeningEvent;
 import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.bson.conversions.Bson;
 import ret.tawny.controlbans.ControlBansPlugin;
 import ret.tawny.controlbans.config.ConfigManager;
+import ret.tawny.controlbans.model.ExportWatermark;
+import ret.tawny.controlbans.model.LoginState;
+import ret.tawny.controlbans.model.PageCursor;
 import ret.tawny.controlbans.model.Punishment;
 import ret.tawny.controlbans.model.PunishmentType;
+import ret.tawny.controlbans.util.IdUtil;
+import ret.tawny.controlbans.util.SortedMerge;
 
+import java.io.File;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 
@@ -37,8 +59,12 @@ public class MongoManager implements StorageInterface {
     private MongoClient mongoClient;
     private MongoDatabase database;
     private boolean connected = false;
-    private final ExecutorService asyncExecutor;
-    private static final AtomicInteger EXECUTOR_THREAD_ID = new AtomicInteger();
+    private final DatabaseScheduler scheduler;
+    private final HistoryWriteBuffer historyBuffer;
+    private final ChunkedJanitor janitor;
+    private final ChunkedJanitor archiveMover;
+
+    private static final int STREAM_BATCH_SIZE = 500;
 
     private static final String COL_BANS = "controlbans_bans";
     private static final String COL_MUTES = "controlbans_mutes";
@@ -46,9 +72,15 @@ public class MongoManager implements StorageInterface {
     private static final String COL_KICKS = "controlbans_kicks";
     private static final String COL_VOICEMUTES = "controlbans_voicemutes";
     private static final String COL_HISTORY = "controlbans_history";
+    private static final String COL_PLAYERS = "controlbans_players";
     private static final String COL_APPEALS = "controlbans_appeals";
     private static final String COL_REPORTS = "controlbans_reports";
     private static final String COL_NOTES = "controlbans_notes";
+    private static final String COL_SETTINGS = "controlbans_settings";
+    private static final String WATERMARK_SETTING_PREFIX = "export-watermark.";
+    private static final String JANITOR_CURSOR_PREFIX = "janitor-cursor.";
+    private static final String ARCHIVE_SUFFIX = "_archive";
+    private static final Collation STAFF_COLLATION = Collation.builder().locale("en").collationStrength(CollationStrength.SECONDARY).build();
     private static final List<String> PUNISHMENT_COLLECTIONS = List.of(
             COL_BANS,
             COL_MUTES,
@@ -63,6 +95,7 @@ public class MongoManager implements StorageInterface {
             COL_KICKS,
             COL_VOICEMUTES,
             COL_HISTORY,
+            COL_PLAYERS,
             COL_APPEALS,
             COL_REPORTS,
             COL_NOTES
@@ -71,12 +104,36 @@ public class MongoManager implements StorageInterface {
     public MongoManager(ControlBansPlugin plugin, ConfigManager config) {
         this.plugin = plugin;
         this.config = config;
-        ThreadFactory threadFactory = runnable -> {
-            Thread thread = new Thread(runnable, "ControlBans-Mongo-" + EXECUTOR_THREAD_ID.incrementAndGet());
-            thread.setDaemon(true);
-            return thread;
+        this.scheduler = new DatabaseScheduler("ControlBans-Mongo", config);
+        this.historyBuffer = new HistoryWriteBuffer("ControlBans-Mongo-History", config.getHistoryFlushInterval(), plugin.getLogger(),
+                records -> runAsync(() -> flushHistorySync(records)).join());
+        File archiveDir = new File(plugin.getDataFolder(), "archive");
+        this.janitor = new ChunkedJanitor("[Mongo Janitor]", "Purged", plugin.getLogger(), archiveDir, cursorStore(JANITOR_CURSOR_PREFIX));
+        this.archiveMover = new ChunkedJanitor("[Mongo Archive Mover]", "Moved", plugin.getLogger(), archiveDir, cursorStore(JANITOR_CURSOR_PREFIX + "archive-move."));
+    }
+
+    private ChunkedJanitor.CursorStore cursorStore(String prefix) {
+        return new ChunkedJanitor.CursorStore() {
+            @Override
+            public String load(String collection) {
+                return supplyAsync(QueryPriority.HOUSEKEEPING, () -> {
+                    Document doc = getCollection(COL_SETTINGS).find(Filters.eq("_id", prefix + collection)).first();
+                    return doc != null ? doc.getString("value") : null;
+                }).join();
+            }
+
+            @Override
+            public void save(String collection, String cursor) {
+                runAsync(QueryPriority.HOUSEKEEPING, () -> {
+                    Bson id = Filters.eq("_id", prefix + collection);
+                    if (cursor == null) {
+                        getCollection(COL_SETTINGS).deleteOne(id);
+                    } else {
+                        getCollection(COL_SETTINGS).replaceOne(id, new Document("_id", prefix + collection).append("value", cursor), new ReplaceOptions().upsert(true));
+                    }
+                }).join();
+            }
         };
-        this.asyncExecutor = Executors.newCachedThreadPool(threadFactory);
     }
 
     private final ClusterListener clusterStateListener = new ClusterListener() {
@@ -111,7 +168,10 @@ public class MongoManager implements StorageInterface {
             connected = true;
             plugin.getLogger().info("MongoDB connected successfully.");
             createIndexes();
+            backfillPlayers();
+            historyBuffer.start();
             startJanitor();
+            startArchiveMover();
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "Failed to connect to MongoDB", e);
             throw new RuntimeException("MongoDB initialization failed", e);
@@ -132,37 +192,151 @@ public class MongoManager implements StorageInterface {
             long warningRetention = System.currentTimeMillis() - (warnDays * 24L * 60 * 60 * 1000);
             long reportRetention = System.currentTimeMillis() - (reportDays * 24L * 60 * 60 * 1000);
 
-            try {
-                int deletedBans = 0;
-                for (String collection : new String[]{COL_BANS, COL_MUTES, COL_VOICEMUTES}) {
-                    Bson banFilter = Filters.and(Filters.gt("expiry_time", 0L), Filters.lt("expiry_time", banRetention));
-                    deletedBans += getCollection(collection).deleteMany(banFilter).getDeletedCount();
-                }
-                if (deletedBans > 0) plugin.getLogger().info("[Mongo Janitor] Purged " + deletedBans + " ancient temporary punishments.");
-
-                Bson kickFilter = Filters.lt("created_time", kickRetention);
-                long deletedKicks = getCollection(COL_KICKS).deleteMany(kickFilter).getDeletedCount();
-                if (deletedKicks > 0) plugin.getLogger().info("[Mongo Janitor] Purged " + deletedKicks + " old kicks.");
-
-                Bson warnFilter = Filters.or(
-                        Filters.and(Filters.gt("expiry_time", 0L), Filters.lt("expiry_time", warningRetention)),
-                        Filters.and(Filters.eq("active", false), Filters.lt("created_time", warningRetention))
-                );
-                long deletedWarns = getCollection(COL_WARNINGS).deleteMany(warnFilter).getDeletedCount();
-                if (deletedWarns > 0) plugin.getLogger().info("[Mongo Janitor] Purged " + deletedWarns + " old warnings.");
-
-                Bson reportFilter = Filters.and(
-                        Filters.or(Filters.eq("status", "RESOLVED"), Filters.eq("status", "DISMISSED")),
-                        Filters.lt("time", reportRetention)
-                );
-                long deletedReports = getCollection(COL_REPORTS).deleteMany(reportFilter).getDeletedCount();
-                if (deletedReports > 0) plugin.getLogger().info("[Mongo Janitor] Purged " + deletedReports + " old resolved/dismissed reports.");
-            } catch (Exception e) {
-                plugin.getLogger().warning("[Mongo Janitor] Cleanup failed: " + e.getMessage());
+            Map<String, Bson> filters = new LinkedHashMap<>();
+            for (String collection : new String[]{COL_BANS, COL_MUTES, COL_VOICEMUTES}) {
+                filters.put(collection, Filters.and(Filters.gt("expiry_time", 0L), Filters.lt("expiry_time", banRetention)));
             }
+            filters.put(COL_KICKS, Filters.lt("created_time", kickRetention));
+            filters.put(COL_WARNINGS, Filters.or(
+                    Filters.and(Filters.gt("expiry_time", 0L), Filters.lt("expiry_time", warningRetention)),
+                    Filters.and(Filters.eq("active", false), Filters.lt("created_time", warningRetention))
+            ));
+
+            List<ChunkedJanitor.Target> targets = new ArrayList<>();
+            filters.forEach((collection, filter) -> targets.add(new JanitorTarget(collection, filter)));
+            filters.forEach((collection, filter) -> targets.add(new JanitorTarget(collection + ARCHIVE_SUFFIX, filter)));
+            targets.add(new JanitorTarget(COL_REPORTS, Filters.and(
+                    Filters.or(Filters.eq("status", "RESOLVED"), Filters.eq("status", "DISMISSED")),
+                    Filters.lt("time", reportRetention)
+            )));
+
+            janitor.run(targets, config.getJanitorChunkSize(), config.getJanitorChunkPause(), config.isJanitorArchiveEnabled());
         }, 20L * 60 * 5, 20L * 60 * 60 * 24);
     }
 
+    private void startArchiveMover() {
+        if (!config.isArchiveTierEnabled()) return;
+        plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, () -> {
+            if (!connected) return;
+
+            long now = System.currentTimeMillis();
+            long cutoff = now - (config.getArchiveTierDays() * 24L * 60 * 60 * 1000);
+            Bson inactive = Filters.and(Filters.lt("created_time", cutoff), Filters.or(
+                    Filters.eq("active", false),
+                    Filters.and(Filters.gt("expiry_time", 0L), Filters.lt("expiry_time", now))
+            ));
+
+            List<ChunkedJanitor.Target> targets = new ArrayList<>();
+            for (String collection : new String[]{COL_BANS, COL_MUTES, COL_WARNINGS, COL_VOICEMUTES}) {
+                targets.add(new ArchiveMoveTarget(collection, inactive));
+            }
+            targets.add(new ArchiveMoveTarget(COL_KICKS, Filters.lt("created_time", cutoff)));
+
+            archiveMover.run(targets, config.getJanitorChunkSize(), config.getJanitorChunkPause(), false);
+        }, 20L * 60 * 10, 20L * 60 * 60 * 6);
+    }
+
+    private final class ArchiveMoveTarget implements ChunkedJanitor.Target {
+        private final String collection;
+        private final Bson filter;
+
+        private ArchiveMoveTarget(String collection, Bson filter) {
+            this.collection = collection;
+            this.filter = filter;
+        }
+
+        @Override
+        public String name() {
+            return collection;
+        }
+
+        @Override
+        public ChunkedJanitor.Chunk fetch(String afterKey, int limit) {
+            return supplyAsync(QueryPriority.HOUSEKEEPING, () -> {
+                Bson query = afterKey == null ? filter : Filters.and(filter, Filters.gt("_id", Document.parse(afterKey).get("_id")));
+                List<Object> keys = new ArrayList<>(limit);
+                for (Document doc : getCollection(collection).find(query).projection(new Document("_id", 1)).sort(Sorts.ascending("_id")).limit(limit)) {
+                    keys.add(doc.get("_id"));
+                }
+                String lastKey = keys.isEmpty() ? null : new Document("_id", keys.get(keys.size() - 1)).toJson();
+                return new ChunkedJanitor.Chunk(List.of(), keys, lastKey);
+            }).join();
+        }
+
+        @Override
+        public long delete(List<Object> keys) {
+            return supplyAsync(QueryPriority.HOUSEKEEPING, () -> {
+                Bson selection = Filters.and(Filters.in("_id", keys), filter);
+                List<WriteModel<Document>> copies = new ArrayList<>(keys.size());
+                for (Document doc : getCollection(collection).find(selection)) {
+                    copies.add(new ReplaceOneModel<>(Filters.eq("_id", doc.get("_id")), doc, new ReplaceOptions().upsert(true)));
+                }
+                if (copies.isEmpty()) return 0L;
+                getCollection(collection + ARCHIVE_SUFFIX).bulkWrite(copies, new BulkWriteOptions().ordered(false));
+                return getCollection(collection).deleteMany(selection).getDeletedCount();
+            }).join();
+        }
+    }
+
+    private final class JanitorTarget implements ChunkedJanitor.Target {
+        private final String collection;
+        private final Bson filter;
+
+        private JanitorTarget(String collection, Bson filter) {
+            this.collection = collection;
+            this.filter = filter;
+        }
+
+        @Override
+        public String name() {
+            return collection;
+        }
+
+        @Override
+        public ChunkedJanitor.Chunk fetch(String afterKey, int limit) {
+            return supplyAsync(QueryPriority.HOUSEKEEPING, () -> {
+                Bson query = afterKey == null ? filter : Filters.and(filter, Filters.gt("_id", Document.parse(afterKey).get("_id")));
+                List<String> lines = new ArrayList<>(limit);
+                List<Object> keys = new ArrayList<>(limit);
+                for (Document doc : getCollection(collection).find(query).sort(Sorts.ascending("_id")).limit(limit)) {
+                    lines.add(doc.toJson());
+                    keys.add(doc.get("_id"));
+                }
+                String lastKey = keys.isEmpty() ? null : new Document("_id", keys.get(keys.size() - 1)).toJson();
+                return new ChunkedJanitor.Chunk(lines, keys, lastKey);
+            }).join();
+        }
+
+        @Override
+        public long delete(List<Object> keys) {
+            return supplyAsync(QueryPriority.HOUSEKEEPING, () -> getCollection(collection).deleteMany(Filters.and(Filters.in("_id", keys), filter)).getDeletedCount()).join();
+        }
+    }
+
+    private void backfillPlayers() {
+        if (getCollection(COL_PLAYERS).estimatedDocumentCount() > 0 || getCollection(COL_HISTORY).estimatedDocumentCount() == 0) {
+            return;
+        }
+        getCollection(COL_HISTORY).aggregate(List.of(
+                Aggregates.sort(Sorts.descending("date")),
+                Aggregates.group("$uuid",
+                        Accumulators.first("name", "$name"),
+                        Accumulators.first("last_ip", "$ip"),
+                        Accumulators.min("first_seen", "$date"),
+                        Accumulators.max("last_seen", "$date")),
+                Aggregates.project(new Document("_id", 0)
+                        .append("uuid", "$_id")
+                        .append("name", 1)
+                        .append("last_ip", 1)
+                        .append("first_seen", 1)
+                        .append("last_seen", 1)),
+                Aggregates.merge(COL_PLAYERS, new MergeOptions()
+                        .uniqueIdentifier("uuid")
+                        .whenMatched(MergeOptions.WhenMatched.KEEP_EXISTING))
+        )).allowDiskUse(true).toCollection();
+        plugin.getLogger().info("Backfilled MongoDB players collection from history.");
+    }
+
     private void createIndexes() {
         for (String colName : PUNISHMENT_COLLECTIONS) {
             MongoCollection<Document> col = getCollection(colName);
@@ -171,6 +345,21 @@ public class MongoManager implements StorageInterface {
             col.createIndex(new Document("active", 1));
             col.createIndex(new Document("created_time", -1));
             col.createIndex(new Document("target_ip", 1));
+            col.createIndex(new Document("removed_by_date", 1), new IndexOptions().sparse(true));
+            col.createIndex(new Document("staff_name", 1).append("created_time", -1), new IndexOptions().collation(STAFF_COLLATION));
+        }
+        for (String colName : PUNISHMENT_COLLECTIONS) {
+            MongoCollection<Document> archive = getCollection(colName + ARCHIVE_SUFFIX);
+            archive.createIndex(new Document("punishment_id", 1));
+            archive.createIndex(new Document("target_uuid", 1).append("created_time", -1));
+        }
+        for (String colName : List.of(COL_BANS, COL_MUTES, COL_VOICEMUTES)) {
+            getCollection(colName).createIndex(new Document("target_uuid", 1).append("active", 1)
+                    .append("expiry_time", 1).append("created_time", -1));
+        }
+        for (String colName : List.of(COL_BANS, COL_MUTES)) {
+            getCollection(colName).createIndex(new Document("target_ip", 1).append("ip_ban", 1)
+                    .append("active", 1).append("expiry_time", 1));
         }
         getCollection(COL_HISTORY).createIndex(new Document("date", -1));
         getCollection(COL_HISTORY).createIndex(new Document("name", 1));
@@ -178,6 +367,8 @@ public class MongoManager implements StorageInterface {
         getCollection(COL_HISTORY).createIndex(new Document("ip", 1));
         getCollection(COL_HISTORY).createIndex(new Document("uuid", 1).append("ip", 1),
                 new IndexOptions().unique(true));
+        getCollection(COL_PLAYERS).createIndex(new Document("uuid", 1), new IndexOptions().unique(true));
+        getCollection(COL_PLAYERS).createIndex(new Document("name", 1));
         getCollection(COL_APPEALS).createIndex(new Document("target_uuid", 1));
         getCollection(COL_APPEALS).createIndex(new Document("created_at", -1));
         getCollection(COL_REPORTS).createIndex(new Document("reporter_uuid", 1));
@@ -190,37 +381,125 @@ public class MongoManager implements StorageInterface {
     }
 
     private <T> CompletableFuture<T> supplyAsync(java.util.function.Supplier<T> supplier) {
-        return CompletableFuture.supplyAsync(supplier, asyncExecutor);
+        return supplyAsync(QueryPriority.INTERACTIVE, supplier);
+    }
+
+    private <T> CompletableFuture<T> supplyAsync(QueryPriority priority, java.util.function.Supplier<T> supplier) {
+        return scheduler.supply(priority, supplier);
     }
 
     private CompletableFuture<Void> runAsync(Runnable runnable) {
-        return CompletableFuture.runAsync(runnable, asyncExecutor);
+        return runAsync(QueryPriority.WRITE, runnable);
+    }
+
+    private CompletableFuture<Void> runAsync(QueryPriority priority, Runnable runnable) {
+        return scheduler.run(priority, runnable);
     }
 
     @Override
-    public CompletableFuture<Void> insertBan(Punishment p) { return runAsync(() -> insertPunishmentSync(COL_BANS, p)); }
+    public List<DatabaseScheduler.LaneStats> getSchedulerStats() {
+        return scheduler.getStats();
+    }
+
     @Override
-    public CompletableFuture<Void> insertMute(Punishment p) { return runAsync(() -> insertPunishmentSync(COL_MUTES, p)); }
+    public CompletableFuture<Void> insertBan(Punishment p) { return runAsync(() -> insertNewPunishmentSync(COL_BANS, p)); }
     @Override
-    public CompletableFuture<Void> insertWarning(Punishment p) { return runAsync(() -> insertPunishmentSync(COL_WARNINGS, p)); }
+    public CompletableFuture<Void> insertMute(Punishment p) { return runAsync(() -> insertNewPunishmentSync(COL_MUTES, p)); }
     @Override
-    public CompletableFuture<Void> insertKick(Punishment p) { return runAsync(() -> insertPunishmentSync(COL_KICKS, p)); }
+    public CompletableFuture<Void> insertWarning(Punishment p) { return runAsync(() -> insertNewPunishmentSync(COL_WARNINGS, p)); }
     @Override
-    public CompletableFuture<Void> insertVoiceMute(Punishment p) { return runAsync(() -> insertPunishmentSync(COL_VOICEMUTES, p)); }
+    public CompletableFuture<Void> insertKick(Punishment p) { return runAsync(() -> insertNewPunishmentSync(COL_KICKS, p)); }
+    @Override
+    public CompletableFuture<Void> insertVoiceMute(Punishment p) { return runAsync(() -> insertNewPunishmentSync(COL_VOICEMUTES, p)); }
+
+    @Override
+    public StorageTransaction beginTransaction() {
+        return new StorageTransaction(punishments -> runAsync(() -> insertNewPunishmentsSync(punishments)));
+    }
+
+    private void insertNewPunishmentsSync(List<Punishment> punishments) {
+        if (!connected || punishments.isEmpty()) return;
+        Map<String, List<Document>> docs = new LinkedHashMap<>();
+        for (Punishment p : punishments) {
+            historyBuffer.record(p.getTargetUuid(), p.getTargetName(), p.getTargetIp());
+            docs.computeIfAbsent(p.getType().getTableName(), k -> new ArrayList<>()).add(punishmentToDocument(p).append("_id", new ObjectId()));
+        }
+        List<Runnable> rollback = new ArrayList<>();
+        try {
+            for (Map.Entry<String, List<Document>> entry : docs.entrySet()) {
+                List<Object> ids = entry.getValue().stream().map(doc -> doc.get("_id")).toList();
+                rollback.add(() -> getCollection(entry.getKey()).deleteMany(Filters.in("_id", ids)));
+                getCollection(entry.getKey()).insertMany(entry.getValue());
+            }
+        } catch (MongoException e) {
+            rollback.forEach(Runnable::run);
+            if (isDuplicateKey(e)) throw new DuplicatePunishmentIdException(e);
+            throw e;
+        }
+    }
+
+    private int insertMissingSync(List<Punishment> punishments) {
+        if (!connected || punishments.isEmpty()) return 0;
+        Map<String, Map<String, Punishment>> byCollection = new LinkedHashMap<>();
+        for (Punishment p : punishments) {
+            byCollection.computeIfAbsent(p.getType().getTableName(), k -> new LinkedHashMap<>()).putIfAbsent(p.getPunishmentId(), p);
+        }
 
-    private void insertPunishmentSync(String collection, Punishment p) {
+        int written = 0;
+        for (Map.Entry<String, Map<String, Punishment>> entry : byCollection.entrySet()) {
+            Map<String, Punishment> missing = new LinkedHashMap<>(entry.getValue());
+            List<String> ids = new ArrayList<>(missing.keySet());
+            for (String source : List.of(entry.getKey(), entry.getKey() + ARCHIVE_SUFFIX)) {
+                for (Document doc : getCollection(source).find(Filters.in("punishment_id", ids)).projection(new Document("punishment_id", 1))) {
+                    missing.remove(doc.getString("punishment_id"));
+                }
+            }
+            if (missing.isEmpty()) continue;
+
+            List<Document> docs = new ArrayList<>(missing.size());
+            for (Punishment p : missing.values()) {
+                historyBuffer.record(p.getTargetUuid(), p.getTargetName(), p.getTargetIp());
+                docs.add(punishmentToDocument(p));
+            }
+            try {
+                getCollection(entry.getKey()).insertMany(docs, new InsertManyOptions().ordered(false));
+                written += docs.size();
+            } catch (MongoBulkWriteException e) {
+                boolean onlyDuplicates = e.getWriteErrors().stream().allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+                if (!onlyDuplicates) throw e;
+                written += e.getWriteResult().getInsertedCount();
+            }
+        }
+        return written;
+    }
+
+    private void insertNewPunishmentSync(String collection, Punishment p) {
         if (!connected) return;
-        recordHistorySync(p.getTargetUuid(), p.getTargetName(), p.getTargetIp());
-        Document doc = punishmentToDocument(p);
-        getCollection(collection).replaceOne(Filters.eq("punishment_id", p.getPunishmentId()), doc, new ReplaceOptions().upsert(true));
+        historyBuffer.record(p.getTargetUuid(), p.getTargetName(), p.getTargetIp());
+        try {
+            getCollection(collection).insertOne(punishmentToDocument(p));
+        } catch (MongoException e) {
+            if (isDuplicateKey(e)) throw new DuplicatePunishmentIdException(e);
+            throw e;
+        }
+    }
+
+    private boolean isDuplicateKey(MongoException e) {
+        if (e instanceof MongoWriteException write) {
+            return write.getError().getCategory() == ErrorCategory.DUPLICATE_KEY;
+        }
+        if (e instanceof MongoBulkWriteException bulk) {
+            return bulk.getWriteErrors().stream().anyMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+        }
+        return e.getCode() == 11000;
     }
 
     @Override
-    public CompletableFuture<Optional<Punishment>> getActiveBan(UUID uuid) { return supplyAsync(() -> getActivePunishmentSync(COL_BANS, uuid, PunishmentType.BAN)); }
+    public CompletableFuture<Optional<Punishment>> getActiveBan(UUID uuid) { return supplyAsync(QueryPriority.LOGIN, () -> getActivePunishmentSync(COL_BANS, uuid, PunishmentType.BAN)); }
     @Override
-    public CompletableFuture<Optional<Punishment>> getActiveMute(UUID uuid) { return supplyAsync(() -> getActivePunishmentSync(COL_MUTES, uuid, PunishmentType.MUTE)); }
+    public CompletableFuture<Optional<Punishment>> getActiveMute(UUID uuid) { return supplyAsync(QueryPriority.LOGIN, () -> getActivePunishmentSync(COL_MUTES, uuid, PunishmentType.MUTE)); }
     @Override
-    public CompletableFuture<Optional<Punishment>> getActiveVoiceMute(UUID uuid) { return supplyAsync(() -> getActivePunishmentSync(COL_VOICEMUTES, uuid, PunishmentType.VOICEMUTE)); }
+    public CompletableFuture<Optional<Punishment>> getActiveVoiceMute(UUID uuid) { return supplyAsync(QueryPriority.LOGIN, () -> getActivePunishmentSync(COL_VOICEMUTES, uuid, PunishmentType.VOICEMUTE)); }
 
     private Optional<Punishment> getActivePunishmentSync(String collection, UUID uuid, PunishmentType type) {
         if (!connected) return Optional.empty();
@@ -238,9 +517,9 @@ public class MongoManager implements StorageInterface {
     }
 
     @Override
-    public CompletableFuture<Optional<Punishment>> getActiveIpBan(String ip) { return supplyAsync(() -> getActiveIpPunishmentSync(COL_BANS, ip, PunishmentType.IPBAN)); }
+    public CompletableFuture<Optional<Punishment>> getActiveIpBan(String ip) { return supplyAsync(QueryPriority.LOGIN, () -> getActiveIpPunishmentSync(COL_BANS, ip, PunishmentType.IPBAN)); }
     @Override
-    public CompletableFuture<Optional<Punishment>> getActiveIpMute(String ip) { return supplyAsync(() -> getActiveIpPunishmentSync(COL_MUTES, ip, PunishmentType.MUTE)); }
+    public CompletableFuture<Optional<Punishment>> getActiveIpMute(String ip) { return supplyAsync(QueryPriority.LOGIN, () -> getActiveIpPunishmentSync(COL_MUTES, ip, PunishmentType.MUTE)); }
 
     private Optional<Punishment> getActiveIpPunishmentSync(String collection, String ip, PunishmentType type) {
         if (!connected) return Optional.empty();
@@ -264,9 +543,55 @@ public class MongoManager implements StorageInterface {
     }
 
     @Override
-    public CompletableFuture<Optional<Punishment>> getPunishmentById(String id) {
+    public CompletableFuture<LoginState> getLoginState(UUID uuid, String ip) {
+        return supplyAsync(QueryPriority.LOGIN, () -> {
+            if (!connected) return LoginState.EMPTY;
+
+            String uuidStr = uuid.toString();
+            List<Bson> targets = new ArrayList<>();
+            targets.add(Filters.eq("target_uuid", uuidStr));
+            if (ip != null) {
+                targets.add(Filters.and(Filters.eq("target_ip", ip), Filters.eq("ip_ban", true)));
+            }
+            Bson match = Aggregates.match(Filters.and(
+                    Filters.or(targets),
+                    Filters.eq("active", true),
+                    Filters.or(
+                            Filters.eq("expiry_time", -1L),
+                            Filters.eq("expiry_time", 0L),
+                            Filters.gt("expiry_time", System.currentTimeMillis())
+                    )
+            ));
+            List<Bson> pipeline = List.of(
+                    match,
+                    Aggregates.addFields(new Field<>("source", COL_BANS)),
+                    Aggregates.unionWith(COL_MUTES, List.of(match, Aggregates.addFields(new Field<>("source", COL_MUTES)))),
+                    Aggregates.sort(Sorts.descending("created_time"))
+            );
+
+            Punishment ban = null, ipBan = null, mute = null, ipMute = null;
+            for (Document doc : getCollection(COL_BANS).aggregate(pipeline)) {
+                boolean uuidMatch = uuidStr.equals(doc.getString("target_uuid"));
+                boolean ipMatch = ip != null && Boolean.TRUE.equals(doc.getBoolean("ip_ban")) && ip.equals(doc.getString("target_ip"));
+                if (COL_BANS.equals(doc.getString("source"))) {
+                    if (uuidMatch && ban == null) ban = documentToPunishment(doc, PunishmentType.BAN);
+                    if (ipMatch && ipBan == null) ipBan = documentToPunishment(doc, PunishmentType.IPBAN);
+                } else {
+                    if (uuidMatch && mute == null) mute = documentToPunishment(doc, PunishmentType.MUTE);
+                    if (ipMatch && ipMute == null) ipMute = documentToPunishment(doc, PunishmentType.IPMUTE);
+                }
+            }
+            return new LoginState(Optional.ofNullable(ban), Optional.ofNullable(ipBan), Optional.ofNullable(mute), Optional.ofNullable(ipMute));
+        });
+    }
+
+    @Override
+    public CompletableFuture<Optional<Punishment>> getPunishmentById(String id, boolean includeArchive) {
         return supplyAsync(() -> {
-            for (String col : PUNISHMENT_COLLECTIONS) {
+            List<String> collections = IdUtil.tableForId(id)
+                    .map(collection -> includeArchive ? List.of(collection, collection + ARCHIVE_SUFFIX) : List.of(collection))
+                    .orElseGet(() -> punishmentCollections(includeArchive));
+            for (String col : collections) {
                 Document doc = getCollection(col).find(Filters.eq("punishment_id", id)).first();
                 if (doc != null) {
                     return Optional.of(documentToPunishment(doc, defaultTypeForCollection(col)));
@@ -299,13 +624,13 @@ public class MongoManager implements StorageInterface {
     }
 
     @Override
-    public CompletableFuture<List<Punishment>> getPunishmentHistory(UUID uuid, int limit) {
+    public CompletableFuture<List<Punishment>> getPunishmentHistory(UUID uuid, int limit, boolean includeArchive) {
         return supplyAsync(() -> {
             List<Punishment> history = new ArrayList<>();
             if (!connected) return history;
 
             Bson filter = Filters.eq("target_uuid", uuid.toString());
-            for (String collection : PUNISHMENT_COLLECTIONS) {
+            for (String collection : punishmentCollections(includeArchive)) {
                 appendPunishments(history, collection, filter, limit);
             }
 
@@ -320,35 +645,259 @@ public class MongoManager implements StorageInterface {
     @Override
     public CompletableFuture<List<Punishment>> getRecentPunishments(int limit) {
         return supplyAsync(() -> {
+            if (!connected) return new ArrayList<>();
+
+            List<MongoCursor<Punishment>> cursors = new ArrayList<>(PUNISHMENT_COLLECTIONS.size());
+            try {
+                for (String collection : PUNISHMENT_COLLECTIONS) {
+                    PunishmentType defaultType = defaultTypeForCollection(collection);
+                    var iterable = getCollection(collection).find().sort(Sorts.descending("created_time"));
+                    if (limit > 0) {
+                        iterable = iterable.limit(limit).batchSize(limit);
+                    }
+                    cursors.add(iterable.map(doc -> documentToPunishment(doc, defaultType)).iterator());
+                }
+                return SortedMerge.topN(cursors, Comparator.comparingLong(Punishment::getCreatedTime).reversed(), limit);
+            } finally {
+                cursors.forEach(MongoCursor::close);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<Punishment>> getAllPunishments() {
+        return supplyAsync(QueryPriority.BULK, () -> {
             List<Punishment> punishments = new ArrayList<>();
             if (!connected) return punishments;
 
             for (String collection : PUNISHMENT_COLLECTIONS) {
-                appendPunishments(punishments, collection, new Document(), limit);
+                appendPunishments(punishments, collection, new Document(), 0);
             }
 
             punishments.sort(Comparator.comparingLong(Punishment::getCreatedTime).reversed());
-            if (limit > 0 && punishments.size() > limit) {
-                return new ArrayList<>(punishments.subList(0, limit));
+            return punishments;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> streamPunishments(PunishmentType type, Consumer<Punishment> consumer) {
+        return supplyAsync(QueryPriority.BULK, () -> {
+            long count = 0;
+            if (!connected) return count;
+
+            for (String collection : punishmentCollections(true)) {
+                if (type != null && !type.getTableName().equals(baseCollection(collection))) continue;
+                Bson filter = new Document();
+                if (type != null) {
+                    filter = type == defaultTypeForCollection(collection)
+                            ? Filters.or(Filters.eq("type", type.name()), Filters.exists("type", false))
+                            : Filters.eq("type", type.name());
+                }
+                try (MongoCursor<Document> cursor = getCollection(collection).find(filter).batchSize(STREAM_BATCH_SIZE).cursor()) {
+                    while (cursor.hasNext()) {
+                        consumer.accept(documentToPunishment(cursor.next(), defaultTypeForCollection(collection)));
+                        count++;
+                    }
+                }
+            }
+            return count;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Map<String, ExportWatermark>> streamChangedPunishments(Map<String, ExportWatermark> since, Consumer<Punishment> consumer) {
+        return supplyAsync(QueryPriority.BULK, () -> {
+            Map<String, ExportWatermark> marks = new LinkedHashMap<>();
+            if (!connected) return marks;
+
+            for (String collection : PUNISHMENT_COLLECTIONS) {
+                ExportWatermark mark = since.getOrDefault(collection, ExportWatermark.NONE);
+                ObjectId scanFromId = mark.lastId() != null ? rewindObjectId(new ObjectId(mark.lastId())) : null;
+                long scanFromChange = Math.max(0L, mark.lastChange() - ExportWatermark.REWIND_MILLIS);
+                StreamMark last = new StreamMark(mark.lastId() != null ? new ObjectId(mark.lastId()) : null, mark.lastChange());
+                for (String source : List.of(collection, collection + ARCHIVE_SUFFIX)) {
+                    streamWatermarkDocs(source, collection, scanFromId != null ? Filters.gt("_id", scanFromId) : new Document(), last, consumer);
+                    if (scanFromId != null) {
+                        streamWatermarkDocs(source, collection, Filters.and(Filters.gt("removed_by_date", scanFromChange), Filters.lte("_id", scanFromId)), last, consumer);
+                    }
+                }
+                marks.put(collection, new ExportWatermark(last.id != null ? last.id.toHexString() : null, last.change));
+            }
+            return marks;
+        });
+    }
+
+    private void streamWatermarkDocs(String source, String collection, Bson filter, StreamMark last, Consumer<Punishment> consumer) {
+        try (MongoCursor<Document> cursor = getCollection(source).find(filter)
+                .sort(Sorts.ascending("_id"))
+                .batchSize(STREAM_BATCH_SIZE)
+                .cursor()) {
+            while (cursor.hasNext()) {
+                Document doc = cursor.next();
+                ObjectId id = doc.getObjectId("_id");
+                if (last.id == null || id.compareTo(last.id) > 0) {
+                    last.id = id;
+                }
+                last.change = Math.max(last.change, removedDate(doc));
+                consumer.accept(documentToPunishment(doc, defaultTypeForCollection(collection)));
             }
+        }
+    }
+
+    private ObjectId rewindObjectId(ObjectId id) {
+        long seconds = Math.max(0L, id.getTimestamp() - TimeUnit.MILLISECONDS.toSeconds(ExportWatermark.REWIND_MILLIS));
+        return new ObjectId(String.format("%08x%016x", seconds, 0L));
+    }
+
+    private static final class StreamMark {
+        private ObjectId id;
+        private long change;
+
+        private StreamMark(ObjectId id, long change) {
+            this.id = id;
+            this.change = change;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Map<String, ExportWatermark>> getExportWatermarks() {
+        return supplyAsync(QueryPriority.BULK, () -> {
+            Map<String, ExportWatermark> marks = new LinkedHashMap<>();
+            if (!connected) return marks;
+            for (Document doc : getCollection(COL_SETTINGS).find(Filters.regex("_id", "^" + Pattern.quote(WATERMARK_SETTING_PREFIX)))) {
+                marks.put(doc.getString("_id").substring(WATERMARK_SETTING_PREFIX.length()), ExportWatermark.decode(doc.getString("value")));
+            }
+            return marks;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> saveExportWatermarks(Map<String, ExportWatermark> watermarks) {
+        return runAsync(() -> {
+            if (!connected || watermarks.isEmpty()) return;
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            watermarks.forEach((collection, mark) -> writes.add(new ReplaceOneModel<>(
+                    Filters.eq("_id", WATERMARK_SETTING_PREFIX + collection),
+                    new Document("_id", WATERMARK_SETTING_PREFIX + collection).append("value", mark.encode()),
+                    new ReplaceOptions().upsert(true)
+            )));
+            getCollection(COL_SETTINGS).bulkWrite(writes);
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<Punishment>> getActivePunishments() {
+        return supplyAsync(QueryPriority.HOUSEKEEPING, () -> {
+            List<Punishment> punishments = new ArrayList<>();
+            if (!connected) return punishments;
+
+            Bson filter = Filters.and(
+                    Filters.eq("active", true),
+                    Filters.or(
+                            Filters.eq("expiry_time", -1L),
+                            Filters.eq("expiry_time", 0L),
+                            Filters.gt("expiry_time", System.currentTimeMillis())
+                    )
+            );
+            appendPunishments(punishments, COL_BANS, filter, 0);
+            appendPunishments(punishments, COL_MUTES, filter, 0);
             return punishments;
         });
     }
+
     @Override
-    public CompletableFuture<List<Punishment>> getAllPunishments() {
+    public CompletableFuture<List<Punishment>> getActiveBans(PageCursor cursor, int limit) {
+        return supplyAsync(() -> getActivePageSync(COL_BANS, cursor, limit));
+    }
+
+    @Override
+    public CompletableFuture<List<Punishment>> getActiveMutes(PageCursor cursor, int limit) {
+        return supplyAsync(() -> getActivePageSync(COL_MUTES, cursor, limit));
+    }
+
+    @Override
+    public CompletableFuture<List<Punishment>> getPunishmentsByStaff(String staffName, PageCursor cursor, int limit) {
         return supplyAsync(() -> {
             List<Punishment> punishments = new ArrayList<>();
             if (!connected) return punishments;
 
+            Bson filter = keysetFilter(staffFilter(staffName), cursor);
             for (String collection : PUNISHMENT_COLLECTIONS) {
-                appendPunishments(punishments, collection, new Document(), 0);
+                appendPage(punishments, collection, filter, STAFF_COLLATION, limit);
             }
 
-            punishments.sort(Comparator.comparingLong(Punishment::getCreatedTime).reversed());
+            punishments.sort(Comparator.comparingLong(Punishment::getCreatedTime)
+                    .thenComparing(p -> p.getPunishmentId() != null ? p.getPunishmentId() : "")
+                    .reversed());
+            if (punishments.size() > limit) {
+                return new ArrayList<>(punishments.subList(0, limit));
+            }
             return punishments;
         });
     }
 
+    @Override
+    public CompletableFuture<Integer> countActiveBans() {
+        return supplyAsync(() -> connected ? (int) getCollection(COL_BANS).countDocuments(activeFilter()) : 0);
+    }
+
+    @Override
+    public CompletableFuture<Integer> countActiveMutes() {
+        return supplyAsync(() -> connected ? (int) getCollection(COL_MUTES).countDocuments(activeFilter()) : 0);
+    }
+
+    @Override
+    public CompletableFuture<Integer> countPunishmentsByStaff(String staffName) {
+        return supplyAsync(() -> {
+            if (!connected) return 0;
+            long count = 0;
+            for (String collection : PUNISHMENT_COLLECTIONS) {
+                count += getCollection(collection).countDocuments(staffFilter(staffName), new CountOptions().collation(STAFF_COLLATION));
+            }
+            return (int) count;
+        });
+    }
+
+    private List<Punishment> getActivePageSync(String collection, PageCursor cursor, int limit) {
+        List<Punishment> punishments = new ArrayList<>();
+        if (!connected) return punishments;
+        appendPage(punishments, collection, keysetFilter(activeFilter(), cursor), null, limit);
+        return punishments;
+    }
+
+    private void appendPage(List<Punishment> target, String collection, Bson filter, Collation collation, int limit) {
+        var iterable = getCollection(collection).find(filter)
+                .collation(collation)
+                .sort(Sorts.descending("created_time", "punishment_id"))
+                .limit(limit);
+        for (Document doc : iterable) {
+            target.add(documentToPunishment(doc, defaultTypeForCollection(collection)));
+        }
+    }
+
+    private Bson activeFilter() {
+        return Filters.and(
+                Filters.eq("active", true),
+                Filters.or(
+                        Filters.eq("expiry_time", -1L),
+                        Filters.eq("expiry_time", 0L),
+                        Filters.gt("expiry_time", System.currentTimeMillis())
+                )
+        );
+    }
+
+    private Bson staffFilter(String staffName) {
+        return Filters.eq("staff_name", staffName);
+    }
+
+    private Bson keysetFilter(Bson filter, PageCursor cursor) {
+        if (cursor == null) return filter;
+        return Filters.and(filter, Filters.or(
+                Filters.lt("created_time", cursor.time()),
+                Filters.and(Filters.eq("created_time", cursor.time()), Filters.lt("punishment_id", cursor.punishmentId()))
+        ));
+    }
+
     @Override
     public CompletableFuture<Void> removeBan(UUID u, UUID rb, String rbn) { return runAsync(() -> removeSync(COL_BANS, u, rb, rbn)); }
     @Override
@@ -389,39 +938,48 @@ public class MongoManager implements StorageInterface {
 
     @Override
     public CompletableFuture<Void> recordHistory(UUID uuid, String name, String ip) {
-        return runAsync(() -> recordHistorySync(uuid, name, ip));
+        historyBuffer.record(uuid, name, ip);
+        return CompletableFuture.completedFuture(null);
     }
 
     @Override
     public CompletableFuture<Void> clearAllData() {
-        return runAsync(() -> {
+        historyBuffer.clear();
+        return runAsync(QueryPriority.BULK, () -> {
             if (!connected) return;
             for (String collection : ALL_COLLECTIONS) {
                 getCollection(collection).deleteMany(new Document());
             }
+            for (String collection : PUNISHMENT_COLLECTIONS) {
+                getCollection(collection + ARCHIVE_SUFFIX).deleteMany(new Document());
+            }
+            getCollection(COL_SETTINGS).deleteMany(Filters.regex("_id", "^" + Pattern.quote(WATERMARK_SETTING_PREFIX)));
+            getCollection(COL_SETTINGS).deleteMany(Filters.regex("_id", "^" + Pattern.quote(JANITOR_CURSOR_PREFIX)));
         });
     }
     @Override
     public CompletableFuture<Void> clearPlayerData(UUID u) {
-        return runAsync(() -> {
+        historyBuffer.discard(u);
+        return runAsync(QueryPriority.BULK, () -> {
             if (!connected) return;
-            for (String collection : PUNISHMENT_COLLECTIONS) {
+            for (String collection : punishmentCollections(true)) {
                 getCollection(collection).deleteMany(Filters.eq("target_uuid", u.toString()));
             }
             getCollection(COL_HISTORY).deleteMany(Filters.eq("uuid", u.toString()));
+            getCollection(COL_PLAYERS).deleteMany(Filters.eq("uuid", u.toString()));
             getCollection(COL_APPEALS).deleteMany(Filters.eq("target_uuid", u.toString()));
         });
     }
 
     @Override
     public CompletableFuture<String> getLastIpForUuid(UUID u) { return supplyAsync(() -> {
-        Document d = getCollection(COL_HISTORY).find(Filters.eq("uuid", u.toString())).sort(Sorts.descending("date")).first();
-        return d != null ? d.getString("ip") : null;
+        Document d = getCollection(COL_PLAYERS).find(Filters.eq("uuid", u.toString())).first();
+        return d != null ? d.getString("last_ip") : null;
     });}
 
     @Override
     public CompletableFuture<String> getLastKnownName(UUID u) { return supplyAsync(() -> {
-        Document d = getCollection(COL_HISTORY).find(Filters.eq("uuid", u.toString())).sort(Sorts.descending("date")).first();
+        Document d = getCollection(COL_PLAYERS).find(Filters.eq("uuid", u.toString())).first();
         return d != null ? d.getString("name") : null;
     });}
 
@@ -541,7 +1099,7 @@ public class MongoManager implements StorageInterface {
 
     @Override
     public CompletableFuture<Boolean> updateReportStatus(String id, String status) {
-        return supplyAsync(() -> {
+        return supplyAsync(QueryPriority.WRITE, () -> {
             if (!connected) return false;
             var result = getCollection(COL_REPORTS).updateOne(Filters.eq("id", id), Updates.set("status", status));
             return result.getModifiedCount() > 0;
@@ -562,7 +1120,7 @@ public class MongoManager implements StorageInterface {
 
     @Override
     public CompletableFuture<Boolean> removeNote(UUID targetUuid, int index) {
-        return supplyAsync(() -> {
+        return supplyAsync(QueryPriority.WRITE, () -> {
             if (!connected) return false;
             var iterable = getCollection(COL_NOTES).find(Filters.eq("uuid", targetUuid.toString())).sort(Sorts.ascending("time")).skip(index - 1).limit(1);
             Document doc = iterable.first();
@@ -603,18 +1161,17 @@ public class MongoManager implements StorageInterface {
     }
 
     @Override
-    public CompletableFuture<Void> importPunishment(Punishment p) {
-        return switch (p.getType()) {
-            case BAN, TEMPBAN, IPBAN, TEMPIPBAN -> insertBan(p);
-            case MUTE, TEMPMUTE, IPMUTE, TEMPIPMUTE -> insertMute(p);
-            case WARN -> insertWarning(p);
-            case KICK -> insertKick(p);
-            case VOICEMUTE, TEMPVOICEMUTE -> insertVoiceMute(p);
-        };
+    public CompletableFuture<Boolean> importPunishment(Punishment p) {
+        return importPunishments(List.of(p)).thenApply(written -> written > 0);
+    }
+
+    @Override
+    public CompletableFuture<Integer> importPunishments(List<Punishment> punishments) {
+        return supplyAsync(QueryPriority.BULK, () -> insertMissingSync(punishments));
     }
 
     private Document punishmentToDocument(Punishment p) {
-        return new Document("punishment_id", p.getPunishmentId())
+        Document doc = new Document("punishment_id", p.getPunishmentId())
                 .append("type", p.getType().name())
                 .append("target_uuid", p.getTargetUuid().toString())
                 .append("target_name", p.getTargetName())
@@ -628,6 +1185,12 @@ public class MongoManager implements StorageInterface {
                 .append("silent", p.isSilent())
                 .append("ip_ban", p.isIpBan())
                 .append("active", p.isActive());
+        if (p.getRemovedByDate() > 0) {
+            doc.append("removed_by_uuid", p.getRemovedByUuid() != null ? p.getRemovedByUuid().toString() : null)
+                    .append("removed_by_name", p.getRemovedByName())
+                    .append("removed_by_date", p.getRemovedByDate());
+        }
+        return doc;
     }
 
     private Punishment documentToPunishment(Document doc, PunishmentType type) {
@@ -636,6 +1199,7 @@ public class MongoManager implements StorageInterface {
         String staffUuid = doc.getString("staff_uuid");
         String targetUuidStr = doc.getString("target_uuid");
         UUID targetUuid = targetUuidStr != null ? UUID.fromString(targetUuidStr) : UUID.nameUUIDFromBytes("unknown".getBytes());
+        String removedByUuid = doc.getString("removed_by_uuid");
 
         return Punishment.builder()
                 .punishmentId(doc.getString("punishment_id"))
@@ -652,20 +1216,25 @@ public class MongoManager implements StorageInterface {
                 .silent(Boolean.TRUE.equals(doc.getBoolean("silent")))
                 .ipBan(Boolean.TRUE.equals(doc.getBoolean("ip_ban")))
                 .active(Boolean.TRUE.equals(doc.getBoolean("active")))
+                .removedByUuid(removedByUuid != null ? UUID.fromString(removedByUuid) : null)
+                .removedByName(doc.getString("removed_by_name"))
+                .removedByDate(removedDate(doc))
                 .build();
     }
 
+    private long removedDate(Document doc) {
+        return doc.get("removed_by_date") instanceof Number date ? date.longValue() : 0L;
+    }
+
     @Override
     public void shutdown() {
+        janitor.stop();
+        archiveMover.stop();
+        historyBuffer.shutdown();
         if (mongoClient != null) {
             mongoClient.close();
         }
-        asyncExecutor.shutdownNow();
-        try {
-            asyncExecutor.awaitTermination(5, TimeUnit.SECONDS);
-        } catch (InterruptedException ignored) {
-            Thread.currentThread().interrupt();
-        }
+        scheduler.shutdown(5, TimeUnit.SECONDS);
     }
 
     private void appendPunishments(List<Punishment> target, String collection, Bson filter, int limit) {
@@ -678,8 +1247,19 @@ public class MongoManager implements StorageInterface {
         }
     }
 
+    private List<String> punishmentCollections(boolean includeArchive) {
+        if (!includeArchive) return PUNISHMENT_COLLECTIONS;
+        List<String> collections = new ArrayList<>(PUNISHMENT_COLLECTIONS);
+        PUNISHMENT_COLLECTIONS.forEach(collection -> collections.add(collection + ARCHIVE_SUFFIX));
+        return collections;
+    }
+
+    private String baseCollection(String collection) {
+        return collection.endsWith(ARCHIVE_SUFFIX) ? collection.substring(0, collection.length() - ARCHIVE_SUFFIX.length()) : collection;
+    }
+
     private PunishmentType defaultTypeForCollection(String collection) {
-        return switch (collection) {
+        return switch (baseCollection(collection)) {
             case COL_BANS -> PunishmentType.BAN;
             case COL_MUTES -> PunishmentType.MUTE;
             case COL_WARNINGS -> PunishmentType.WARN;
@@ -700,26 +1280,41 @@ public class MongoManager implements StorageInterface {
         return Updates.combine(updates);
     }
 
-    private void recordHistorySync(UUID uuid, String name, String ip) {
-        if (!connected || uuid == null || name == null || name.equalsIgnoreCase("unknown")) {
-            return;
+    private void flushHistorySync(List<HistoryWriteBuffer.HistoryRecord> records) {
+        if (!connected) {
+            throw new DatabaseUnavailableException("MongoDB is not connected");
         }
 
-        String targetIp = ip != null ? ip : "0.0.0.0";
-        long now = System.currentTimeMillis();
-        Document doc = new Document("uuid", uuid.toString())
-                .append("name", name)
-                .append("ip", targetIp)
-                .append("date", now);
-
-        try {
-            getCollection(COL_HISTORY).replaceOne(
-                    Filters.and(Filters.eq("uuid", uuid.toString()), Filters.eq("ip", targetIp)),
-                    doc,
+        List<WriteModel<Document>> historyWrites = new ArrayList<>(records.size());
+        List<WriteModel<Document>> playerWrites = new ArrayList<>(records.size());
+        for (HistoryWriteBuffer.HistoryRecord record : records) {
+            String uuid = record.uuid().toString();
+            String targetIp = record.ip() != null ? record.ip() : "0.0.0.0";
+            historyWrites.add(new ReplaceOneModel<>(
+                    Filters.and(Filters.eq("uuid", uuid), Filters.eq("ip", targetIp)),
+                    new Document("uuid", uuid)
+                            .append("name", record.name())
+                            .append("ip", targetIp)
+                            .append("date", record.seenAt()),
                     new ReplaceOptions().upsert(true)
-            );
-        } catch (Exception exception) {
-            plugin.getLogger().log(Level.FINE, "Ignoring Mongo history write race for " + uuid, exception);
+            ));
+
+            List<Bson> playerUpdates = new ArrayList<>();
+            playerUpdates.add(Updates.set("name", record.name()));
+            playerUpdates.add(Updates.max("last_seen", record.seenAt()));
+            playerUpdates.add(Updates.setOnInsert("first_seen", record.seenAt()));
+            if (record.ip() != null) {
+                playerUpdates.add(Updates.set("last_ip", record.ip()));
+            }
+            playerWrites.add(new UpdateOneModel<>(
+                    Filters.eq("uuid", uuid),
+                    Updates.combine(playerUpdates),
+                    new UpdateOptions().upsert(true)
+            ));
         }
+
+        BulkWriteOptions unordered = new BulkWriteOptions().ordered(false);
+        getCollection(COL_HISTORY).bulkWrite(historyWrites, unordered);
+        getCollection(COL_PLAYERS).bulkWrite(playerWrites, unordered);
     }
 }
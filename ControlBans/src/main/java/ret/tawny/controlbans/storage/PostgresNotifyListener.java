@@ -0,0 +1,113 @@
+package ret.tawny.controlbans.storage;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class PostgresNotifyListener {
+
+    public static final String CHANNEL = "controlbans";
+    private static final String ALL = "*";
+    private static final int WAIT_MILLIS = 5000;
+    private static final long RECONNECT_DELAY_MILLIS = 5000;
+
+    private final String origin;
+    private final Logger logger;
+    private final ConnectionFactory connections;
+    private final Consumer<UUID> listener;
+    private final Thread thread;
+    private volatile boolean running;
+    private volatile Connection connection;
+
+    public PostgresNotifyListener(String name, String origin, Logger logger, ConnectionFactory connections, Consumer<UUID> listener) {
+        this.origin = origin;
+        this.logger = logger;
+        this.connections = connections;
+        this.listener = listener;
+        this.thread = new Thread(this::listen, name);
+        this.thread.setDaemon(true);
+    }
+
+    public static String payload(String action, UUID uuid, String origin) {
+        return action + ":" + (uuid != null ? uuid.toString() : ALL) + ":" + origin;
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    private void listen() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection conn = connections.open(); Statement stmt = conn.createStatement()) {
+                connection = conn;
+                stmt.execute("LISTEN " + CHANNEL);
+                if (reconnecting) {
+                    reconnecting = false;
+                    logger.info("[Postgres Notify] Reconnected; invalidating all caches to cover missed notifications.");
+                    listener.accept(null);
+                }
+
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(WAIT_MILLIS);
+                    if (notifications == null) continue;
+                    for (PGNotification notification : notifications) {
+                        handle(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) return;
+                if (!reconnecting) {
+                    reconnecting = true;
+                    logger.log(Level.WARNING, "[Postgres Notify] Listener connection lost, reconnecting every " + RECONNECT_DELAY_MILLIS + "ms", e);
+                }
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } finally {
+                connection = null;
+            }
+        }
+    }
+
+    private void handle(String payload) {
+        String[] parts = payload.split(":");
+        if (parts.length < 3 || origin.equals(parts[2])) return;
+        try {
+            listener.accept(ALL.equals(parts[1]) ? null : UUID.fromString(parts[1]));
+        } catch (IllegalArgumentException e) {
+            logger.fine("[Postgres Notify] Ignoring malformed notification: " + payload);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "[Postgres Notify] Failed to apply notification: " + payload, e);
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        Connection conn = connection;
+        if (conn != null) {
+            try {
+                conn.close();
+            } catch (SQLException ignored) {
+            }
+        }
+        thread.interrupt();
+    }
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+}
@@ -0,0 +1,122 @@
+package ret.tawny.controlbans.storage;
+
+import ret.tawny.controlbans.model.Punishment;
+import ret.tawny.controlbans.model.PunishmentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Optional;
+import java.util.UUID;
+
+public final class PunishmentCodec {
+
+    private static final byte VERSION = 1;
+    private static final byte ABSENT = 0;
+    private static final byte PRESENT = 1;
+
+    private static final int FLAG_SILENT = 1;
+    private static final int FLAG_IP_BAN = 1 << 1;
+    private static final int FLAG_ACTIVE = 1 << 2;
+    private static final int FLAG_STAFF_UUID = 1 << 3;
+
+    private PunishmentCodec() {
+    }
+
+    public static byte[] encode(Optional<Punishment> punishment) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(punishment.isPresent() ? 160 : 2);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            if (punishment.isEmpty()) {
+                out.writeByte(ABSENT);
+                return bytes.toByteArray();
+            }
+            Punishment p = punishment.get();
+            out.writeByte(PRESENT);
+
+            int flags = 0;
+            if (p.isSilent()) flags |= FLAG_SILENT;
+            if (p.isIpBan()) flags |= FLAG_IP_BAN;
+            if (p.isActive()) flags |= FLAG_ACTIVE;
+            if (p.getStaffUuid() != null) flags |= FLAG_STAFF_UUID;
+            out.writeByte(flags);
+
+            out.writeInt(p.getId());
+            writeString(out, p.getPunishmentId());
+            writeString(out, p.getType().name());
+            writeUuid(out, p.getTargetUuid());
+            if (p.getStaffUuid() != null) {
+                writeUuid(out, p.getStaffUuid());
+            }
+            out.writeLong(p.getCreatedTime());
+            out.writeLong(p.getExpiryTime());
+            writeString(out, p.getTargetName());
+            writeString(out, p.getTargetIp());
+            writeString(out, p.getReason());
+            writeString(out, p.getStaffName());
+            writeString(out, p.getServerOrigin());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Optional<Punishment> decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported punishment encoding version " + version);
+            }
+            if (in.readByte() == ABSENT) {
+                return Optional.empty();
+            }
+
+            int flags = in.readUnsignedByte();
+            Punishment.Builder builder = Punishment.builder()
+                    .id(in.readInt())
+                    .punishmentId(readString(in))
+                    .type(PunishmentType.valueOf(readString(in)))
+                    .targetUuid(readUuid(in));
+            if ((flags & FLAG_STAFF_UUID) != 0) {
+                builder.staffUuid(readUuid(in));
+            }
+            return Optional.of(builder
+                    .createdTime(in.readLong())
+                    .expiryTime(in.readLong())
+                    .targetName(readString(in))
+                    .targetIp(readString(in))
+                    .reason(readString(in))
+                    .staffName(readString(in))
+                    .serverOrigin(readString(in))
+                    .silent((flags & FLAG_SILENT) != 0)
+                    .ipBan((flags & FLAG_IP_BAN) != 0)
+                    .active((flags & FLAG_ACTIVE) != 0)
+                    .build());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,31 @@
+package ret.tawny.controlbans.storage;
+
+public enum QueryPriority {
+    LOGIN("login", 4, 200),
+    WRITE("write", 2, 500),
+    INTERACTIVE("interactive", 2, 100),
+    BULK("bulk", 2, 64),
+    HOUSEKEEPING("housekeeping", 2, 32);
+
+    private final String configKey;
+    private final int defaultThreads;
+    private final int defaultQueueSize;
+
+    QueryPriority(String configKey, int defaultThreads, int defaultQueueSize) {
+        this.configKey = configKey;
+        this.defaultThreads = defaultThreads;
+        this.defaultQueueSize = defaultQueueSize;
+    }
+
+    public String getConfigKey() {
+        return configKey;
+    }
+
+    public int getDefaultThreads() {
+        return defaultThreads;
+    }
+
+    public int getDefaultQueueSize() {
+        return defaultQueueSize;
+    }
+}
@@ -4,12 +4,21 @@ import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Transaction;
 import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.resps.ScanResult;
 import ret.tawny.controlbans.ControlBansPlugin;
 import ret.tawny.controlbans.config.ConfigManager;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 public class RedisManager {
@@ -18,11 +27,19 @@ public class RedisManager {
     private final ConfigManager config;
     private JedisPool jedisPool;
     private ExecutorService pubSubExecutor;
+    private ExecutorService cacheExecutor;
     private JedisPubSub pubSubListener;
     private volatile boolean running = false;
 
     private static final String CHANNEL_PUNISHMENTS = "controlbans:punishments";
     private static final String CACHE_PREFIX = "controlbans:";
+    private static final String VERSION_PREFIX = CACHE_PREFIX + "version:";
+    private static final byte[] GENERATION_KEY = (CACHE_PREFIX + "generation").getBytes(StandardCharsets.UTF_8);
+    private static final long VERSION_TTL_SECONDS = 86_400L;
+    private static final List<String> PLAYER_STATE_KINDS = List.of("ban", "mute", "voicemute");
+    private static final AtomicInteger CACHE_THREAD_ID = new AtomicInteger();
+
+    private final String instanceId = UUID.randomUUID().toString();
 
     public RedisManager(ControlBansPlugin plugin, ConfigManager config) {
         this.plugin = plugin;
@@ -53,6 +70,12 @@ public class RedisManager {
                 jedis.ping();
             }
 
+            cacheExecutor = Executors.newFixedThreadPool(4, r -> {
+                Thread t = new Thread(r, "ControlBans-Redis-Cache-" + CACHE_THREAD_ID.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+
             running = true;
             plugin.getLogger().info("Redis connection established to " + config.getRedisHost() + ":" + config.getRedisPort());
 
@@ -118,66 +141,150 @@ public class RedisManager {
         try {
             String[] parts = message.split(":");
             if (parts.length >= 3) {
-                String action = parts[0];
                 String uuid = parts[1];
-
-                if ("BAN".equals(action) || "UNBAN".equals(action) || "MUTE".equals(action) || "UNMUTE".equals(action)) {
-                    plugin.getCacheService().invalidatePlayerPunishments(java.util.UUID.fromString(uuid));
-                    plugin.getLogger().fine("Cache invalidated for " + uuid + " via Redis pub/sub");
+                if (parts.length >= 4 && instanceId.equals(parts[3])) {
+                    return;
                 }
+
+                plugin.getPunishmentService().handleRemoteInvalidation(UUID.fromString(uuid));
+                plugin.getLogger().fine("Cache invalidated for " + uuid + " via Redis pub/sub");
             }
         } catch (Exception e) {
             plugin.getLogger().log(Level.WARNING, "Failed to handle Redis punishment message: " + message, e);
         }
     }
 
-    public void publishPunishmentAction(String action, java.util.UUID uuid, String type) {
+    public void publishPunishmentAction(String action, UUID uuid, String type) {
         if (!running || jedisPool == null) return;
 
-        plugin.getSchedulerAdapter().runTaskAsynchronously(() -> {
+        cacheExecutor.execute(() -> publish(action, uuid, type));
+    }
+
+    private void publish(String action, UUID uuid, String type) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            String message = action + ":" + uuid.toString() + ":" + type + ":" + instanceId;
+            jedis.publish(CHANNEL_PUNISHMENTS, message);
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Failed to publish punishment action to Redis", e);
+        }
+    }
+
+    public CompletableFuture<PlayerState> getPlayerState(String kind, UUID uuid) {
+        if (!running || jedisPool == null) return CompletableFuture.completedFuture(PlayerState.UNAVAILABLE);
+
+        return CompletableFuture.supplyAsync(() -> {
             try (Jedis jedis = jedisPool.getResource()) {
-                String message = action + ":" + uuid.toString() + ":" + type;
-                jedis.publish(CHANNEL_PUNISHMENTS, message);
+                List<byte[]> values = jedis.mget(playerStateKey(kind, uuid), versionKey(uuid), GENERATION_KEY);
+                return new PlayerState(values.get(0), version(values.get(1), values.get(2)));
             } catch (Exception e) {
-                plugin.getLogger().log(Level.WARNING, "Failed to publish punishment action to Redis", e);
+                plugin.getLogger().log(Level.WARNING, "Failed to get Redis cache", e);
+                return PlayerState.UNAVAILABLE;
+            }
+        }, cacheExecutor).exceptionally(throwable -> PlayerState.UNAVAILABLE);
+    }
+
+    public void cachePlayerState(String kind, UUID uuid, byte[] value, int ttlSeconds, String seenVersion) {
+        if (!running || jedisPool == null || seenVersion == null) return;
+
+        cacheExecutor.execute(() -> {
+            try (Jedis jedis = jedisPool.getResource()) {
+                byte[] versionKey = versionKey(uuid);
+                jedis.watch(versionKey, GENERATION_KEY);
+                List<byte[]> current = jedis.mget(versionKey, GENERATION_KEY);
+                if (!seenVersion.equals(version(current.get(0), current.get(1)))) {
+                    jedis.unwatch();
+                    return;
+                }
+                SetParams params = SetParams.setParams().nx();
+                if (ttlSeconds > 0) params.ex(ttlSeconds);
+                Transaction transaction = jedis.multi();
+                transaction.set(playerStateKey(kind, uuid), value, params);
+                transaction.exec();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to set Redis cache", e);
             }
         });
     }
 
-    public void cacheBan(java.util.UUID uuid, String jsonData) { cacheSet("ban:" + uuid.toString(), jsonData); }
-    public String getCachedBan(java.util.UUID uuid) { return cacheGet("ban:" + uuid.toString()); }
-    public void cacheMute(java.util.UUID uuid, String jsonData) { cacheSet("mute:" + uuid.toString(), jsonData); }
-    public String getCachedMute(java.util.UUID uuid) { return cacheGet("mute:" + uuid.toString()); }
+    public void updatePlayerState(String kind, UUID uuid, byte[] value, int ttlSeconds, String action, String type) {
+        if (!running || jedisPool == null) return;
 
-    public void invalidatePlayer(java.util.UUID uuid) {
+        cacheExecutor.execute(() -> {
+            try (Jedis jedis = jedisPool.getResource()) {
+                bumpVersion(jedis, uuid);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to bump Redis cache version for " + uuid, e);
+            }
+            setPlayerState(kind, uuid, value, ttlSeconds);
+            publish(action, uuid, type);
+        });
+    }
+
+    public void invalidatePlayer(UUID uuid, String action) {
         if (!running || jedisPool == null) return;
-        try (Jedis jedis = jedisPool.getResource()) {
-            jedis.del(CACHE_PREFIX + "ban:" + uuid.toString());
-            jedis.del(CACHE_PREFIX + "mute:" + uuid.toString());
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Failed to invalidate Redis cache for " + uuid, e);
-        }
+
+        cacheExecutor.execute(() -> {
+            try (Jedis jedis = jedisPool.getResource()) {
+                bumpVersion(jedis, uuid);
+                byte[][] keys = PLAYER_STATE_KINDS.stream().map(kind -> playerStateKey(kind, uuid)).toArray(byte[][]::new);
+                jedis.del(keys);
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to invalidate Redis cache for " + uuid, e);
+            }
+            publish(action, uuid, "ALL");
+        });
     }
 
-    private void cacheSet(String key, String value) {
+    public void invalidateAll() {
         if (!running || jedisPool == null) return;
+
+        cacheExecutor.execute(() -> {
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.incr(GENERATION_KEY);
+                for (String kind : PLAYER_STATE_KINDS) {
+                    ScanParams params = new ScanParams().match(CACHE_PREFIX + kind + ":*").count(500);
+                    String cursor = ScanParams.SCAN_POINTER_START;
+                    do {
+                        ScanResult<String> page = jedis.scan(cursor, params);
+                        if (!page.getResult().isEmpty()) {
+                            jedis.del(page.getResult().toArray(new String[0]));
+                        }
+                        cursor = page.getCursor();
+                    } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+                }
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Failed to clear Redis cache", e);
+            }
+        });
+    }
+
+    private void setPlayerState(String kind, UUID uuid, byte[] value, int ttlSeconds) {
         try (Jedis jedis = jedisPool.getResource()) {
-            int ttl = config.getRedisCacheTTL();
-            if (ttl > 0) jedis.setex(CACHE_PREFIX + key, ttl, value);
-            else jedis.set(CACHE_PREFIX + key, value);
+            byte[] key = playerStateKey(kind, uuid);
+            if (ttlSeconds > 0) jedis.setex(key, ttlSeconds, value);
+            else jedis.set(key, value);
         } catch (Exception e) {
             plugin.getLogger().log(Level.WARNING, "Failed to set Redis cache", e);
         }
     }
 
-    private String cacheGet(String key) {
-        if (!running || jedisPool == null) return null;
-        try (Jedis jedis = jedisPool.getResource()) {
-            return jedis.get(CACHE_PREFIX + key);
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Failed to get Redis cache", e);
-            return null;
-        }
+    private static void bumpVersion(Jedis jedis, UUID uuid) {
+        byte[] key = versionKey(uuid);
+        jedis.incr(key);
+        jedis.expire(key, VERSION_TTL_SECONDS);
+    }
+
+    private static String version(byte[] playerVersion, byte[] generation) {
+        return (playerVersion != null ? new String(playerVersion, StandardCharsets.UTF_8) : "0") + ":"
+                + (generation != null ? new String(generation, StandardCharsets.UTF_8) : "0");
+    }
+
+    private static byte[] playerStateKey(String kind, UUID uuid) {
+        return (CACHE_PREFIX + kind + ":" + uuid).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] versionKey(UUID uuid) {
+        return (VERSION_PREFIX + uuid).getBytes(StandardCharsets.UTF_8);
     }
 
     public boolean isRunning() { return running; }
@@ -188,9 +295,14 @@ public class RedisManager {
             try { pubSubListener.unsubscribe(); } catch (Exception ignored) {}
         }
         if (pubSubExecutor != null) pubSubExecutor.shutdownNow();
+        if (cacheExecutor != null) cacheExecutor.shutdownNow();
         if (jedisPool != null && !jedisPool.isClosed()) {
             jedisPool.close();
             plugin.getLogger().info("Redis connection pool closed.");
         }
     }
+
+    public record PlayerState(byte[] value, String version) {
+        public static final PlayerState UNAVAILABLE = new PlayerState(null, null);
+    }
 }
\ No newline at end of file
@@ -1,34 +1,284 @@
 package ret.tawny.controlbans.storage;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
 
 public class SchemaMigrator {
 
+    private static final Logger LOGGER = Logger.getLogger("ControlBans-Schema");
+    private static final String UUID_STORAGE_SETTING = "uuid-storage";
+    public static final String UUID_STORAGE_CONVERTING = "converting";
+    private static final List<UuidColumn> UUID_COLUMNS = List.of(
+            new UuidColumn("controlbans_bans", "uuid", false),
+            new UuidColumn("controlbans_bans", "banned_by_uuid", true),
+            new UuidColumn("controlbans_bans", "removed_by_uuid", true),
+            new UuidColumn("controlbans_mutes", "uuid", false),
+            new UuidColumn("controlbans_mutes", "banned_by_uuid", true),
+            new UuidColumn("controlbans_mutes", "removed_by_uuid", true),
+            new UuidColumn("controlbans_warnings", "uuid", false),
+            new UuidColumn("controlbans_warnings", "banned_by_uuid", true),
+            new UuidColumn("controlbans_warnings", "removed_by_uuid", true),
+            new UuidColumn("controlbans_kicks", "uuid", false),
+            new UuidColumn("controlbans_kicks", "banned_by_uuid", true),
+            new UuidColumn("controlbans_voicemutes", "uuid", false),
+            new UuidColumn("controlbans_voicemutes", "banned_by_uuid", true),
+            new UuidColumn("controlbans_voicemutes", "removed_by_uuid", true),
+            new UuidColumn("controlbans_bans_archive", "uuid", false),
+            new UuidColumn("controlbans_bans_archive", "banned_by_uuid", true),
+            new UuidColumn("controlbans_bans_archive", "removed_by_uuid", true),
+            new UuidColumn("controlbans_mutes_archive", "uuid", false),
+            new UuidColumn("controlbans_mutes_archive", "banned_by_uuid", true),
+            new UuidColumn("controlbans_mutes_archive", "removed_by_uuid", true),
+            new UuidColumn("controlbans_warnings_archive", "uuid", false),
+            new UuidColumn("controlbans_warnings_archive", "banned_by_uuid", true),
+            new UuidColumn("controlbans_warnings_archive", "removed_by_uuid", true),
+            new UuidColumn("controlbans_kicks_archive", "uuid", false),
+            new UuidColumn("controlbans_kicks_archive", "banned_by_uuid", true),
+            new UuidColumn("controlbans_voicemutes_archive", "uuid", false),
+            new UuidColumn("controlbans_voicemutes_archive", "banned_by_uuid", true),
+            new UuidColumn("controlbans_voicemutes_archive", "removed_by_uuid", true),
+            new UuidColumn("controlbans_history", "uuid", false),
+            new UuidColumn("controlbans_players", "uuid", false),
+            new UuidColumn("controlbans_appeals", "target_uuid", false),
+            new UuidColumn("controlbans_reports", "reporter_uuid", false),
+            new UuidColumn("controlbans_notes", "uuid", false),
+            new UuidColumn("controlbans_changes", "uuid", true)
+    );
+
     private final Connection connection;
     private final String databaseType;
-
-    public SchemaMigrator(Connection connection, String databaseType) {
+    private final boolean preferBinaryUuids;
+    private final List<Migration> migrations = List.of(
+            new Migration(1, "LiteBans-compatible base schema", this::createLiteBansCompatibleSchema),
+            new Migration(2, "Composite indexes for active punishment lookups", this::createActiveLookupIndexes),
+            new Migration(3, "Settings table with UUID storage mode", this::createSettingsTable),
+            new Migration(4, "Removal date indexes for incremental exports", this::createRemovalDateIndexes),
+            new Migration(5, "Archive tables for inactive punishments", this::createArchiveTables),
+            new Migration(6, "Time indexes for per-table recent punishment scans", this::createRecentTimeIndexes),
+            new Migration(7, "Change feed table for cross-server cache sync", this::createChangesTable),
+            new Migration(8, "Wider punishment IDs and unique archive punishment IDs", this::widenPunishmentIds),
+            new Migration(9, "Case-insensitive staff name indexes", this::createStaffNameIndexes)
+    );
+    private UuidCodec uuidCodec = UuidCodec.TEXT;
+
+    public SchemaMigrator(Connection connection, String databaseType, boolean preferBinaryUuids) {
         this.connection = connection;
         this.databaseType = databaseType;
+        this.preferBinaryUuids = preferBinaryUuids;
+    }
+
+    public UuidCodec getUuidCodec() {
+        return uuidCodec;
+    }
+
+    public void migrate() throws SQLException {
+        createSchemaVersionTable();
+        int current = getSchemaVersion();
+        uuidCodec = resolveUuidCodec(current);
+        for (Migration migration : migrations) {
+            if (migration.version() <= current) continue;
+            LOGGER.info("Applying schema migration " + migration.version() + ": " + migration.description());
+            migration.action().run();
+            recordSchemaVersion(migration);
+        }
+    }
+
+    public boolean beginUuidConversion() throws SQLException {
+        uuidCodec = resolveUuidCodec(getSchemaVersion());
+        if (uuidCodec.isBinary()) {
+            return false;
+        }
+        if ("h2".equals(databaseType)) {
+            throw new IllegalStateException("H2 databases cannot be converted in place. Export, set uuid-storage to binary on a fresh database and import.");
+        }
+        writeSetting(UUID_STORAGE_SETTING, UUID_STORAGE_CONVERTING);
+        return true;
+    }
+
+    public int convertUuidsToBinary() throws SQLException {
+        if (!beginUuidConversion()) {
+            return 0;
+        }
+        for (UuidColumn column : UUID_COLUMNS) {
+            convertColumn(column);
+        }
+        UuidCodec binary = UuidCodec.binary(databaseType);
+        writeSetting(UUID_STORAGE_SETTING, binary.getModeName());
+        uuidCodec = binary;
+        return UUID_COLUMNS.size();
+    }
+
+    public String readUuidStorageSetting() throws SQLException {
+        return readSetting(UUID_STORAGE_SETTING);
+    }
+
+    private void convertColumn(UuidColumn column) throws SQLException {
+        String notNull = column.nullable() ? "" : " NOT NULL";
+        try (Statement stmt = connection.createStatement()) {
+            switch (databaseType) {
+                case "postgresql" -> {
+                    if ("uuid".equalsIgnoreCase(columnType(column))) return;
+                    stmt.execute("ALTER TABLE " + column.table() + " ALTER COLUMN " + column.name()
+                            + " TYPE UUID USING " + column.name() + "::uuid");
+                }
+                case "mysql", "mariadb" -> {
+                    if ("BINARY".equalsIgnoreCase(columnType(column))) return;
+                    stmt.execute("ALTER TABLE " + column.table() + " MODIFY " + column.name() + " VARBINARY(36)" + notNull);
+                    stmt.executeUpdate("UPDATE " + column.table() + " SET " + column.name() + " = UNHEX(REPLACE(" + column.name()
+                            + ", '-', '')) WHERE LENGTH(" + column.name() + ") = 36");
+                    stmt.execute("ALTER TABLE " + column.table() + " MODIFY " + column.name() + " BINARY(16)" + notNull);
+                }
+                default -> rewriteSqliteColumn(column);
+            }
+        }
+    }
+
+    private String columnType(UuidColumn column) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), null, column.table(), column.name())) {
+            return rs.next() ? rs.getString("TYPE_NAME") : null;
+        }
+    }
+
+    private void rewriteSqliteColumn(UuidColumn column) throws SQLException {
+        String select = "SELECT DISTINCT " + column.name() + " FROM " + column.table() + " WHERE typeof(" + column.name() + ") = 'text'";
+        String update = "UPDATE " + column.table() + " SET " + column.name() + " = ? WHERE " + column.name() + " = ?";
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(select);
+             PreparedStatement ps = connection.prepareStatement(update)) {
+            while (rs.next()) {
+                String value = rs.getString(1);
+                UUID uuid;
+                try {
+                    uuid = UUID.fromString(value);
+                } catch (IllegalArgumentException e) {
+                    if (column.nullable()) {
+                        LOGGER.warning("Clearing non-UUID value '" + value + "' in " + column.table() + "." + column.name() + ".");
+                        ps.setBytes(1, null);
+                        ps.setString(2, value);
+                        ps.addBatch();
+                    } else {
+                        LOGGER.warning("Leaving non-UUID value '" + value + "' in " + column.table() + "." + column.name() + " unconverted.");
+                    }
+                    continue;
+                }
+                ps.setBytes(1, UuidCodec.toBytes(uuid));
+                ps.setString(2, value);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private UuidCodec resolveUuidCodec(int schemaVersion) throws SQLException {
+        if (schemaVersion >= 3) {
+            return "binary".equals(readSetting(UUID_STORAGE_SETTING)) ? UuidCodec.binary(databaseType) : UuidCodec.TEXT;
+        }
+        if (schemaVersion == 0 && preferBinaryUuids && !tableExists("controlbans_bans")) {
+            return UuidCodec.binary(databaseType);
+        }
+        return UuidCodec.TEXT;
+    }
+
+    private boolean tableExists(String table) {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeQuery("SELECT 1 FROM " + table + " WHERE 1 = 0").close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void createSettingsTable() throws SQLException {
+        String sql = """
+                    CREATE TABLE IF NOT EXISTS controlbans_settings (
+                        setting_key VARCHAR(64) NOT NULL PRIMARY KEY,
+                        setting_value VARCHAR(255)
+                    )
+                """;
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+        writeSetting(UUID_STORAGE_SETTING, uuidCodec.getModeName());
+    }
+
+    private String readSetting(String key) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT setting_value FROM controlbans_settings WHERE setting_key = ?")) {
+            stmt.setString(1, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
     }
 
-    public void createLiteBansCompatibleSchema() throws SQLException {
-        createBansTable();
-        createMutesTable();
-        createKicksTable();
-        createWarningsTable();
+    private void writeSetting(String key, String value) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement("UPDATE controlbans_settings SET setting_value = ? WHERE setting_key = ?")) {
+            update.setString(1, value);
+            update.setString(2, key);
+            if (update.executeUpdate() > 0) return;
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO controlbans_settings (setting_key, setting_value) VALUES (?, ?)")) {
+            insert.setString(1, key);
+            insert.setString(2, value);
+            insert.executeUpdate();
+        }
+    }
+
+    private void createSchemaVersionTable() throws SQLException {
+        String sql = """
+                    CREATE TABLE IF NOT EXISTS controlbans_schema_version (
+                        version INTEGER NOT NULL PRIMARY KEY,
+                        description VARCHAR(128),
+                        applied_at BIGINT NOT NULL
+                    )
+                """;
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private int getSchemaVersion() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM controlbans_schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void recordSchemaVersion(Migration migration) throws SQLException {
+        String sql = "INSERT INTO controlbans_schema_version (version, description, applied_at) VALUES (?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setInt(1, migration.version());
+            stmt.setString(2, migration.description());
+            stmt.setLong(3, System.currentTimeMillis());
+            stmt.executeUpdate();
+        }
+    }
+
+    private void createLiteBansCompatibleSchema() throws SQLException {
+        createBansTable("controlbans_bans", getPrimaryKeyDefinition());
+        createMutesTable("controlbans_mutes", getPrimaryKeyDefinition());
+        createKicksTable("controlbans_kicks", getPrimaryKeyDefinition());
+        createWarningsTable("controlbans_warnings", getPrimaryKeyDefinition());
         createHistoryTable();
+        createPlayersTable();
         createConfigTable();
         createAppealsTable();
-        createVoiceMutesTable();
+        createVoiceMutesTable("controlbans_voicemutes", getPrimaryKeyDefinition());
         createReportsTable();
         createNotesTable();
 
         dropUnusedColumns();
 
         createIndexes();
+
+        backfillPlayers();
     }
 
     private void dropUnusedColumns() {
@@ -55,17 +305,17 @@ public class SchemaMigrator {
         } catch (SQLException ignored) {}
     }
 
-    private void createBansTable() throws SQLException {
+    private void createBansTable(String table, String primaryKey) throws SQLException {
         String sql = """
-                    CREATE TABLE IF NOT EXISTS controlbans_bans (
-                        id INTEGER %s,
+                    CREATE TABLE IF NOT EXISTS %3$s (
+                        id INTEGER %1$s,
                         punishment_id VARCHAR(8),
-                        uuid VARCHAR(36) NOT NULL,
+                        uuid %2$s NOT NULL,
                         ip VARCHAR(45),
                         reason VARCHAR(2048),
-                        banned_by_uuid VARCHAR(36),
+                        banned_by_uuid %2$s,
                         banned_by_name VARCHAR(16),
-                        removed_by_uuid VARCHAR(36),
+                        removed_by_uuid %2$s,
                         removed_by_name VARCHAR(16),
                         removed_by_date BIGINT,
                         time BIGINT NOT NULL,
@@ -77,23 +327,23 @@ public class SchemaMigrator {
                         ipban BOOLEAN NOT NULL DEFAULT FALSE,
                         active BOOLEAN NOT NULL DEFAULT TRUE
                     )
-                """.formatted(getPrimaryKeyDefinition());
+                """.formatted(primaryKey, uuidType(), table);
 
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(sql);
         }
     }
 
-    private void createVoiceMutesTable() throws SQLException {
+    private void createVoiceMutesTable(String table, String primaryKey) throws SQLException {
         String sql = """
-                    CREATE TABLE IF NOT EXISTS controlbans_voicemutes (
-                        id INTEGER %s,
+                    CREATE TABLE IF NOT EXISTS %3$s (
+                        id INTEGER %1$s,
                         punishment_id VARCHAR(8),
-                        uuid VARCHAR(36) NOT NULL,
+                        uuid %2$s NOT NULL,
                         reason VARCHAR(2048),
-                        banned_by_uuid VARCHAR(36),
+                        banned_by_uuid %2$s,
                         banned_by_name VARCHAR(16),
-                        removed_by_uuid VARCHAR(36),
+                        removed_by_uuid %2$s,
                         removed_by_name VARCHAR(16),
                         removed_by_date BIGINT,
                         time BIGINT NOT NULL,
@@ -102,24 +352,24 @@ public class SchemaMigrator {
                         silent BOOLEAN NOT NULL DEFAULT FALSE,
                         active BOOLEAN NOT NULL DEFAULT TRUE
                     )
-                """.formatted(getPrimaryKeyDefinition());
+                """.formatted(primaryKey, uuidType(), table);
 
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(sql);
         }
     }
 
-    private void createMutesTable() throws SQLException {
+    private void createMutesTable(String table, String primaryKey) throws SQLException {
         String sql = """
-                    CREATE TABLE IF NOT EXISTS controlbans_mutes (
-                        id INTEGER %s,
+                    CREATE TABLE IF NOT EXISTS %3$s (
+                        id INTEGER %1$s,
                         punishment_id VARCHAR(8),
-                        uuid VARCHAR(36) NOT NULL,
+                        uuid %2$s NOT NULL,
                         ip VARCHAR(45),
                         reason VARCHAR(2048),
-                        banned_by_uuid VARCHAR(36),
+                        banned_by_uuid %2$s,
                         banned_by_name VARCHAR(16),
-                        removed_by_uuid VARCHAR(36),
+                        removed_by_uuid %2$s,
                         removed_by_name VARCHAR(16),
                         removed_by_date BIGINT,
                         time BIGINT NOT NULL,
@@ -131,24 +381,24 @@ public class SchemaMigrator {
                         ipban BOOLEAN NOT NULL DEFAULT FALSE,
                         active BOOLEAN NOT NULL DEFAULT TRUE
                     )
-                """.formatted(getPrimaryKeyDefinition());
+                """.formatted(primaryKey, uuidType(), table);
 
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(sql);
         }
     }
 
-    private void createWarningsTable() throws SQLException {
+    private void createWarningsTable(String table, String primaryKey) throws SQLException {
         String sql = """
-                    CREATE TABLE IF NOT EXISTS controlbans_warnings (
-                        id INTEGER %s,
+                    CREATE TABLE IF NOT EXISTS %3$s (
+                        id INTEGER %1$s,
                         punishment_id VARCHAR(8),
-                        uuid VARCHAR(36) NOT NULL,
+                        uuid %2$s NOT NULL,
                         ip VARCHAR(45),
                         reason VARCHAR(2048),
-                        banned_by_uuid VARCHAR(36),
+                        banned_by_uuid %2$s,
                         banned_by_name VARCHAR(16),
-                        removed_by_uuid VARCHAR(36),
+                        removed_by_uuid %2$s,
                         removed_by_name VARCHAR(16),
                         removed_by_date BIGINT,
                         time BIGINT NOT NULL,
@@ -161,28 +411,28 @@ public class SchemaMigrator {
                         active BOOLEAN NOT NULL DEFAULT TRUE,
                         warned BOOLEAN NOT NULL DEFAULT FALSE
                     )
-                """.formatted(getPrimaryKeyDefinition());
+                """.formatted(primaryKey, uuidType(), table);
 
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(sql);
         }
     }
 
-    private void createKicksTable() throws SQLException {
+    private void createKicksTable(String table, String primaryKey) throws SQLException {
         String sql = """
-                    CREATE TABLE IF NOT EXISTS controlbans_kicks (
-                        id INTEGER %s,
+                    CREATE TABLE IF NOT EXISTS %3$s (
+                        id INTEGER %1$s,
                         punishment_id VARCHAR(8),
-                        uuid VARCHAR(36) NOT NULL,
+                        uuid %2$s NOT NULL,
                         ip VARCHAR(45),
                         reason VARCHAR(2048),
-                        banned_by_uuid VARCHAR(36),
+                        banned_by_uuid %2$s,
                         banned_by_name VARCHAR(16),
                         time BIGINT NOT NULL,
                         server_origin VARCHAR(32),
                         silent BOOLEAN NOT NULL DEFAULT FALSE
                     )
-                """.formatted(getPrimaryKeyDefinition());
+                """.formatted(primaryKey, uuidType(), table);
 
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(sql);
@@ -192,19 +442,58 @@ public class SchemaMigrator {
     private void createHistoryTable() throws SQLException {
         String sql = """
                     CREATE TABLE IF NOT EXISTS controlbans_history (
-                        id INTEGER %s,
+                        id INTEGER %1$s,
                         date BIGINT NOT NULL,
                         name VARCHAR(16),
-                        uuid VARCHAR(36) NOT NULL,
+                        uuid %2$s NOT NULL,
                         ip VARCHAR(45)
                     )
-                """.formatted(getPrimaryKeyDefinition());
+                """.formatted(getPrimaryKeyDefinition(), uuidType());
 
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(sql);
         }
     }
 
+    private void createPlayersTable() throws SQLException {
+        String sql = """
+                    CREATE TABLE IF NOT EXISTS controlbans_players (
+                        uuid %s NOT NULL PRIMARY KEY,
+                        name VARCHAR(16),
+                        last_ip VARCHAR(45),
+                        first_seen BIGINT NOT NULL,
+                        last_seen BIGINT NOT NULL
+                    )
+                """.formatted(uuidType());
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private void backfillPlayers() throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM controlbans_players")) {
+            if (rs.next() && rs.getLong(1) > 0) {
+                return;
+            }
+        }
+
+        String sql = """
+                    INSERT INTO controlbans_players (uuid, name, last_ip, first_seen, last_seen)
+                    SELECT h.uuid, h.name, NULLIF(h.ip, '0.0.0.0'), seen.first_seen, h.date
+                    FROM controlbans_history h
+                    JOIN (SELECT uuid, MIN(date) AS first_seen FROM controlbans_history GROUP BY uuid) seen ON h.uuid = seen.uuid
+                    WHERE h.id = (SELECT latest.id FROM controlbans_history latest
+                                  WHERE latest.uuid = h.uuid
+                                  ORDER BY latest.date DESC, latest.id DESC LIMIT 1)
+                """;
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+
     private void createConfigTable() throws SQLException {
         String sql = """
                     CREATE TABLE IF NOT EXISTS controlbans_config (
@@ -238,14 +527,14 @@ public class SchemaMigrator {
         String sql = """
                     CREATE TABLE IF NOT EXISTS controlbans_reports (
                         id VARCHAR(36) PRIMARY KEY,
-                        reporter_uuid VARCHAR(36) NOT NULL,
+                        reporter_uuid %s NOT NULL,
                         reporter_name VARCHAR(16),
                         target_name VARCHAR(16) NOT NULL,
                         reason VARCHAR(2048),
                         time BIGINT NOT NULL,
                         status VARCHAR(16) NOT NULL DEFAULT 'PENDING'
                     )
-                """;
+                """.formatted(uuidType());
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(sql);
         }
@@ -254,13 +543,13 @@ public class SchemaMigrator {
     private void createNotesTable() throws SQLException {
         String sql = """
                     CREATE TABLE IF NOT EXISTS controlbans_notes (
-                        id INTEGER %s,
-                        uuid VARCHAR(36) NOT NULL,
+                        id INTEGER %1$s,
+                        uuid %2$s NOT NULL,
                         staff_name VARCHAR(16),
                         note_text TEXT NOT NULL,
                         time BIGINT NOT NULL
                     )
-                """.formatted(getPrimaryKeyDefinition());
+                """.formatted(getPrimaryKeyDefinition(), uuidType());
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(sql);
         }
@@ -269,13 +558,13 @@ public class SchemaMigrator {
     private void createAppealsTable() throws SQLException {
         String sql = """
                     CREATE TABLE IF NOT EXISTS controlbans_appeals (
-                        id INTEGER %s,
+                        id INTEGER %1$s,
                         punishment_id VARCHAR(8),
-                        target_uuid VARCHAR(36) NOT NULL,
+                        target_uuid %2$s NOT NULL,
                         message TEXT NOT NULL,
                         created_at BIGINT NOT NULL
                     )
-                """.formatted(getPrimaryKeyDefinition());
+                """.formatted(getPrimaryKeyDefinition(), uuidType());
 
         try (Statement stmt = connection.createStatement()) {
             stmt.execute(sql);
@@ -283,48 +572,201 @@ public class SchemaMigrator {
     }
 
     private void createIndexes() throws SQLException {
-        String[] indexes = {
-                "CREATE UNIQUE INDEX IF NOT EXISTS idx_bans_punishment_id ON controlbans_bans(punishment_id)",
-                "CREATE INDEX IF NOT EXISTS idx_bans_uuid ON controlbans_bans(uuid)",
-                "CREATE INDEX IF NOT EXISTS idx_bans_active ON controlbans_bans(active)",
+        try (Statement stmt = connection.createStatement()) {
+            createIndex(stmt, "idx_bans_punishment_id", "controlbans_bans", "punishment_id", true);
+            createIndex(stmt, "idx_bans_uuid", "controlbans_bans", "uuid", false);
+            createIndex(stmt, "idx_bans_active", "controlbans_bans", "active", false);
 
-                "CREATE UNIQUE INDEX IF NOT EXISTS idx_mutes_punishment_id ON controlbans_mutes(punishment_id)",
-                "CREATE INDEX IF NOT EXISTS idx_mutes_uuid ON controlbans_mutes(uuid)",
-                "CREATE INDEX IF NOT EXISTS idx_mutes_active ON controlbans_mutes(active)",
+            createIndex(stmt, "idx_mutes_punishment_id", "controlbans_mutes", "punishment_id", true);
+            createIndex(stmt, "idx_mutes_uuid", "controlbans_mutes", "uuid", false);
+            createIndex(stmt, "idx_mutes_active", "controlbans_mutes", "active", false);
 
-                "CREATE UNIQUE INDEX IF NOT EXISTS idx_warnings_punishment_id ON controlbans_warnings(punishment_id)",
-                "CREATE INDEX IF NOT EXISTS idx_warnings_uuid ON controlbans_warnings(uuid)",
+            createIndex(stmt, "idx_warnings_punishment_id", "controlbans_warnings", "punishment_id", true);
+            createIndex(stmt, "idx_warnings_uuid", "controlbans_warnings", "uuid", false);
 
-                "CREATE UNIQUE INDEX IF NOT EXISTS idx_kicks_punishment_id ON controlbans_kicks(punishment_id)",
-                "CREATE INDEX IF NOT EXISTS idx_kicks_uuid ON controlbans_kicks(uuid)",
+            createIndex(stmt, "idx_kicks_punishment_id", "controlbans_kicks", "punishment_id", true);
+            createIndex(stmt, "idx_kicks_uuid", "controlbans_kicks", "uuid", false);
 
-                "CREATE INDEX IF NOT EXISTS idx_history_uuid ON controlbans_history(uuid)",
-                "CREATE INDEX IF NOT EXISTS idx_history_ip ON controlbans_history(ip)",
-                "CREATE INDEX IF NOT EXISTS idx_history_name ON controlbans_history(name)",
-                "CREATE UNIQUE INDEX IF NOT EXISTS idx_history_uuid_ip ON controlbans_history(uuid, ip)",
+            createIndex(stmt, "idx_history_uuid", "controlbans_history", "uuid", false);
+            createIndex(stmt, "idx_history_ip", "controlbans_history", "ip", false);
+            createIndex(stmt, "idx_history_name", "controlbans_history", "name", false);
+            createIndex(stmt, "idx_history_uuid_ip", "controlbans_history", "uuid, ip", true);
 
-                "CREATE INDEX IF NOT EXISTS idx_appeals_target ON controlbans_appeals(target_uuid)",
-                "CREATE INDEX IF NOT EXISTS idx_appeals_created ON controlbans_appeals(created_at)",
+            createIndex(stmt, "idx_players_name", "controlbans_players", "name", false);
 
-                "CREATE UNIQUE INDEX IF NOT EXISTS idx_voicemutes_punishment_id ON controlbans_voicemutes(punishment_id)",
-                "CREATE INDEX IF NOT EXISTS idx_voicemutes_uuid ON controlbans_voicemutes(uuid)",
-                "CREATE INDEX IF NOT EXISTS idx_voicemutes_active ON controlbans_voicemutes(active)",
+            createIndex(stmt, "idx_appeals_target", "controlbans_appeals", "target_uuid", false);
+            createIndex(stmt, "idx_appeals_created", "controlbans_appeals", "created_at", false);
 
-                "CREATE INDEX IF NOT EXISTS idx_reports_reporter ON controlbans_reports(reporter_uuid)",
-                "CREATE INDEX IF NOT EXISTS idx_reports_target ON controlbans_reports(target_name)",
-                "CREATE INDEX IF NOT EXISTS idx_notes_uuid ON controlbans_notes(uuid)"
-        };
+            createIndex(stmt, "idx_voicemutes_punishment_id", "controlbans_voicemutes", "punishment_id", true);
+            createIndex(stmt, "idx_voicemutes_uuid", "controlbans_voicemutes", "uuid", false);
+            createIndex(stmt, "idx_voicemutes_active", "controlbans_voicemutes", "active", false);
+
+            createIndex(stmt, "idx_reports_reporter", "controlbans_reports", "reporter_uuid", false);
+            createIndex(stmt, "idx_reports_target", "controlbans_reports", "target_name", false);
+            createIndex(stmt, "idx_notes_uuid", "controlbans_notes", "uuid", false);
+        }
+    }
 
+    private void createActiveLookupIndexes() throws SQLException {
         try (Statement stmt = connection.createStatement()) {
-            for (String index : indexes) {
-                try {
-                    stmt.execute(index);
-                } catch (SQLException e) {
+            createIndex(stmt, "idx_bans_uuid_active", "controlbans_bans", "uuid, active, until, time", false);
+            createIndex(stmt, "idx_bans_ip_active", "controlbans_bans", "ip, ipban, active, until", false);
+            createIndex(stmt, "idx_bans_active_time", "controlbans_bans", "active, time, punishment_id", false);
+
+            createIndex(stmt, "idx_mutes_uuid_active", "controlbans_mutes", "uuid, active, until, time", false);
+            createIndex(stmt, "idx_mutes_ip_active", "controlbans_mutes", "ip, ipban, active, until", false);
+            createIndex(stmt, "idx_mutes_active_time", "controlbans_mutes", "active, time, punishment_id", false);
+
+            createIndex(stmt, "idx_voicemutes_uuid_active", "controlbans_voicemutes", "uuid, active, until, time", false);
+
+            dropIndex(stmt, "idx_bans_uuid", "controlbans_bans");
+            dropIndex(stmt, "idx_bans_active", "controlbans_bans");
+            dropIndex(stmt, "idx_mutes_uuid", "controlbans_mutes");
+            dropIndex(stmt, "idx_mutes_active", "controlbans_mutes");
+            dropIndex(stmt, "idx_voicemutes_uuid", "controlbans_voicemutes");
+            dropIndex(stmt, "idx_voicemutes_active", "controlbans_voicemutes");
+        }
+    }
+
+    private void createRemovalDateIndexes() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            createIndex(stmt, "idx_bans_removed_date", "controlbans_bans", "removed_by_date", false);
+            createIndex(stmt, "idx_mutes_removed_date", "controlbans_mutes", "removed_by_date", false);
+            createIndex(stmt, "idx_warnings_removed_date", "controlbans_warnings", "removed_by_date", false);
+            createIndex(stmt, "idx_voicemutes_removed_date", "controlbans_voicemutes", "removed_by_date", false);
+        }
+    }
+
+    private void createArchiveTables() throws SQLException {
+        createBansTable("controlbans_bans_archive", "PRIMARY KEY");
+        createMutesTable("controlbans_mutes_archive", "PRIMARY KEY");
+        createWarningsTable("controlbans_warnings_archive", "PRIMARY KEY");
+        createKicksTable("controlbans_kicks_archive", "PRIMARY KEY");
+        createVoiceMutesTable("controlbans_voicemutes_archive", "PRIMARY KEY");
+
+        try (Statement stmt = connection.createStatement()) {
+            createIndex(stmt, "idx_bans_archive_punishment_id", "controlbans_bans_archive", "punishment_id", false);
+            createIndex(stmt, "idx_bans_archive_uuid", "controlbans_bans_archive", "uuid, time", false);
+            createIndex(stmt, "idx_mutes_archive_punishment_id", "controlbans_mutes_archive", "punishment_id", false);
+            createIndex(stmt, "idx_mutes_archive_uuid", "controlbans_mutes_archive", "uuid, time", false);
+            createIndex(stmt, "idx_warnings_archive_punishment_id", "controlbans_warnings_archive", "punishment_id", false);
+            createIndex(stmt, "idx_warnings_archive_uuid", "controlbans_warnings_archive", "uuid, time", false);
+            createIndex(stmt, "idx_kicks_archive_punishment_id", "controlbans_kicks_archive", "punishment_id", false);
+            createIndex(stmt, "idx_kicks_archive_uuid", "controlbans_kicks_archive", "uuid, time", false);
+            createIndex(stmt, "idx_voicemutes_archive_punishment_id", "controlbans_voicemutes_archive", "punishment_id", false);
+            createIndex(stmt, "idx_voicemutes_archive_uuid", "controlbans_voicemutes_archive", "uuid, time", false);
+        }
+    }
+
+    private void createRecentTimeIndexes() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            createIndex(stmt, "idx_bans_time", "controlbans_bans", "time", false);
+            createIndex(stmt, "idx_mutes_time", "controlbans_mutes", "time", false);
+            createIndex(stmt, "idx_warnings_time", "controlbans_warnings", "time", false);
+            createIndex(stmt, "idx_kicks_time", "controlbans_kicks", "time", false);
+            createIndex(stmt, "idx_voicemutes_time", "controlbans_voicemutes", "time", false);
+        }
+    }
+
+    private void createChangesTable() throws SQLException {
+        String sql = """
+                    CREATE TABLE IF NOT EXISTS controlbans_changes (
+                        id %1$s,
+                        uuid %2$s,
+                        origin VARCHAR(36) NOT NULL,
+                        time BIGINT NOT NULL
+                    )
+                """.formatted(getSequenceKeyDefinition(), uuidType());
+
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+            createIndex(stmt, "idx_changes_time", "controlbans_changes", "time", false);
+        }
+    }
+
+    private void widenPunishmentIds() throws SQLException {
+        List<String> tables = List.of("controlbans_bans", "controlbans_mutes", "controlbans_warnings", "controlbans_kicks",
+                "controlbans_voicemutes", "controlbans_appeals");
+        try (Statement stmt = connection.createStatement()) {
+            for (String table : tables) {
+                widenPunishmentId(stmt, table);
+                if (!table.equals("controlbans_appeals")) {
+                    widenPunishmentId(stmt, table + "_archive");
+                }
+            }
+            for (String prefix : List.of("bans", "mutes", "warnings", "kicks", "voicemutes")) {
+                String table = "controlbans_" + prefix + "_archive";
+                if (createIndex(stmt, "idx_" + prefix + "_archive_punishment_id_unique", table, "punishment_id", true)) {
+                    dropIndex(stmt, "idx_" + prefix + "_archive_punishment_id", table);
+                } else {
+                    LOGGER.warning(table + " contains duplicate punishment IDs; its punishment_id index stays non-unique.");
                 }
             }
         }
     }
 
+    private void createStaffNameIndexes() throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String prefix : List.of("bans", "mutes", "warnings", "kicks", "voicemutes")) {
+                String table = "controlbans_" + prefix;
+                String columns = switch (databaseType) {
+                    case "postgresql", "sqlite" -> "LOWER(banned_by_name), time";
+                    default -> {
+                        addStaffNameColumn(stmt, table);
+                        yield "banned_by_name_lower, time";
+                    }
+                };
+                if (!createIndex(stmt, "idx_" + prefix + "_staff_name", table, columns, false)) {
+                    LOGGER.warning("Could not create the staff name index on " + table + "; staff lookups will scan it.");
+                }
+            }
+        }
+    }
+
+    private void addStaffNameColumn(Statement stmt, String table) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getColumns(connection.getCatalog(), null, table, "banned_by_name_lower")) {
+            if (rs.next()) return;
+        }
+        stmt.execute("ALTER TABLE " + table + " ADD COLUMN banned_by_name_lower VARCHAR(16) " + (isMySql()
+                ? "AS (LOWER(banned_by_name)) STORED"
+                : "GENERATED ALWAYS AS (LOWER(banned_by_name))"));
+    }
+
+    private void widenPunishmentId(Statement stmt, String table) throws SQLException {
+        switch (databaseType) {
+            case "postgresql" -> stmt.execute("ALTER TABLE " + table + " ALTER COLUMN punishment_id TYPE VARCHAR(16)");
+            case "mysql", "mariadb" -> stmt.execute("ALTER TABLE " + table + " MODIFY punishment_id VARCHAR(16)");
+            case "h2" -> stmt.execute("ALTER TABLE " + table + " ALTER COLUMN punishment_id SET DATA TYPE VARCHAR(16)");
+            default -> {
+            }
+        }
+    }
+
+    private boolean createIndex(Statement stmt, String name, String table, String columns, boolean unique) {
+        String ifNotExists = isMySql() ? "" : "IF NOT EXISTS ";
+        try {
+            stmt.execute("CREATE " + (unique ? "UNIQUE " : "") + "INDEX " + ifNotExists + name + " ON " + table + "(" + columns + ")");
+            return true;
+        } catch (SQLException ignored) {
+            return false;
+        }
+    }
+
+    private void dropIndex(Statement stmt, String name, String table) {
+        try {
+            stmt.execute(isMySql() ? "DROP INDEX " + name + " ON " + table : "DROP INDEX IF EXISTS " + name);
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private boolean isMySql() {
+        return "mysql".equals(databaseType) || "mariadb".equals(databaseType);
+    }
+
+    private String uuidType() {
+        return uuidCodec.columnType(databaseType);
+    }
+
     private String getPrimaryKeyDefinition() {
         return switch (databaseType) {
             case "mysql", "mariadb" -> "PRIMARY KEY AUTO_INCREMENT";
@@ -332,4 +774,23 @@ public class SchemaMigrator {
             default -> "PRIMARY KEY AUTOINCREMENT";
         };
     }
-}
\ No newline at end of file
+
+    private String getSequenceKeyDefinition() {
+        return switch (databaseType) {
+            case "mysql", "mariadb" -> "BIGINT PRIMARY KEY AUTO_INCREMENT";
+            case "postgresql", "h2" -> "BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY";
+            default -> "INTEGER PRIMARY KEY AUTOINCREMENT";
+        };
+    }
+
+    private record Migration(int version, String description, MigrationAction action) {
+    }
+
+    private record UuidColumn(String table, String name, boolean nullable) {
+    }
+
+    @FunctionalInterface
+    private interface MigrationAction {
+        void run() throws SQLException;
+    }
+}
@@ -1,12 +1,18 @@
 package ret.tawny.controlbans.storage;
 
+import ret.tawny.controlbans.model.ExportWatermark;
+import ret.tawny.controlbans.model.LoginState;
+import ret.tawny.controlbans.model.PageCursor;
 import ret.tawny.controlbans.model.Punishment;
+import ret.tawny.controlbans.model.PunishmentType;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface StorageInterface {
 
@@ -18,17 +24,31 @@ public interface StorageInterface {
     CompletableFuture<Void> insertWarning(Punishment punishment);
     CompletableFuture<Void> insertKick(Punishment punishment);
     CompletableFuture<Void> insertVoiceMute(Punishment punishment);
+    StorageTransaction beginTransaction();
 
     CompletableFuture<Optional<Punishment>> getActiveBan(UUID uuid);
     CompletableFuture<Optional<Punishment>> getActiveMute(UUID uuid);
     CompletableFuture<Optional<Punishment>> getActiveVoiceMute(UUID uuid);
     CompletableFuture<Optional<Punishment>> getActiveIpBan(String ip);
     CompletableFuture<Optional<Punishment>> getActiveIpMute(String ip);
-    CompletableFuture<Optional<Punishment>> getPunishmentById(String id);
+    CompletableFuture<LoginState> getLoginState(UUID uuid, String ip);
+    CompletableFuture<Optional<Punishment>> getPunishmentById(String id, boolean includeArchive);
 
-    CompletableFuture<List<Punishment>> getPunishmentHistory(UUID uuid, int limit);
+    CompletableFuture<List<Punishment>> getPunishmentHistory(UUID uuid, int limit, boolean includeArchive);
     CompletableFuture<List<Punishment>> getRecentPunishments(int limit);
     CompletableFuture<List<Punishment>> getAllPunishments();
+    CompletableFuture<Long> streamPunishments(PunishmentType type, Consumer<Punishment> consumer);
+    CompletableFuture<Map<String, ExportWatermark>> streamChangedPunishments(Map<String, ExportWatermark> since, Consumer<Punishment> consumer);
+    CompletableFuture<Map<String, ExportWatermark>> getExportWatermarks();
+    CompletableFuture<Void> saveExportWatermarks(Map<String, ExportWatermark> watermarks);
+    CompletableFuture<List<Punishment>> getActivePunishments();
+
+    CompletableFuture<List<Punishment>> getActiveBans(PageCursor cursor, int limit);
+    CompletableFuture<List<Punishment>> getActiveMutes(PageCursor cursor, int limit);
+    CompletableFuture<List<Punishment>> getPunishmentsByStaff(String staffName, PageCursor cursor, int limit);
+    CompletableFuture<Integer> countActiveBans();
+    CompletableFuture<Integer> countActiveMutes();
+    CompletableFuture<Integer> countPunishmentsByStaff(String staffName);
 
     CompletableFuture<Void> removeBan(UUID uuid, UUID removedBy, String removedByName);
     CompletableFuture<Void> removeMute(UUID uuid, UUID removedBy, String removedByName);
@@ -63,5 +83,8 @@ public interface StorageInterface {
     CompletableFuture<Boolean> removeNote(UUID targetUuid, int index);
     CompletableFuture<List<ret.tawny.controlbans.services.NoteService.PlayerNote>> getNotes(UUID targetUuid);
 
-    CompletableFuture<Void> importPunishment(Punishment punishment);
+    CompletableFuture<Boolean> importPunishment(Punishment punishment);
+    CompletableFuture<Integer> importPunishments(List<Punishment> punishments);
+
+    List<DatabaseScheduler.LaneStats> getSchedulerStats();
 }
\ No newline at end of file
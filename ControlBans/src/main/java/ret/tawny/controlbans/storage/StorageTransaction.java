@@ -0,0 +1,42 @@
+package ret.tawny.controlbans.storage;
+
+import ret.tawny.controlbans.model.Punishment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+public final class StorageTransaction {
+
+    private final List<Punishment> punishments = new ArrayList<>();
+    private final Function<List<Punishment>, CompletableFuture<Void>> committer;
+    private boolean committed;
+
+    StorageTransaction(Function<List<Punishment>, CompletableFuture<Void>> committer) {
+        this.committer = committer;
+    }
+
+    public synchronized StorageTransaction insert(Punishment punishment) {
+        if (committed) {
+            throw new IllegalStateException("Transaction has already been committed");
+        }
+        punishments.add(punishment);
+        return this;
+    }
+
+    public synchronized List<Punishment> getPunishments() {
+        return List.copyOf(punishments);
+    }
+
+    public synchronized CompletableFuture<Void> commit() {
+        if (committed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Transaction has already been committed"));
+        }
+        committed = true;
+        if (punishments.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return committer.apply(List.copyOf(punishments));
+    }
+}
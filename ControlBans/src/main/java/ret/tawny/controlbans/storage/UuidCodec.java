@@ -0,0 +1,90 @@
+package ret.tawny.controlbans.storage;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.UUID;
+
+public final class UuidCodec {
+
+    public static final UuidCodec TEXT = new UuidCodec(Mode.TEXT);
+
+    private final Mode mode;
+
+    private UuidCodec(Mode mode) {
+        this.mode = mode;
+    }
+
+    public static UuidCodec binary(String databaseType) {
+        return new UuidCodec("postgresql".equals(databaseType) ? Mode.NATIVE : Mode.BINARY);
+    }
+
+    public boolean isBinary() {
+        return mode != Mode.TEXT;
+    }
+
+    public String getModeName() {
+        return mode == Mode.TEXT ? "text" : "binary";
+    }
+
+    public String columnType(String databaseType) {
+        return switch (mode) {
+            case TEXT -> "VARCHAR(36)";
+            case NATIVE -> "UUID";
+            case BINARY -> "sqlite".equals(databaseType) ? "BLOB" : "BINARY(16)";
+        };
+    }
+
+    public void bind(PreparedStatement stmt, int index, UUID uuid) throws SQLException {
+        if (uuid == null) {
+            stmt.setNull(index, switch (mode) {
+                case TEXT -> Types.VARCHAR;
+                case NATIVE -> Types.OTHER;
+                case BINARY -> Types.BINARY;
+            });
+            return;
+        }
+        switch (mode) {
+            case TEXT -> stmt.setString(index, uuid.toString());
+            case NATIVE -> stmt.setObject(index, uuid);
+            case BINARY -> stmt.setBytes(index, toBytes(uuid));
+        }
+    }
+
+    public UUID read(ResultSet rs, String column) throws SQLException {
+        return switch (mode) {
+            case TEXT -> {
+                String value = rs.getString(column);
+                yield value != null ? UUID.fromString(value) : null;
+            }
+            case NATIVE -> rs.getObject(column, UUID.class);
+            case BINARY -> {
+                byte[] value = rs.getBytes(column);
+                yield value != null ? fromBytes(value) : null;
+            }
+        };
+    }
+
+    public static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException("Expected 16 UUID bytes but got " + bytes.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private enum Mode {
+        TEXT,
+        BINARY,
+        NATIVE
+    }
+}
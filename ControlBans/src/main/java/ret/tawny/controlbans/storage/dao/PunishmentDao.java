@@ -1,14 +1,26 @@
 package ret.tawny.controlbans.storage.dao;
 
 import ret.tawny.controlbans.ControlBansPlugin;
+import ret.tawny.controlbans.model.ExportWatermark;
+import ret.tawny.controlbans.model.LoginState;
+import ret.tawny.controlbans.model.PageCursor;
 import ret.tawny.controlbans.model.Punishment;
 import ret.tawny.controlbans.model.PunishmentType;
+import ret.tawny.controlbans.storage.ChangeFeed;
+import ret.tawny.controlbans.storage.DuplicatePunishmentIdException;
+import ret.tawny.controlbans.storage.HistoryWriteBuffer;
+import ret.tawny.controlbans.storage.PostgresNotifyListener;
+import ret.tawny.controlbans.storage.UuidCodec;
+import ret.tawny.controlbans.util.IdUtil;
+import ret.tawny.controlbans.util.SortedMerge;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -16,96 +28,383 @@ public class PunishmentDao {
 
     private static final java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger("ControlBans-DAO");
 
-    public void insertBan(Connection connection, Punishment punishment) throws SQLException {
-        recordHistory(connection, punishment.getTargetUuid(), punishment.getTargetName(), punishment.getTargetIp());
-        String sql = "INSERT INTO controlbans_bans (punishment_id, uuid, ip, reason, banned_by_uuid, banned_by_name, time, until, server_origin, silent, ipban, active) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            setPunishmentParams(stmt, punishment);
-            stmt.executeUpdate();
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final String WATERMARK_SETTING_PREFIX = "export-watermark.";
+    private static final String JANITOR_CURSOR_PREFIX = "janitor-cursor.";
+    private static final List<String> PUNISHMENT_TABLES = List.of(
+            "controlbans_bans",
+            "controlbans_mutes",
+            "controlbans_warnings",
+            "controlbans_kicks",
+            "controlbans_voicemutes"
+    );
+    private static final String ARCHIVE_SUFFIX = "_archive";
+    private static final int ID_LOOKUP_CHUNK = 500;
+    private static final Comparator<Punishment> RECENT_FIRST = Comparator.comparingLong(Punishment::getCreatedTime).reversed();
+    private static final String COMMON_COLS = "t.id, t.punishment_id, t.uuid, t.ip, t.reason, t.banned_by_uuid, t.banned_by_name, t.removed_by_uuid, t.removed_by_name, t.removed_by_date, t.time, t.until, t.server_origin, t.silent, t.ipban, t.active";
+    private static final String KICK_COLS = "t.id, t.punishment_id, t.uuid, t.ip, t.reason, t.banned_by_uuid, t.banned_by_name, null, null, 0, t.time, -1, t.server_origin, t.silent, false, false";
+    private static final String VOICEMUTE_COLS = "t.id, t.punishment_id, t.uuid, null, t.reason, t.banned_by_uuid, t.banned_by_name, t.removed_by_uuid, t.removed_by_name, t.removed_by_date, t.time, t.until, t.server_origin, t.silent, false, t.active";
+    private static final Map<String, String> ARCHIVE_COLUMNS = Map.of(
+            "controlbans_bans", "id, punishment_id, uuid, ip, reason, banned_by_uuid, banned_by_name, removed_by_uuid, removed_by_name, removed_by_date, time, until, template, server_scope, server_origin, silent, ipban, active",
+            "controlbans_mutes", "id, punishment_id, uuid, ip, reason, banned_by_uuid, banned_by_name, removed_by_uuid, removed_by_name, removed_by_date, time, until, template, server_scope, server_origin, silent, ipban, active",
+            "controlbans_warnings", "id, punishment_id, uuid, ip, reason, banned_by_uuid, banned_by_name, removed_by_uuid, removed_by_name, removed_by_date, time, until, template, server_scope, server_origin, silent, ipban, active, warned",
+            "controlbans_kicks", "id, punishment_id, uuid, ip, reason, banned_by_uuid, banned_by_name, time, server_origin, silent",
+            "controlbans_voicemutes", "id, punishment_id, uuid, reason, banned_by_uuid, banned_by_name, removed_by_uuid, removed_by_name, removed_by_date, time, until, server_origin, silent, active"
+    );
+
+    private final String databaseType;
+    private volatile UuidCodec uuidCodec = UuidCodec.TEXT;
+    private volatile String changeOrigin;
+    private volatile boolean changeTable;
+    private volatile boolean changeNotify;
+
+    public PunishmentDao(String databaseType) {
+        this.databaseType = databaseType;
+    }
+
+    public UuidCodec getUuidCodec() {
+        return uuidCodec;
+    }
+
+    public void setUuidCodec(UuidCodec uuidCodec) {
+        this.uuidCodec = uuidCodec;
+    }
+
+    public void setChangeSignals(String origin, boolean table, boolean notify) {
+        this.changeTable = table;
+        this.changeNotify = notify;
+        this.changeOrigin = table || notify ? origin : null;
+    }
+
+    public void insert(Connection connection, Punishment punishment) throws SQLException {
+        write(connection, punishment);
+    }
+
+    public void insertBatch(Connection connection, List<Punishment> punishments) throws SQLException {
+        writeBatch(connection, punishments);
+    }
+
+    public int insertMissing(Connection connection, List<Punishment> punishments) throws SQLException {
+        Map<String, Map<String, Punishment>> byTable = new LinkedHashMap<>();
+        for (Punishment punishment : punishments) {
+            byTable.computeIfAbsent(punishment.getType().getTableName(), k -> new LinkedHashMap<>())
+                    .putIfAbsent(punishment.getPunishmentId(), punishment);
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            List<Punishment> written = new ArrayList<>();
+            for (Map.Entry<String, Map<String, Punishment>> entry : byTable.entrySet()) {
+                String table = entry.getKey();
+                Map<String, Punishment> missing = new LinkedHashMap<>(entry.getValue());
+                missing.keySet().removeAll(existingIds(connection, table, missing.keySet()));
+                missing.keySet().removeAll(existingIds(connection, table + ARCHIVE_SUFFIX, missing.keySet()));
+                if (missing.isEmpty()) continue;
+
+                try (PreparedStatement stmt = connection.prepareStatement(writeSql(table, true))) {
+                    int pending = 0;
+                    for (Punishment punishment : missing.values()) {
+                        bindInsert(stmt, table, punishment);
+                        stmt.addBatch();
+                        if (++pending == INSERT_BATCH_SIZE) {
+                            stmt.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        stmt.executeBatch();
+                    }
+                }
+                written.addAll(missing.values());
+            }
+            recordChanges(connection, "PUNISH", written.stream().map(Punishment::getTargetUuid).collect(Collectors.toCollection(LinkedHashSet::new)));
+            connection.commit();
+            return written.size();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
         }
     }
 
-    public void insertMute(Connection connection, Punishment punishment) throws SQLException {
-        recordHistory(connection, punishment.getTargetUuid(), punishment.getTargetName(), punishment.getTargetIp());
-        String sql = "INSERT INTO controlbans_mutes (punishment_id, uuid, ip, reason, banned_by_uuid, banned_by_name, time, until, server_origin, silent, ipban, active) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            setPunishmentParams(stmt, punishment);
-            stmt.executeUpdate();
+    private Set<String> existingIds(Connection connection, String table, Collection<String> ids) throws SQLException {
+        Set<String> existing = new HashSet<>();
+        List<String> remaining = new ArrayList<>(ids);
+        for (int from = 0; from < remaining.size(); from += ID_LOOKUP_CHUNK) {
+            List<String> chunk = remaining.subList(from, Math.min(remaining.size(), from + ID_LOOKUP_CHUNK));
+            String sql = "SELECT punishment_id FROM " + table + " WHERE punishment_id IN (" + String.join(", ", Collections.nCopies(chunk.size(), "?")) + ")";
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    stmt.setString(i + 1, chunk.get(i));
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        existing.add(rs.getString(1));
+                    }
+                }
+            }
         }
+        return existing;
     }
 
-    public void insertWarning(Connection connection, Punishment punishment) throws SQLException {
-        recordHistory(connection, punishment.getTargetUuid(), punishment.getTargetName(), punishment.getTargetIp());
-        String sql = "INSERT INTO controlbans_warnings (punishment_id, uuid, ip, reason, banned_by_uuid, banned_by_name, time, until, server_origin, silent, ipban, active, warned) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            setPunishmentParams(stmt, punishment);
-            stmt.setBoolean(13, true);
-            stmt.executeUpdate();
+    private void write(Connection connection, Punishment punishment) throws SQLException {
+        String table = punishment.getType().getTableName();
+        try {
+            withChanges(connection, "PUNISH", List.of(punishment.getTargetUuid()), () -> {
+                try (PreparedStatement stmt = connection.prepareStatement(writeSql(table, false))) {
+                    bindInsert(stmt, table, punishment);
+                    insertUnique(connection, stmt, table, punishment);
+                }
+            });
+        } catch (SQLException e) {
+            if (isUniqueViolation(e)) throw new DuplicatePunishmentIdException(e);
+            throw e;
         }
     }
 
-    public void insertKick(Connection connection, Punishment punishment) throws SQLException {
-        recordHistory(connection, punishment.getTargetUuid(), punishment.getTargetName(), punishment.getTargetIp());
-        String sql = "INSERT INTO controlbans_kicks (punishment_id, uuid, ip, reason, banned_by_uuid, banned_by_name, time, server_origin, silent) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, punishment.getPunishmentId());
-            stmt.setString(2, punishment.getTargetUuid().toString());
-            stmt.setString(3, punishment.getTargetIp());
-            stmt.setString(4, punishment.getReason());
-            stmt.setString(5, punishment.getStaffUuid() != null ? punishment.getStaffUuid().toString() : null);
-            stmt.setString(6, punishment.getStaffName());
-            stmt.setLong(7, punishment.getCreatedTime());
-            stmt.setString(8, punishment.getServerOrigin());
-            stmt.setBoolean(9, punishment.isSilent());
-            stmt.executeUpdate();
+    private void insertUnique(Connection connection, PreparedStatement stmt, String table, Punishment punishment) throws SQLException {
+        try (PreparedStatement archived = connection.prepareStatement("SELECT 1 FROM " + table + ARCHIVE_SUFFIX + " WHERE punishment_id = ?")) {
+            archived.setString(1, punishment.getPunishmentId());
+            try (ResultSet rs = archived.executeQuery()) {
+                if (rs.next()) throw new DuplicatePunishmentIdException();
+            }
         }
+        if (stmt.executeUpdate() == 0) throw new DuplicatePunishmentIdException();
     }
 
-    public void insertVoiceMute(Connection connection, Punishment punishment) throws SQLException {
-        recordHistory(connection, punishment.getTargetUuid(), punishment.getTargetName(), null);
-        String sql = "INSERT INTO controlbans_voicemutes (punishment_id, uuid, reason, banned_by_uuid, banned_by_name, time, until, server_origin, silent, active) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, punishment.getPunishmentId());
-            stmt.setString(2, punishment.getTargetUuid().toString());
-            stmt.setString(3, punishment.getReason());
-            stmt.setString(4, punishment.getStaffUuid() != null ? punishment.getStaffUuid().toString() : null);
-            stmt.setString(5, punishment.getStaffName());
-            stmt.setLong(6, punishment.getCreatedTime());
-            stmt.setLong(7, punishment.getExpiryTime());
-            stmt.setString(8, punishment.getServerOrigin());
-            stmt.setBoolean(9, punishment.isSilent());
-            stmt.setBoolean(10, punishment.isActive());
-            stmt.executeUpdate();
+    private void writeBatch(Connection connection, List<Punishment> punishments) throws SQLException {
+        Map<String, List<Punishment>> byTable = new LinkedHashMap<>();
+        for (Punishment punishment : punishments) {
+            byTable.computeIfAbsent(punishment.getType().getTableName(), k -> new ArrayList<>()).add(punishment);
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            for (Map.Entry<String, List<Punishment>> entry : byTable.entrySet()) {
+                try (PreparedStatement stmt = connection.prepareStatement(writeSql(entry.getKey(), false))) {
+                    for (Punishment punishment : entry.getValue()) {
+                        bindInsert(stmt, entry.getKey(), punishment);
+                        insertUnique(connection, stmt, entry.getKey(), punishment);
+                    }
+                }
+            }
+            recordChanges(connection, "PUNISH", punishments.stream().map(Punishment::getTargetUuid).collect(Collectors.toCollection(LinkedHashSet::new)));
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            if (e instanceof SQLException sql && isUniqueViolation(sql)) throw new DuplicatePunishmentIdException(sql);
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
         }
     }
 
-    public void recordHistory(Connection connection, UUID uuid, String name, String ip) {
-        if (uuid == null || name == null || name.equalsIgnoreCase("unknown")) return;
+    private void withChanges(Connection connection, String action, Collection<UUID> uuids, SqlWork work) throws SQLException {
+        if (changeOrigin == null) {
+            work.run();
+            return;
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            work.run();
+            recordChanges(connection, action, uuids);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
 
-        String targetIp = ip != null ? ip : "0.0.0.0";
-        String uuidStr = uuid.toString();
-        long now = System.currentTimeMillis();
+    private void recordChanges(Connection connection, String action, Collection<UUID> uuids) throws SQLException {
+        String origin = changeOrigin;
+        if (origin == null || uuids.isEmpty()) return;
+        if (changeTable) {
+            long now = System.currentTimeMillis();
+            try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO controlbans_changes (uuid, origin, time) VALUES (?, ?, ?)")) {
+                for (UUID uuid : uuids) {
+                    uuidCodec.bind(stmt, 1, uuid);
+                    stmt.setString(2, origin);
+                    stmt.setLong(3, now);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+        if (changeNotify) {
+            try (PreparedStatement stmt = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+                for (UUID uuid : uuids) {
+                    stmt.setString(1, PostgresNotifyListener.CHANNEL);
+                    stmt.setString(2, PostgresNotifyListener.payload(action, uuid, origin));
+                    stmt.execute();
+                }
+            }
+        }
+    }
 
-        String updateSql = "UPDATE controlbans_history SET date = ?, name = ? WHERE uuid = ? AND ip = ?";
-        try (PreparedStatement update = connection.prepareStatement(updateSql)) {
-            update.setLong(1, now);
-            update.setString(2, name);
-            update.setString(3, uuidStr);
-            update.setString(4, targetIp);
-            int rows = update.executeUpdate();
-
-            if (rows == 0) {
-                String insertSql = "INSERT INTO controlbans_history (date, name, uuid, ip) VALUES (?, ?, ?, ?)";
-                try (PreparedStatement insert = connection.prepareStatement(insertSql)) {
-                    insert.setLong(1, now);
-                    insert.setString(2, name);
-                    insert.setString(3, uuidStr);
-                    insert.setString(4, targetIp);
-                    insert.executeUpdate();
+    public long getLatestChangeId(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT MAX(id) FROM controlbans_changes");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    public List<ChangeFeed.Change> getChangesSince(Connection connection, long afterId, int limit) throws SQLException {
+        List<ChangeFeed.Change> changes = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT id, uuid, origin FROM controlbans_changes WHERE id > ? ORDER BY id LIMIT ?")) {
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    changes.add(new ChangeFeed.Change(rs.getLong("id"), uuidCodec.read(rs, "uuid"), rs.getString("origin")));
                 }
             }
-        } catch (SQLException ignored) {
         }
+        return changes;
+    }
+
+    public void trimChanges(Connection connection, long olderThan) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM controlbans_changes WHERE time < ?")) {
+            stmt.setLong(1, olderThan);
+            stmt.executeUpdate();
+        }
+    }
+
+    private boolean isUniqueViolation(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql) {
+                if ("23505".equals(sql.getSQLState()) || sql.getErrorCode() == 1062) return true;
+                if (sql.getMessage() != null && sql.getMessage().contains("UNIQUE constraint failed")) return true;
+                if (sql.getNextException() != null && sql.getNextException() != t && isUniqueViolation(sql.getNextException())) return true;
+            }
+        }
+        return false;
+    }
+
+    private String writeSql(String table, boolean skipExisting) {
+        String sql = switch (table) {
+            case "controlbans_bans", "controlbans_mutes" -> "INSERT INTO " + table + " (punishment_id, uuid, ip, reason, banned_by_uuid, banned_by_name, time, until, server_origin, silent, ipban, active, removed_by_uuid, removed_by_name, removed_by_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            case "controlbans_warnings" -> "INSERT INTO controlbans_warnings (punishment_id, uuid, ip, reason, banned_by_uuid, banned_by_name, time, until, server_origin, silent, ipban, active, warned, removed_by_uuid, removed_by_name, removed_by_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            case "controlbans_kicks" -> "INSERT INTO controlbans_kicks (punishment_id, uuid, ip, reason, banned_by_uuid, banned_by_name, time, server_origin, silent) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            case "controlbans_voicemutes" -> "INSERT INTO controlbans_voicemutes (punishment_id, uuid, reason, banned_by_uuid, banned_by_name, time, until, server_origin, silent, active, removed_by_uuid, removed_by_name, removed_by_date) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            default -> throw new IllegalArgumentException("Unknown punishment table: " + table);
+        };
+        if (!usesMySqlUpsert()) {
+            return sql + " ON CONFLICT (punishment_id) DO NOTHING";
+        }
+        return skipExisting ? sql + " ON DUPLICATE KEY UPDATE punishment_id = punishment_id" : sql;
+    }
+
+    private boolean usesMySqlUpsert() {
+        return !"postgresql".equals(databaseType) && !"sqlite".equals(databaseType);
+    }
+
+    private void bindInsert(PreparedStatement stmt, String table, Punishment punishment) throws SQLException {
+        switch (table) {
+            case "controlbans_bans", "controlbans_mutes" -> {
+                setPunishmentParams(stmt, punishment);
+                bindRemoval(stmt, 13, punishment);
+            }
+            case "controlbans_warnings" -> {
+                setPunishmentParams(stmt, punishment);
+                stmt.setBoolean(13, true);
+                bindRemoval(stmt, 14, punishment);
+            }
+            case "controlbans_kicks" -> {
+                stmt.setString(1, punishment.getPunishmentId());
+                uuidCodec.bind(stmt, 2, punishment.getTargetUuid());
+                stmt.setString(3, punishment.getTargetIp());
+                stmt.setString(4, punishment.getReason());
+                uuidCodec.bind(stmt, 5, punishment.getStaffUuid());
+                stmt.setString(6, punishment.getStaffName());
+                stmt.setLong(7, punishment.getCreatedTime());
+                stmt.setString(8, punishment.getServerOrigin());
+                stmt.setBoolean(9, punishment.isSilent());
+            }
+            case "controlbans_voicemutes" -> {
+                stmt.setString(1, punishment.getPunishmentId());
+                uuidCodec.bind(stmt, 2, punishment.getTargetUuid());
+                stmt.setString(3, punishment.getReason());
+                uuidCodec.bind(stmt, 4, punishment.getStaffUuid());
+                stmt.setString(5, punishment.getStaffName());
+                stmt.setLong(6, punishment.getCreatedTime());
+                stmt.setLong(7, punishment.getExpiryTime());
+                stmt.setString(8, punishment.getServerOrigin());
+                stmt.setBoolean(9, punishment.isSilent());
+                stmt.setBoolean(10, punishment.isActive());
+                bindRemoval(stmt, 11, punishment);
+            }
+            default -> throw new IllegalArgumentException("Unknown punishment table: " + table);
+        }
+    }
+
+    private void bindRemoval(PreparedStatement stmt, int index, Punishment punishment) throws SQLException {
+        uuidCodec.bind(stmt, index, punishment.getRemovedByUuid());
+        stmt.setString(index + 1, punishment.getRemovedByName());
+        if (punishment.getRemovedByDate() > 0) {
+            stmt.setLong(index + 2, punishment.getRemovedByDate());
+        } else {
+            stmt.setNull(index + 2, Types.BIGINT);
+        }
+    }
+
+    public void upsertHistory(Connection connection, List<HistoryWriteBuffer.HistoryRecord> records) throws SQLException {
+        boolean mysqlSyntax = usesMySqlUpsert();
+        String historySql = mysqlSyntax
+                ? "INSERT INTO controlbans_history (date, name, uuid, ip) VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE date = VALUES(date), name = VALUES(name)"
+                : "INSERT INTO controlbans_history (date, name, uuid, ip) VALUES (?, ?, ?, ?) ON CONFLICT (uuid, ip) DO UPDATE SET date = excluded.date, name = excluded.name";
+        String playerSql = mysqlSyntax
+                ? "INSERT INTO controlbans_players (uuid, name, last_ip, first_seen, last_seen) VALUES (?, ?, ?, ?, ?) "
+                        + "ON DUPLICATE KEY UPDATE name = VALUES(name), last_ip = COALESCE(VALUES(last_ip), last_ip), last_seen = VALUES(last_seen)"
+                : "INSERT INTO controlbans_players (uuid, name, last_ip, first_seen, last_seen) VALUES (?, ?, ?, ?, ?) "
+                        + "ON CONFLICT (uuid) DO UPDATE SET name = excluded.name, last_ip = COALESCE(excluded.last_ip, controlbans_players.last_ip), last_seen = excluded.last_seen";
+
+        Map<UUID, HistoryWriteBuffer.HistoryRecord> latestByPlayer = new LinkedHashMap<>();
+        for (HistoryWriteBuffer.HistoryRecord record : records) {
+            latestByPlayer.merge(record.uuid(), record, PunishmentDao::newerPlayerRecord);
+        }
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement history = connection.prepareStatement(historySql);
+             PreparedStatement players = connection.prepareStatement(playerSql)) {
+            for (HistoryWriteBuffer.HistoryRecord record : records) {
+                history.setLong(1, record.seenAt());
+                history.setString(2, record.name());
+                uuidCodec.bind(history, 3, record.uuid());
+                history.setString(4, record.ip() != null ? record.ip() : "0.0.0.0");
+                history.addBatch();
+            }
+            for (HistoryWriteBuffer.HistoryRecord record : latestByPlayer.values()) {
+                uuidCodec.bind(players, 1, record.uuid());
+                players.setString(2, record.name());
+                players.setString(3, record.ip());
+                players.setLong(4, record.seenAt());
+                players.setLong(5, record.seenAt());
+                players.addBatch();
+            }
+            history.executeBatch();
+            players.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static HistoryWriteBuffer.HistoryRecord newerPlayerRecord(HistoryWriteBuffer.HistoryRecord current, HistoryWriteBuffer.HistoryRecord next) {
+        HistoryWriteBuffer.HistoryRecord newer = next.seenAt() >= current.seenAt() ? next : current;
+        HistoryWriteBuffer.HistoryRecord older = newer == next ? current : next;
+        if (newer.ip() != null || older.ip() == null) return newer;
+        return new HistoryWriteBuffer.HistoryRecord(newer.uuid(), newer.name(), older.ip(), newer.seenAt());
     }
 
     public List<String> getNamesStartingWith(Connection connection, String prefix) throws SQLException {
@@ -124,10 +423,10 @@ public class PunishmentDao {
 
     private void setPunishmentParams(PreparedStatement stmt, Punishment p) throws SQLException {
         stmt.setString(1, p.getPunishmentId());
-        stmt.setString(2, p.getTargetUuid().toString());
+        uuidCodec.bind(stmt, 2, p.getTargetUuid());
         stmt.setString(3, p.getTargetIp());
         stmt.setString(4, p.getReason());
-        stmt.setString(5, p.getStaffUuid() != null ? p.getStaffUuid().toString() : null);
+        uuidCodec.bind(stmt, 5, p.getStaffUuid());
         stmt.setString(6, p.getStaffName());
         stmt.setLong(7, p.getCreatedTime());
         stmt.setLong(8, p.getExpiryTime());
@@ -138,105 +437,63 @@ public class PunishmentDao {
     }
 
     public List<Punishment> getRecentPunishments(Connection connection, int limit) throws SQLException {
-        List<Punishment> punishments = new ArrayList<>();
-        String commonCols = "t.id, t.punishment_id, t.uuid, t.ip, t.reason, t.banned_by_uuid, t.banned_by_name, t.removed_by_uuid, t.removed_by_name, t.removed_by_date, t.time, t.until, t.server_origin, t.silent, t.ipban, t.active";
+        List<Iterator<Punishment>> perTable = new ArrayList<>(PUNISHMENT_TABLES.size());
+        for (String table : PUNISHMENT_TABLES) {
+            perTable.add(getRecentFromTable(connection, table, limit).iterator());
+        }
+        return SortedMerge.topN(perTable, RECENT_FIRST, limit);
+    }
 
-        String sql = 
-            "SELECT " + commonCols + ", h.name as target_name, 'BAN' as type_ref FROM controlbans_bans t LEFT JOIN controlbans_history h ON t.uuid = h.uuid " +
-            "UNION ALL " +
-            "SELECT " + commonCols + ", h.name as target_name, 'MUTE' as type_ref FROM controlbans_mutes t LEFT JOIN controlbans_history h ON t.uuid = h.uuid " +
-            "UNION ALL " +
-            "SELECT " + commonCols + ", h.name as target_name, 'WARN' as type_ref FROM controlbans_warnings t LEFT JOIN controlbans_history h ON t.uuid = h.uuid " +
-            "UNION ALL " +
-            "SELECT t.id, t.punishment_id, t.uuid, t.ip, t.reason, t.banned_by_uuid, t.banned_by_name, null, null, 0, t.time, -1, t.server_origin, t.silent, false, false, h.name as target_name, 'KICK' as type_ref FROM controlbans_kicks t LEFT JOIN controlbans_history h ON t.uuid = h.uuid " +
-            "UNION ALL " +
-            "SELECT t.id, t.punishment_id, t.uuid, null, t.reason, t.banned_by_uuid, t.banned_by_name, t.removed_by_uuid, t.removed_by_name, t.removed_by_date, t.time, t.until, t.server_origin, t.silent, false, t.active, h.name as target_name, 'VOICEMUTE' as type_ref FROM controlbans_voicemutes t LEFT JOIN controlbans_history h ON t.uuid = h.uuid " +
-            "ORDER BY time DESC LIMIT ?";
+    private List<Punishment> getRecentFromTable(Connection connection, String table, int limit) throws SQLException {
+        List<Punishment> punishments = new ArrayList<>(Math.max(0, limit));
+        String sql = unionSelect(List.of(table), "") + " ORDER BY t.time DESC LIMIT ?";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setInt(1, limit);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    String typeStr = rs.getString("type_ref");
-                    PunishmentType type = switch (typeStr) {
-                        case "BAN" -> PunishmentType.BAN;
-                        case "MUTE" -> PunishmentType.MUTE;
-                        default -> PunishmentType.valueOf(typeStr);
-                    };
-                    if (typeStr.equals("KICK") || typeStr.equals("WARN") || typeStr.equals("VOICEMUTE")) {
-                        punishments.add(createPunishmentFromResultSet(rs, type));
-                    } else {
-                        punishments.add(parsePunishment(rs, type));
-                    }
+                    punishments.add(parseUnionRow(rs));
                 }
             }
         }
         return punishments;
     }
 
-    public List<Punishment> getPunishmentHistory(Connection connection, UUID uuid, int limit) throws SQLException {
+    public List<Punishment> getPunishmentHistory(Connection connection, UUID uuid, int limit, boolean includeArchive) throws SQLException {
         List<Punishment> punishments = new ArrayList<>();
-        String uuidStr = uuid.toString();
-        String commonCols = "t.id, t.punishment_id, t.uuid, t.ip, t.reason, t.banned_by_uuid, t.banned_by_name, t.removed_by_uuid, t.removed_by_name, t.removed_by_date, t.time, t.until, t.server_origin, t.silent, t.ipban, t.active";
-
-        String sql = 
-            "SELECT " + commonCols + ", h.name as target_name, 'BAN' as type_ref FROM controlbans_bans t LEFT JOIN controlbans_history h ON t.uuid = h.uuid WHERE t.uuid = ? " +
-            "UNION ALL " +
-            "SELECT " + commonCols + ", h.name as target_name, 'MUTE' as type_ref FROM controlbans_mutes t LEFT JOIN controlbans_history h ON t.uuid = h.uuid WHERE t.uuid = ? " +
-            "UNION ALL " +
-            "SELECT " + commonCols + ", h.name as target_name, 'WARN' as type_ref FROM controlbans_warnings t LEFT JOIN controlbans_history h ON t.uuid = h.uuid WHERE t.uuid = ? " +
-            "UNION ALL " +
-            "SELECT t.id, t.punishment_id, t.uuid, t.ip, t.reason, t.banned_by_uuid, t.banned_by_name, null, null, 0, t.time, -1, t.server_origin, t.silent, false, false, h.name as target_name, 'KICK' as type_ref FROM controlbans_kicks t LEFT JOIN controlbans_history h ON t.uuid = h.uuid WHERE t.uuid = ? " +
-            "UNION ALL " +
-            "SELECT t.id, t.punishment_id, t.uuid, null, t.reason, t.banned_by_uuid, t.banned_by_name, t.removed_by_uuid, t.removed_by_name, t.removed_by_date, t.time, t.until, t.server_origin, t.silent, false, t.active, h.name as target_name, 'VOICEMUTE' as type_ref FROM controlbans_voicemutes t LEFT JOIN controlbans_history h ON t.uuid = h.uuid WHERE t.uuid = ? " +
-            "ORDER BY time DESC LIMIT ?";
+        List<String> tables = punishmentTables(includeArchive);
+        String sql = unionSelect(tables, " WHERE t.uuid = ?") + " ORDER BY time DESC LIMIT ?";
 
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, uuidStr);
-            stmt.setString(2, uuidStr);
-            stmt.setString(3, uuidStr);
-            stmt.setString(4, uuidStr);
-            stmt.setString(5, uuidStr);
-            stmt.setInt(6, limit);
+            for (int i = 1; i <= tables.size(); i++) {
+                uuidCodec.bind(stmt, i, uuid);
+            }
+            stmt.setInt(tables.size() + 1, limit);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    String typeStr = rs.getString("type_ref");
-                    PunishmentType type = switch (typeStr) {
-                        case "BAN" -> PunishmentType.BAN;
-                        case "MUTE" -> PunishmentType.MUTE;
-                        default -> PunishmentType.valueOf(typeStr);
-                    };
-                    if (typeStr.equals("KICK") || typeStr.equals("WARN") || typeStr.equals("VOICEMUTE")) {
-                        punishments.add(createPunishmentFromResultSet(rs, type));
-                    } else {
-                        punishments.add(parsePunishment(rs, type));
-                    }
+                    punishments.add(parseUnionRow(rs));
                 }
             }
         }
         return punishments;
     }
 
-    public Optional<Punishment> getPunishmentById(Connection connection, String punishmentId) throws SQLException {
-        String commonCols = "t.id, t.punishment_id, t.uuid, t.ip, t.reason, t.banned_by_uuid, t.banned_by_name, t.removed_by_uuid, t.removed_by_name, t.removed_by_date, t.time, t.until, t.server_origin, t.silent, t.ipban, t.active";
+    public Optional<Punishment> getPunishmentById(Connection connection, String punishmentId, boolean includeArchive) throws SQLException {
+        Optional<String> routed = IdUtil.tableForId(punishmentId);
+        if (routed.isPresent()) {
+            String table = routed.get();
+            return findPunishmentById(connection, punishmentId, includeArchive ? List.of(table, table + ARCHIVE_SUFFIX) : List.of(table));
+        }
+        return findPunishmentById(connection, punishmentId, punishmentTables(includeArchive));
+    }
 
-        String sql =
-                "SELECT " + commonCols + ", h.name as target_name, 'BAN' as type_ref FROM controlbans_bans t LEFT JOIN controlbans_history h ON t.uuid = h.uuid WHERE t.punishment_id = ? " +
-                        "UNION ALL " +
-                        "SELECT " + commonCols + ", h.name as target_name, 'MUTE' as type_ref FROM controlbans_mutes t LEFT JOIN controlbans_history h ON t.uuid = h.uuid WHERE t.punishment_id = ? " +
-                        "UNION ALL " +
-                        "SELECT " + commonCols + ", h.name as target_name, 'WARN' as type_ref FROM controlbans_warnings t LEFT JOIN controlbans_history h ON t.uuid = h.uuid WHERE t.punishment_id = ? " +
-                        "UNION ALL " +
-                        "SELECT t.id, t.punishment_id, t.uuid, t.ip, t.reason, t.banned_by_uuid, t.banned_by_name, null, null, 0, t.time, -1, t.server_origin, t.silent, false, false, h.name as target_name, 'KICK' as type_ref FROM controlbans_kicks t LEFT JOIN controlbans_history h ON t.uuid = h.uuid WHERE t.punishment_id = ? " +
-                        "UNION ALL " +
-                        "SELECT t.id, t.punishment_id, t.uuid, null, t.reason, t.banned_by_uuid, t.banned_by_name, t.removed_by_uuid, t.removed_by_name, t.removed_by_date, t.time, t.until, t.server_origin, t.silent, false, t.active, h.name as target_name, 'VOICEMUTE' as type_ref FROM controlbans_voicemutes t LEFT JOIN controlbans_history h ON t.uuid = h.uuid WHERE t.punishment_id = ?";
+    private Optional<Punishment> findPunishmentById(Connection connection, String punishmentId, List<String> tables) throws SQLException {
+        String sql = unionSelect(tables, " WHERE t.punishment_id = ?");
 
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, punishmentId);
-            stmt.setString(2, punishmentId);
-            stmt.setString(3, punishmentId);
-            stmt.setString(4, punishmentId);
-            stmt.setString(5, punishmentId);
+            for (int i = 1; i <= tables.size(); i++) {
+                stmt.setString(i, punishmentId);
+            }
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
@@ -263,6 +520,49 @@ public class PunishmentDao {
         return Optional.empty();
     }
 
+    private List<String> punishmentTables(boolean includeArchive) {
+        if (!includeArchive) return PUNISHMENT_TABLES;
+        List<String> tables = new ArrayList<>(PUNISHMENT_TABLES);
+        PUNISHMENT_TABLES.forEach(table -> tables.add(table + ARCHIVE_SUFFIX));
+        return tables;
+    }
+
+    private String baseTable(String table) {
+        return table.endsWith(ARCHIVE_SUFFIX) ? table.substring(0, table.length() - ARCHIVE_SUFFIX.length()) : table;
+    }
+
+    private String unionSelect(List<String> tables, String where) {
+        return tables.stream().map(table -> {
+            String base = baseTable(table);
+            String columns = switch (base) {
+                case "controlbans_kicks" -> KICK_COLS;
+                case "controlbans_voicemutes" -> VOICEMUTE_COLS;
+                default -> COMMON_COLS;
+            };
+            String typeRef = switch (base) {
+                case "controlbans_bans" -> "BAN";
+                case "controlbans_mutes" -> "MUTE";
+                case "controlbans_warnings" -> "WARN";
+                case "controlbans_kicks" -> "KICK";
+                default -> "VOICEMUTE";
+            };
+            return "SELECT " + columns + ", pl.name as target_name, '" + typeRef + "' as type_ref FROM " + table + " t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid" + where;
+        }).collect(Collectors.joining(" UNION ALL "));
+    }
+
+    private Punishment parseUnionRow(ResultSet rs) throws SQLException {
+        String typeStr = rs.getString("type_ref");
+        PunishmentType type = switch (typeStr) {
+            case "BAN" -> PunishmentType.BAN;
+            case "MUTE" -> PunishmentType.MUTE;
+            default -> PunishmentType.valueOf(typeStr);
+        };
+        if (typeStr.equals("KICK") || typeStr.equals("WARN") || typeStr.equals("VOICEMUTE")) {
+            return createPunishmentFromResultSet(rs, type);
+        }
+        return parsePunishment(rs, type);
+    }
+
     private Punishment parsePunishment(ResultSet rs, PunishmentType tableType) throws SQLException {
         long until = hasColumn(rs, "until") ? rs.getLong("until") : 0;
         boolean ipban = hasColumn(rs, "ipban") && rs.getBoolean("ipban");
@@ -281,9 +581,9 @@ public class PunishmentDao {
     }
 
     public Optional<Punishment> getActiveBan(Connection connection, UUID uuid) throws SQLException {
-        String sql = "SELECT * FROM controlbans_bans WHERE uuid = ? AND active = TRUE AND (until = -1 OR until > ?) ORDER BY time DESC LIMIT 1";
+        String sql = "SELECT t.*, pl.name AS target_name FROM controlbans_bans t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid WHERE t.uuid = ? AND t.active = TRUE AND (t.until = -1 OR t.until > ?) ORDER BY t.time DESC LIMIT 1";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
+            uuidCodec.bind(stmt, 1, uuid);
             stmt.setLong(2, System.currentTimeMillis());
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) return Optional.of(parsePunishment(rs, PunishmentType.BAN));
@@ -293,9 +593,9 @@ public class PunishmentDao {
     }
 
     public Optional<Punishment> getActiveMute(Connection connection, UUID uuid) throws SQLException {
-        String sql = "SELECT * FROM controlbans_mutes WHERE uuid = ? AND active = TRUE AND (until = -1 OR until > ?) ORDER BY time DESC LIMIT 1";
+        String sql = "SELECT t.*, pl.name AS target_name FROM controlbans_mutes t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid WHERE t.uuid = ? AND t.active = TRUE AND (t.until = -1 OR t.until > ?) ORDER BY t.time DESC LIMIT 1";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
+            uuidCodec.bind(stmt, 1, uuid);
             stmt.setLong(2, System.currentTimeMillis());
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) return Optional.of(parsePunishment(rs, PunishmentType.MUTE));
@@ -305,9 +605,9 @@ public class PunishmentDao {
     }
 
     public Optional<Punishment> getActiveVoiceMute(Connection connection, UUID uuid) throws SQLException {
-        String sql = "SELECT * FROM controlbans_voicemutes WHERE uuid = ? AND active = TRUE AND (until = -1 OR until > ?) ORDER BY time DESC LIMIT 1";
+        String sql = "SELECT t.*, pl.name AS target_name FROM controlbans_voicemutes t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid WHERE t.uuid = ? AND t.active = TRUE AND (t.until = -1 OR t.until > ?) ORDER BY t.time DESC LIMIT 1";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
+            uuidCodec.bind(stmt, 1, uuid);
             stmt.setLong(2, System.currentTimeMillis());
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) return Optional.of(createPunishmentFromResultSet(rs, PunishmentType.VOICEMUTE));
@@ -317,7 +617,7 @@ public class PunishmentDao {
     }
 
     public Optional<Punishment> getActiveIpBan(Connection connection, String ip) throws SQLException {
-        String sql = "SELECT * FROM controlbans_bans WHERE ip = ? AND active = TRUE AND ipban = TRUE AND (until = -1 OR until > ?) ORDER BY time DESC LIMIT 1";
+        String sql = "SELECT t.*, pl.name AS target_name FROM controlbans_bans t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid WHERE t.ip = ? AND t.active = TRUE AND t.ipban = TRUE AND (t.until = -1 OR t.until > ?) ORDER BY t.time DESC LIMIT 1";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, ip);
             stmt.setLong(2, System.currentTimeMillis());
@@ -329,7 +629,7 @@ public class PunishmentDao {
     }
 
     public Optional<Punishment> getActiveIpMute(Connection connection, String ip) throws SQLException {
-        String sql = "SELECT * FROM controlbans_mutes WHERE ip = ? AND active = TRUE AND ipban = TRUE AND (until = -1 OR until > ?) ORDER BY time DESC LIMIT 1";
+        String sql = "SELECT t.*, pl.name AS target_name FROM controlbans_mutes t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid WHERE t.ip = ? AND t.active = TRUE AND t.ipban = TRUE AND (t.until = -1 OR t.until > ?) ORDER BY t.time DESC LIMIT 1";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, ip);
             stmt.setLong(2, System.currentTimeMillis());
@@ -340,6 +640,53 @@ public class PunishmentDao {
         return Optional.empty();
     }
 
+    public LoginState getLoginState(Connection connection, UUID uuid, String ip) throws SQLException {
+        String cols = "t.id, t.punishment_id, t.uuid, t.ip, t.reason, t.banned_by_uuid, t.banned_by_name, t.removed_by_uuid, t.removed_by_name, t.removed_by_date, t.time, t.until, t.server_origin, t.silent, t.ipban, t.active, pl.name AS target_name";
+        String join = " t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid";
+        String live = " AND t.active = TRUE AND (t.until = -1 OR t.until > ?)";
+        String sql =
+                "SELECT " + cols + ", 'BAN' AS slot FROM controlbans_bans" + join + " WHERE t.uuid = ?" + live +
+                " UNION ALL " +
+                "SELECT " + cols + ", 'IPBAN' AS slot FROM controlbans_bans" + join + " WHERE t.ip = ? AND t.ipban = TRUE" + live +
+                " UNION ALL " +
+                "SELECT " + cols + ", 'MUTE' AS slot FROM controlbans_mutes" + join + " WHERE t.uuid = ?" + live +
+                " UNION ALL " +
+                "SELECT " + cols + ", 'IPMUTE' AS slot FROM controlbans_mutes" + join + " WHERE t.ip = ? AND t.ipban = TRUE" + live +
+                " ORDER BY time DESC";
+
+        Map<String, Punishment> slots = new HashMap<>();
+        long now = System.currentTimeMillis();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            uuidCodec.bind(stmt, 1, uuid);
+            stmt.setLong(2, now);
+            stmt.setString(3, ip);
+            stmt.setLong(4, now);
+            uuidCodec.bind(stmt, 5, uuid);
+            stmt.setLong(6, now);
+            stmt.setString(7, ip);
+            stmt.setLong(8, now);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String slot = rs.getString("slot");
+                    if (slots.containsKey(slot)) continue;
+                    Punishment punishment = switch (slot) {
+                        case "BAN" -> parsePunishment(rs, PunishmentType.BAN);
+                        case "IPBAN" -> createPunishmentFromResultSet(rs, PunishmentType.IPBAN);
+                        case "MUTE" -> parsePunishment(rs, PunishmentType.MUTE);
+                        default -> parsePunishment(rs, PunishmentType.IPMUTE);
+                    };
+                    slots.put(slot, punishment);
+                }
+            }
+        }
+        return new LoginState(
+                Optional.ofNullable(slots.get("BAN")),
+                Optional.ofNullable(slots.get("IPBAN")),
+                Optional.ofNullable(slots.get("MUTE")),
+                Optional.ofNullable(slots.get("IPMUTE"))
+        );
+    }
+
     public void removeBan(Connection connection, UUID uuid, UUID removedBy, String removedByName) throws SQLException {
         updateActiveState(connection, "controlbans_bans", uuid, removedBy, removedByName);
     }
@@ -351,53 +698,54 @@ public class PunishmentDao {
     }
 
     public void removeIpBan(Connection connection, String ip, UUID removedBy, String removedByName) throws SQLException {
-        String sql = "UPDATE controlbans_bans SET active = FALSE, removed_by_uuid = ?, removed_by_name = ?, removed_by_date = ? WHERE ip = ? AND active = TRUE AND ipban = TRUE";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, removedBy != null ? removedBy.toString() : null);
-            stmt.setString(2, removedByName);
-            stmt.setLong(3, System.currentTimeMillis());
-            stmt.setString(4, ip);
-            stmt.executeUpdate();
-        }
+        removeIpPunishment(connection, "controlbans_bans", ip, removedBy, removedByName);
     }
 
     public void removeIpMute(Connection connection, String ip, UUID removedBy, String removedByName) throws SQLException {
-        String sql = "UPDATE controlbans_mutes SET active = FALSE, removed_by_uuid = ?, removed_by_name = ?, removed_by_date = ? WHERE ip = ? AND active = TRUE AND ipban = TRUE";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, removedBy != null ? removedBy.toString() : null);
-            stmt.setString(2, removedByName);
-            stmt.setLong(3, System.currentTimeMillis());
-            stmt.setString(4, ip);
-            stmt.executeUpdate();
-        }
+        removeIpPunishment(connection, "controlbans_mutes", ip, removedBy, removedByName);
+    }
+
+    private void removeIpPunishment(Connection connection, String table, String ip, UUID removedBy, String removedByName) throws SQLException {
+        String sql = "UPDATE " + table + " SET active = FALSE, removed_by_uuid = ?, removed_by_name = ?, removed_by_date = ? WHERE ip = ? AND active = TRUE AND ipban = TRUE";
+        withChanges(connection, "REMOVE", List.of(UUID.nameUUIDFromBytes(ip.getBytes())), () -> {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                uuidCodec.bind(stmt, 1, removedBy);
+                stmt.setString(2, removedByName);
+                stmt.setLong(3, System.currentTimeMillis());
+                stmt.setString(4, ip);
+                stmt.executeUpdate();
+            }
+        });
     }
 
     private void updateActiveState(Connection connection, String table, UUID uuid, UUID removedBy, String removedByName) throws SQLException {
         String sql = "UPDATE " + table + " SET active = FALSE, removed_by_uuid = ?, removed_by_name = ?, removed_by_date = ? WHERE uuid = ? AND active = TRUE";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, removedBy != null ? removedBy.toString() : null);
-            stmt.setString(2, removedByName);
-            stmt.setLong(3, System.currentTimeMillis());
-            stmt.setString(4, uuid.toString());
-            stmt.executeUpdate();
-        }
+        withChanges(connection, "REMOVE", List.of(uuid), () -> {
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                uuidCodec.bind(stmt, 1, removedBy);
+                stmt.setString(2, removedByName);
+                stmt.setLong(3, System.currentTimeMillis());
+                uuidCodec.bind(stmt, 4, uuid);
+                stmt.executeUpdate();
+            }
+        });
     }
 
     public String getLastIpForUuid(Connection connection, UUID uuid) throws SQLException {
-        String sql = "SELECT ip FROM controlbans_history WHERE uuid = ? AND ip IS NOT NULL ORDER BY date DESC LIMIT 1";
+        String sql = "SELECT last_ip FROM controlbans_players WHERE uuid = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
+            uuidCodec.bind(stmt, 1, uuid);
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) return rs.getString("ip");
+                if (rs.next()) return rs.getString("last_ip");
             }
         }
         return null;
     }
 
     public String getLastKnownName(Connection connection, UUID uuid) throws SQLException {
-        String sql = "SELECT name FROM controlbans_history WHERE uuid = ? ORDER BY date DESC LIMIT 1";
+        String sql = "SELECT name FROM controlbans_players WHERE uuid = ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
+            uuidCodec.bind(stmt, 1, uuid);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) return rs.getString("name");
             }
@@ -410,7 +758,7 @@ public class PunishmentDao {
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, name);
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) return UUID.fromString(rs.getString("uuid"));
+                if (rs.next()) return uuidCodec.read(rs, "uuid");
             }
         }
         return null;
@@ -423,32 +771,42 @@ public class PunishmentDao {
             stmt.addBatch("DELETE FROM controlbans_warnings");
             stmt.addBatch("DELETE FROM controlbans_kicks");
             stmt.addBatch("DELETE FROM controlbans_history");
+            stmt.addBatch("DELETE FROM controlbans_players");
             stmt.addBatch("DELETE FROM controlbans_voicemutes");
+            for (String table : PUNISHMENT_TABLES) {
+                stmt.addBatch("DELETE FROM " + table + ARCHIVE_SUFFIX);
+            }
             stmt.addBatch("DELETE FROM controlbans_appeals");
+            stmt.addBatch("DELETE FROM controlbans_settings WHERE setting_key LIKE '" + WATERMARK_SETTING_PREFIX + "%'");
+            stmt.addBatch("DELETE FROM controlbans_settings WHERE setting_key LIKE '" + JANITOR_CURSOR_PREFIX + "%'");
             stmt.executeBatch();
         }
+        recordChanges(connection, "CLEAR_ALL", Collections.singletonList(null));
     }
 
     public void clearPlayerData(Connection connection, UUID uuid) throws SQLException {
-        String uuidStr = uuid.toString();
-        String[] tables = { "controlbans_bans", "controlbans_mutes", "controlbans_warnings", "controlbans_kicks", "controlbans_voicemutes", "controlbans_history" };
-        for (String table : tables) {
-            try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM " + table + " WHERE uuid = ?")) {
-                stmt.setString(1, uuidStr);
+        List<String> tables = new ArrayList<>(punishmentTables(true));
+        tables.add("controlbans_history");
+        tables.add("controlbans_players");
+        withChanges(connection, "CLEAR", List.of(uuid), () -> {
+            for (String table : tables) {
+                try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM " + table + " WHERE uuid = ?")) {
+                    uuidCodec.bind(stmt, 1, uuid);
+                    stmt.executeUpdate();
+                }
+            }
+            try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM controlbans_appeals WHERE target_uuid = ?")) {
+                uuidCodec.bind(stmt, 1, uuid);
                 stmt.executeUpdate();
             }
-        }
-        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM controlbans_appeals WHERE target_uuid = ?")) {
-            stmt.setString(1, uuidStr);
-            stmt.executeUpdate();
-        }
+        });
     }
 
     public Set<String> getIpsForUuid(Connection connection, UUID uuid) throws SQLException {
         Set<String> ips = new HashSet<>();
         String sql = "SELECT DISTINCT ip FROM controlbans_history WHERE uuid = ? AND ip IS NOT NULL";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
+            uuidCodec.bind(stmt, 1, uuid);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     ips.add(rs.getString("ip"));
@@ -465,7 +823,7 @@ public class PunishmentDao {
             stmt.setString(1, ip);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    uuids.add(UUID.fromString(rs.getString("uuid")));
+                    uuids.add(uuidCodec.read(rs, "uuid"));
                 }
             }
         }
@@ -486,7 +844,7 @@ public class PunishmentDao {
     public void addAppeal(Connection connection, String punishmentId, UUID uuid, String message, long timestamp) throws SQLException {
         String sql = "INSERT INTO controlbans_appeals (target_uuid, punishment_id, message, created_at) VALUES (?, ?, ?, ?)";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
+            uuidCodec.bind(stmt, 1, uuid);
             stmt.setString(2, punishmentId);
             stmt.setString(3, message);
             stmt.setLong(4, timestamp);
@@ -497,7 +855,7 @@ public class PunishmentDao {
     public long getLastAppealTime(Connection connection, UUID uuid) throws SQLException {
         String sql = "SELECT created_at FROM controlbans_appeals WHERE target_uuid = ? ORDER BY created_at DESC LIMIT 1";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
+            uuidCodec.bind(stmt, 1, uuid);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) return rs.getLong("created_at");
             }
@@ -508,7 +866,7 @@ public class PunishmentDao {
     public int getAppealCount(Connection connection, UUID uuid, long sinceTimestamp) throws SQLException {
         String sql = "SELECT COUNT(*) FROM controlbans_appeals WHERE target_uuid = ? AND created_at >= ?";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, uuid.toString());
+            uuidCodec.bind(stmt, 1, uuid);
             stmt.setLong(2, sinceTimestamp);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) return rs.getInt(1);
@@ -518,9 +876,9 @@ public class PunishmentDao {
     }
 
     private Punishment createPunishmentFromResultSet(ResultSet rs, PunishmentType type) throws SQLException {
-        String staffUuidStr = rs.getString("banned_by_uuid");
-        String uuidStr = rs.getString("uuid");
-        UUID targetUuid = uuidStr != null ? UUID.fromString(uuidStr) : UUID.nameUUIDFromBytes("unknown".getBytes());
+        UUID staffUuid = uuidCodec.read(rs, "banned_by_uuid");
+        UUID storedUuid = uuidCodec.read(rs, "uuid");
+        UUID targetUuid = storedUuid != null ? storedUuid : UUID.nameUUIDFromBytes("unknown".getBytes());
 
         Punishment.Builder builder = Punishment.builder()
                 .id(rs.getInt("id"))
@@ -528,7 +886,7 @@ public class PunishmentDao {
                 .type(type)
                 .targetUuid(targetUuid)
                 .reason(rs.getString("reason"))
-                .staffUuid(staffUuidStr != null ? UUID.fromString(staffUuidStr) : null)
+                .staffUuid(staffUuid)
                 .staffName(rs.getString("banned_by_name"))
                 .createdTime(rs.getLong("time"))
                 .serverOrigin(rs.getString("server_origin"))
@@ -540,6 +898,11 @@ public class PunishmentDao {
         if (hasColumn(rs, "ip")) builder.targetIp(rs.getString("ip"));
         if (hasColumn(rs, "active")) builder.active(rs.getBoolean("active"));
         if (hasColumn(rs, "ipban")) builder.ipBan(rs.getBoolean("ipban"));
+        if (hasColumn(rs, "removed_by_date")) {
+            builder.removedByUuid(uuidCodec.read(rs, "removed_by_uuid"))
+                    .removedByName(rs.getString("removed_by_name"))
+                    .removedByDate(rs.getLong("removed_by_date"));
+        }
         long until = hasColumn(rs, "until") ? rs.getLong("until") : -1;
         builder.expiryTime(until);
         return builder.build();
@@ -551,7 +914,7 @@ public class PunishmentDao {
 
     public List<Punishment> getAllPunishments(Connection connection) throws SQLException {
         List<Punishment> punishments = new ArrayList<>();
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT t.*, h.name as target_name FROM controlbans_bans t LEFT JOIN controlbans_history h ON t.uuid = h.uuid ORDER BY t.time DESC")) {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT t.*, pl.name as target_name FROM controlbans_bans t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid ORDER BY t.time DESC")) {
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     long until = rs.getLong("until");
@@ -561,7 +924,7 @@ public class PunishmentDao {
                 }
             }
         }
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT t.*, h.name as target_name FROM controlbans_mutes t LEFT JOIN controlbans_history h ON t.uuid = h.uuid ORDER BY t.time DESC")) {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT t.*, pl.name as target_name FROM controlbans_mutes t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid ORDER BY t.time DESC")) {
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     long until = rs.getLong("until");
@@ -570,17 +933,17 @@ public class PunishmentDao {
                 }
             }
         }
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT t.*, h.name as target_name FROM controlbans_warnings t LEFT JOIN controlbans_history h ON t.uuid = h.uuid ORDER BY t.time DESC")) {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT t.*, pl.name as target_name FROM controlbans_warnings t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid ORDER BY t.time DESC")) {
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) punishments.add(createPunishmentFromResultSet(rs, PunishmentType.WARN));
             }
         }
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT t.*, h.name as target_name FROM controlbans_kicks t LEFT JOIN controlbans_history h ON t.uuid = h.uuid ORDER BY t.time DESC")) {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT t.*, pl.name as target_name FROM controlbans_kicks t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid ORDER BY t.time DESC")) {
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) punishments.add(createPunishmentFromResultSet(rs, PunishmentType.KICK));
             }
         }
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT t.*, h.name as target_name FROM controlbans_voicemutes t LEFT JOIN controlbans_history h ON t.uuid = h.uuid ORDER BY t.time DESC")) {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT t.*, pl.name as target_name FROM controlbans_voicemutes t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid ORDER BY t.time DESC")) {
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) punishments.add(createPunishmentFromResultSet(rs, PunishmentType.VOICEMUTE));
             }
@@ -588,11 +951,382 @@ public class PunishmentDao {
         return punishments;
     }
 
+    public long streamPunishments(Connection connection, PunishmentType type, Consumer<Punishment> consumer) throws SQLException {
+        return inStreamingTransaction(connection, () -> {
+            long count = 0;
+            for (String table : punishmentTables(true)) {
+                if (type != null && !type.getTableName().equals(baseTable(table))) continue;
+                String predicate = type != null ? typePredicate(type) : "";
+                String sql = "SELECT t.*, pl.name AS target_name FROM " + table + " t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid"
+                        + (predicate.isEmpty() ? "" : " WHERE " + predicate) + " ORDER BY t.id";
+                try (PreparedStatement stmt = prepareStreaming(connection, sql);
+                     ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(parseStreamRow(rs, baseTable(table)));
+                        count++;
+                    }
+                }
+            }
+            return count;
+        });
+    }
+
+    public Map<String, ExportWatermark> streamChangedPunishments(Connection connection, Map<String, ExportWatermark> since, Consumer<Punishment> consumer) throws SQLException {
+        return inStreamingTransaction(connection, () -> {
+            Map<String, ExportWatermark> marks = new LinkedHashMap<>();
+            for (String table : PUNISHMENT_TABLES) {
+                ExportWatermark mark = since.getOrDefault(table, ExportWatermark.NONE);
+                long scanFromId = mark.lastId() != null ? Math.max(0L, Long.parseLong(mark.lastId()) - ExportWatermark.REWIND_IDS) : 0L;
+                long scanFromChange = Math.max(0L, mark.lastChange() - ExportWatermark.REWIND_MILLIS);
+                long[] last = { mark.lastId() != null ? Long.parseLong(mark.lastId()) : 0L, mark.lastChange() };
+                boolean removable = !table.equals("controlbans_kicks");
+                for (String source : List.of(table, table + ARCHIVE_SUFFIX)) {
+                    String select = "SELECT t.*, pl.name AS target_name FROM " + source + " t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid WHERE ";
+                    streamWatermarkRows(connection, select + "t.id > ? ORDER BY t.id", table, removable, last, consumer, scanFromId);
+                    if (removable && mark.lastId() != null) {
+                        streamWatermarkRows(connection, select + "t.removed_by_date > ? AND t.id <= ?", table, true, last, consumer, scanFromChange, scanFromId);
+                    }
+                }
+                marks.put(table, new ExportWatermark(String.valueOf(last[0]), last[1]));
+            }
+            return marks;
+        });
+    }
+
+    private void streamWatermarkRows(Connection connection, String sql, String table, boolean removable, long[] last,
+                                     Consumer<Punishment> consumer, long... params) throws SQLException {
+        try (PreparedStatement stmt = prepareStreaming(connection, sql)) {
+            for (int i = 0; i < params.length; i++) {
+                stmt.setLong(i + 1, params[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    last[0] = Math.max(last[0], rs.getLong("id"));
+                    if (removable) {
+                        last[1] = Math.max(last[1], rs.getLong("removed_by_date"));
+                    }
+                    consumer.accept(parseStreamRow(rs, table));
+                }
+            }
+        }
+    }
+
+    private PreparedStatement prepareStreaming(Connection connection, String sql) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize("mysql".equals(databaseType) || "mariadb".equals(databaseType) ? Integer.MIN_VALUE : STREAM_FETCH_SIZE);
+        return stmt;
+    }
+
+    private <T> T inStreamingTransaction(Connection connection, StreamingWork<T> work) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        if ("postgresql".equals(databaseType)) {
+            connection.setAutoCommit(false);
+        }
+        try {
+            return work.run();
+        } finally {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    public Map<String, ExportWatermark> getExportWatermarks(Connection connection) throws SQLException {
+        Map<String, ExportWatermark> marks = new LinkedHashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT setting_key, setting_value FROM controlbans_settings WHERE setting_key LIKE ?")) {
+            stmt.setString(1, WATERMARK_SETTING_PREFIX + "%");
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    marks.put(rs.getString("setting_key").substring(WATERMARK_SETTING_PREFIX.length()), ExportWatermark.decode(rs.getString("setting_value")));
+                }
+            }
+        }
+        return marks;
+    }
+
+    public void saveExportWatermarks(Connection connection, Map<String, ExportWatermark> marks) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(settingUpsertSql())) {
+            for (Map.Entry<String, ExportWatermark> entry : marks.entrySet()) {
+                stmt.setString(1, WATERMARK_SETTING_PREFIX + entry.getKey());
+                stmt.setString(2, entry.getValue().encode());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private String settingUpsertSql() {
+        return usesMySqlUpsert()
+                ? "INSERT INTO controlbans_settings (setting_key, setting_value) VALUES (?, ?) ON DUPLICATE KEY UPDATE setting_value = VALUES(setting_value)"
+                : "INSERT INTO controlbans_settings (setting_key, setting_value) VALUES (?, ?) ON CONFLICT (setting_key) DO UPDATE SET setting_value = excluded.setting_value";
+    }
+
+    public String getJanitorCursor(Connection connection, String table) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT setting_value FROM controlbans_settings WHERE setting_key = ?")) {
+            stmt.setString(1, JANITOR_CURSOR_PREFIX + table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    public void saveJanitorCursor(Connection connection, String table, String cursor) throws SQLException {
+        if (cursor == null) {
+            try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM controlbans_settings WHERE setting_key = ?")) {
+                stmt.setString(1, JANITOR_CURSOR_PREFIX + table);
+                stmt.executeUpdate();
+            }
+            return;
+        }
+        try (PreparedStatement stmt = connection.prepareStatement(settingUpsertSql())) {
+            stmt.setString(1, JANITOR_CURSOR_PREFIX + table);
+            stmt.setString(2, cursor);
+            stmt.executeUpdate();
+        }
+    }
+
+    public List<Map<String, Object>> getJanitorChunk(Connection connection, String table, String predicate, Object afterKey, int limit) throws SQLException {
+        String sql = "SELECT * FROM " + table + " WHERE (" + predicate + ")" + (afterKey != null ? " AND id > ?" : "") + " ORDER BY id LIMIT ?";
+        List<Map<String, Object>> rows = new ArrayList<>(limit);
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (afterKey != null) {
+                stmt.setObject(index++, afterKey);
+            }
+            stmt.setInt(index, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                java.sql.ResultSetMetaData meta = rs.getMetaData();
+                while (rs.next()) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int i = 1; i <= meta.getColumnCount(); i++) {
+                        Object value = rs.getObject(i);
+                        if (value instanceof byte[] bytes && bytes.length == 16) {
+                            value = UuidCodec.fromBytes(bytes).toString();
+                        } else if (value instanceof UUID uuid) {
+                            value = uuid.toString();
+                        }
+                        row.put(meta.getColumnLabel(i).toLowerCase(Locale.ROOT), value);
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+
+    public int deleteJanitorChunk(Connection connection, String table, String predicate, List<Object> keys) throws SQLException {
+        String placeholders = String.join(", ", Collections.nCopies(keys.size(), "?"));
+        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM " + table + " WHERE id IN (" + placeholders + ") AND (" + predicate + ")")) {
+            for (int i = 0; i < keys.size(); i++) {
+                stmt.setObject(i + 1, keys.get(i));
+            }
+            return stmt.executeUpdate();
+        }
+    }
+
+    public List<Object> getArchivableKeys(Connection connection, String table, String predicate, Object afterKey, int limit) throws SQLException {
+        String sql = "SELECT id FROM " + table + " WHERE (" + predicate + ")" + (afterKey != null ? " AND id > ?" : "") + " ORDER BY id LIMIT ?";
+        List<Object> keys = new ArrayList<>(limit);
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            if (afterKey != null) {
+                stmt.setObject(index++, afterKey);
+            }
+            stmt.setInt(index, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    keys.add(rs.getLong(1));
+                }
+            }
+        }
+        return keys;
+    }
+
+    public int moveToArchive(Connection connection, String table, String predicate, List<Object> keys) throws SQLException {
+        String columns = ARCHIVE_COLUMNS.get(table);
+        if (columns == null) {
+            throw new IllegalArgumentException("Table has no archive tier: " + table);
+        }
+        String keyFilter = " WHERE id IN (" + String.join(", ", Collections.nCopies(keys.size(), "?")) + ") AND (" + predicate + ")";
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement copy = connection.prepareStatement("INSERT INTO " + table + ARCHIVE_SUFFIX + " (" + columns + ") SELECT " + columns + " FROM " + table + keyFilter);
+             PreparedStatement delete = connection.prepareStatement("DELETE FROM " + table + keyFilter)) {
+            for (int i = 0; i < keys.size(); i++) {
+                copy.setObject(i + 1, keys.get(i));
+                delete.setObject(i + 1, keys.get(i));
+            }
+            copy.executeUpdate();
+            int moved = delete.executeUpdate();
+            connection.commit();
+            return moved;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private String typePredicate(PunishmentType type) {
+        String permanent = "t.until IN (-1, 0)";
+        String temporary = "t.until NOT IN (-1, 0)";
+        return switch (type) {
+            case BAN, MUTE -> "t.ipban = FALSE AND " + permanent;
+            case TEMPBAN, TEMPMUTE -> "t.ipban = FALSE AND " + temporary;
+            case IPBAN, IPMUTE -> "t.ipban = TRUE AND " + permanent;
+            case TEMPIPBAN, TEMPIPMUTE -> "t.ipban = TRUE AND " + temporary;
+            case VOICEMUTE -> permanent;
+            case TEMPVOICEMUTE -> temporary;
+            case WARN, KICK -> "";
+        };
+    }
+
+    private Punishment parseStreamRow(ResultSet rs, String table) throws SQLException {
+        return switch (table) {
+            case "controlbans_bans" -> parsePunishment(rs, PunishmentType.BAN);
+            case "controlbans_mutes" -> parsePunishment(rs, PunishmentType.MUTE);
+            case "controlbans_warnings" -> createPunishmentFromResultSet(rs, PunishmentType.WARN);
+            case "controlbans_kicks" -> createPunishmentFromResultSet(rs, PunishmentType.KICK);
+            case "controlbans_voicemutes" -> {
+                long until = rs.getLong("until");
+                yield createPunishmentFromResultSet(rs, until != -1 && until != 0 ? PunishmentType.TEMPVOICEMUTE : PunishmentType.VOICEMUTE);
+            }
+            default -> throw new IllegalArgumentException("Unknown punishment table: " + table);
+        };
+    }
+
+    public List<Punishment> getActivePunishments(Connection connection) throws SQLException {
+        List<Punishment> punishments = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM controlbans_bans WHERE active = TRUE AND (until = -1 OR until > ?)")) {
+            stmt.setLong(1, now);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) punishments.add(parsePunishment(rs, PunishmentType.BAN));
+            }
+        }
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM controlbans_mutes WHERE active = TRUE AND (until = -1 OR until > ?)")) {
+            stmt.setLong(1, now);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) punishments.add(parsePunishment(rs, PunishmentType.MUTE));
+            }
+        }
+        return punishments;
+    }
+
+    public List<Punishment> getActiveBans(Connection connection, PageCursor cursor, int limit) throws SQLException {
+        return getActivePage(connection, "controlbans_bans", PunishmentType.BAN, cursor, limit);
+    }
+
+    public List<Punishment> getActiveMutes(Connection connection, PageCursor cursor, int limit) throws SQLException {
+        return getActivePage(connection, "controlbans_mutes", PunishmentType.MUTE, cursor, limit);
+    }
+
+    public int countActiveBans(Connection connection) throws SQLException {
+        return countActive(connection, "controlbans_bans");
+    }
+
+    public int countActiveMutes(Connection connection) throws SQLException {
+        return countActive(connection, "controlbans_mutes");
+    }
+
+    private List<Punishment> getActivePage(Connection connection, String table, PunishmentType type, PageCursor cursor, int limit) throws SQLException {
+        List<Punishment> punishments = new ArrayList<>();
+        String sql = "SELECT t.*, pl.name AS target_name FROM " + table + " t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid " +
+                "WHERE t.active = TRUE AND (t.until = -1 OR t.until > ?)" + keysetClause(cursor) +
+                " ORDER BY t.time DESC, t.punishment_id DESC LIMIT ?";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            stmt.setLong(index++, System.currentTimeMillis());
+            index = bindKeyset(stmt, index, cursor);
+            stmt.setInt(index, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) punishments.add(parsePunishment(rs, type));
+            }
+        }
+        return punishments;
+    }
+
+    private int countActive(Connection connection, String table) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM " + table + " WHERE active = TRUE AND (until = -1 OR until > ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, System.currentTimeMillis());
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        }
+        return 0;
+    }
+
+    public List<Punishment> getPunishmentsByStaff(Connection connection, String staffName, PageCursor cursor, int limit) throws SQLException {
+        List<Punishment> punishments = new ArrayList<>();
+        String commonCols = "t.id, t.punishment_id, t.uuid, t.ip, t.reason, t.banned_by_uuid, t.banned_by_name, t.removed_by_uuid, t.removed_by_name, t.removed_by_date, t.time, t.until, t.server_origin, t.silent, t.ipban, t.active";
+        String where = " WHERE " + staffNameColumn("t.") + " = ?" + keysetClause(cursor) + " ";
+        String[] branches = {
+                "SELECT " + commonCols + ", pl.name as target_name, 'BAN' as type_ref FROM controlbans_bans t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid",
+                "SELECT " + commonCols + ", pl.name as target_name, 'MUTE' as type_ref FROM controlbans_mutes t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid",
+                "SELECT " + commonCols + ", pl.name as target_name, 'WARN' as type_ref FROM controlbans_warnings t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid",
+                "SELECT t.id, t.punishment_id, t.uuid, t.ip, t.reason, t.banned_by_uuid, t.banned_by_name, null, null, 0, t.time, -1, t.server_origin, t.silent, false, false, pl.name as target_name, 'KICK' as type_ref FROM controlbans_kicks t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid",
+                "SELECT t.id, t.punishment_id, t.uuid, null, t.reason, t.banned_by_uuid, t.banned_by_name, t.removed_by_uuid, t.removed_by_name, t.removed_by_date, t.time, t.until, t.server_origin, t.silent, false, t.active, pl.name as target_name, 'VOICEMUTE' as type_ref FROM controlbans_voicemutes t LEFT JOIN controlbans_players pl ON t.uuid = pl.uuid"
+        };
+        String sql = String.join(where + "UNION ALL ", branches) + where + "ORDER BY time DESC, punishment_id DESC LIMIT ?";
+
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (int i = 0; i < branches.length; i++) {
+                stmt.setString(index++, staffName.toLowerCase(Locale.ROOT));
+                index = bindKeyset(stmt, index, cursor);
+            }
+            stmt.setInt(index, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    punishments.add(parseUnionRow(rs));
+                }
+            }
+        }
+        return punishments;
+    }
+
+    public int countPunishmentsByStaff(Connection connection, String staffName) throws SQLException {
+        int count = 0;
+        String[] tables = { "controlbans_bans", "controlbans_mutes", "controlbans_warnings", "controlbans_kicks", "controlbans_voicemutes" };
+        for (String table : tables) {
+            try (PreparedStatement stmt = connection.prepareStatement("SELECT COUNT(*) FROM " + table + " WHERE " + staffNameColumn("") + " = ?")) {
+                stmt.setString(1, staffName.toLowerCase(Locale.ROOT));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) count += rs.getInt(1);
+                }
+            }
+        }
+        return count;
+    }
+
+    private String staffNameColumn(String alias) {
+        return switch (databaseType) {
+            case "postgresql", "sqlite" -> "LOWER(" + alias + "banned_by_name)";
+            default -> alias + "banned_by_name_lower";
+        };
+    }
+
+    private String keysetClause(PageCursor cursor) {
+        return cursor != null ? " AND (t.time < ? OR (t.time = ? AND t.punishment_id < ?))" : "";
+    }
+
+    private int bindKeyset(PreparedStatement stmt, int index, PageCursor cursor) throws SQLException {
+        if (cursor == null) return index;
+        stmt.setLong(index++, cursor.time());
+        stmt.setLong(index++, cursor.time());
+        stmt.setString(index++, cursor.punishmentId());
+        return index;
+    }
+
     public void insertReport(Connection connection, String id, UUID reporterUuid, String reporterName, String targetName, String reason, long timestamp, String status) throws SQLException {
         String sql = "INSERT INTO controlbans_reports (id, reporter_uuid, reporter_name, target_name, reason, time, status) VALUES (?, ?, ?, ?, ?, ?, ?)";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setString(1, id);
-            stmt.setString(2, reporterUuid.toString());
+            uuidCodec.bind(stmt, 2, reporterUuid);
             stmt.setString(3, reporterName);
             stmt.setString(4, targetName);
             stmt.setString(5, reason);
@@ -610,7 +1344,7 @@ public class PunishmentDao {
                 while (rs.next()) {
                     reports.add(new ret.tawny.controlbans.services.ReportService.Report(
                             rs.getString("id"),
-                            UUID.fromString(rs.getString("reporter_uuid")),
+                            uuidCodec.read(rs, "reporter_uuid"),
                             rs.getString("reporter_name"),
                             rs.getString("target_name"),
                             rs.getString("reason"),
@@ -627,12 +1361,12 @@ public class PunishmentDao {
         List<ret.tawny.controlbans.services.ReportService.Report> reports = new ArrayList<>();
         String sql = "SELECT * FROM controlbans_reports WHERE reporter_uuid = ? ORDER BY time DESC";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, reporterUuid.toString());
+            uuidCodec.bind(stmt, 1, reporterUuid);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     reports.add(new ret.tawny.controlbans.services.ReportService.Report(
                             rs.getString("id"),
-                            UUID.fromString(rs.getString("reporter_uuid")),
+                            uuidCodec.read(rs, "reporter_uuid"),
                             rs.getString("reporter_name"),
                             rs.getString("target_name"),
                             rs.getString("reason"),
@@ -657,7 +1391,7 @@ public class PunishmentDao {
     public void addNote(Connection connection, UUID targetUuid, String staffName, String noteText, long timestamp) throws SQLException {
         String sql = "INSERT INTO controlbans_notes (uuid, staff_name, note_text, time) VALUES (?, ?, ?, ?)";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, targetUuid.toString());
+            uuidCodec.bind(stmt, 1, targetUuid);
             stmt.setString(2, staffName);
             stmt.setString(3, noteText);
             stmt.setLong(4, timestamp);
@@ -668,7 +1402,7 @@ public class PunishmentDao {
     public boolean removeNote(Connection connection, UUID targetUuid, int index) throws SQLException {
         String findSql = "SELECT id FROM controlbans_notes WHERE uuid = ? ORDER BY time ASC LIMIT 1 OFFSET ?";
         try (PreparedStatement stmt = connection.prepareStatement(findSql)) {
-            stmt.setString(1, targetUuid.toString());
+            uuidCodec.bind(stmt, 1, targetUuid);
             stmt.setInt(2, index - 1);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
@@ -688,7 +1422,7 @@ public class PunishmentDao {
         List<ret.tawny.controlbans.services.NoteService.PlayerNote> notes = new ArrayList<>();
         String sql = "SELECT * FROM controlbans_notes WHERE uuid = ? ORDER BY time ASC";
         try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, targetUuid.toString());
+            uuidCodec.bind(stmt, 1, targetUuid);
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
                     notes.add(new ret.tawny.controlbans.services.NoteService.PlayerNote(
@@ -701,4 +1435,14 @@ public class PunishmentDao {
         }
         return notes;
     }
-}
\ No newline at end of file
+
+    @FunctionalInterface
+    private interface StreamingWork<T> {
+        T run() throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+}
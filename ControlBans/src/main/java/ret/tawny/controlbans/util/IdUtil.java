@@ -1,19 +1,50 @@
 package ret.tawny.controlbans.util;
 
+import ret.tawny.controlbans.model.PunishmentType;
+
 import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Random;
+import java.util.regex.Pattern;
 
 public final class IdUtil {
 
     private static final String ALPHANUMERIC = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-    private static final int ID_LENGTH = 8;
+    private static final int RANDOM_LENGTH = 8;
+    private static final char SEPARATOR = '-';
     private static final Random RANDOM = new SecureRandom();
+    private static final Pattern LEGACY_ID = Pattern.compile("^[a-zA-Z0-9]{6,8}$");
+    private static final Pattern ROUTED_ID = Pattern.compile("^[a-zA-Z]-[a-zA-Z0-9]{6,8}$");
+    private static final Map<String, Character> TABLE_PREFIXES = Map.of(
+            "controlbans_bans", 'B',
+            "controlbans_mutes", 'M',
+            "controlbans_warnings", 'W',
+            "controlbans_kicks", 'K',
+            "controlbans_voicemutes", 'V'
+    );
 
-    public static String generatePunishmentId() {
-        StringBuilder sb = new StringBuilder(ID_LENGTH);
-        for (int i = 0; i < ID_LENGTH; i++) {
+    public static String generatePunishmentId(PunishmentType type) {
+        StringBuilder sb = new StringBuilder(RANDOM_LENGTH + 2);
+        sb.append(TABLE_PREFIXES.get(type.getTableName())).append(SEPARATOR);
+        for (int i = 0; i < RANDOM_LENGTH; i++) {
             sb.append(ALPHANUMERIC.charAt(RANDOM.nextInt(ALPHANUMERIC.length())));
         }
         return sb.toString();
     }
-}
\ No newline at end of file
+
+    public static Optional<String> tableForId(String punishmentId) {
+        if (punishmentId == null || !ROUTED_ID.matcher(punishmentId).matches()) {
+            return Optional.empty();
+        }
+        char prefix = Character.toUpperCase(punishmentId.charAt(0));
+        return TABLE_PREFIXES.entrySet().stream()
+                .filter(entry -> entry.getValue() == prefix)
+                .map(Map.Entry::getKey)
+                .findFirst();
+    }
+
+    public static boolean isPunishmentId(String input) {
+        return input != null && (ROUTED_ID.matcher(input).matches() || LEGACY_ID.matcher(input).matches());
+    }
+}
@@ -0,0 +1,34 @@
+package ret.tawny.controlbans.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public final class SortedMerge {
+
+    private SortedMerge() {}
+
+    public static <T> List<T> topN(List<? extends Iterator<? extends T>> sources, Comparator<? super T> order, int limit) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> order.compare(a.value(), b.value()));
+        for (Iterator<? extends T> source : sources) {
+            if (source.hasNext()) {
+                heads.add(new Head<>(source.next(), source));
+            }
+        }
+
+        List<T> merged = new ArrayList<>(limit > 0 ? limit : 16);
+        while (!heads.isEmpty() && (limit <= 0 || merged.size() < limit)) {
+            Head<T> head = heads.poll();
+            merged.add(head.value());
+            if (head.source().hasNext()) {
+                heads.add(new Head<>(head.source().next(), head.source()));
+            }
+        }
+        return merged;
+    }
+
+    private record Head<T>(T value, Iterator<? extends T> source) {
+    }
+}